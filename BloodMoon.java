@@ -0,0 +1,117 @@
+package it.polito.extgol;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Processor of the {@link EventType#BLOOD_MOON} event on the cells of a board.
+ *
+ * Only the frontier of the event is visited: the cells that are VAMPIRE when the
+ * event starts, and their neighbors. Every outcome is computed from the state
+ * before the event and applied at once, so the result does not depend on any
+ * iteration order:
+ *   - each NAIVE or HEALER neighbor of a vampire becomes a VAMPIRE; converted
+ *     cells do not feed during the same event;
+ *   - each such neighbor gives 1 lifePoint to each adjacent vampire, as long as
+ *     it has lifePoints left; when it has fewer than adjacent vampires, the
+ *     vampires first in row-major order are served.
+ *
+ * Victims are identified in parallel for large frontiers; the cost is
+ * proportional to the number of vampires, not to the size of the board.
+ */
+final class BloodMoon {
+
+    /** Frontier size from which victims are identified in parallel. */
+    static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    private BloodMoon() {
+    }
+
+    /**
+     * Applies the event to the vampires of a board, or of a region of it.
+     *
+     * @param game   the game owning the board, which accounts for the changes
+     * @param region the area whose vampires feed, or null for the whole board
+     */
+    static void apply(Game game, Board board, Region region) {
+        int width = board.getWidth();
+        int height = board.getHeight();
+        IntStream vampires = board.vampires().stream();
+        if (region != null)
+            vampires = vampires.filter(i -> region.nextIndex(width, height, i) == i);
+        apply(game, board, vampires.toArray());
+    }
+
+    /**
+     * Applies the event to the given vampires.
+     *
+     * @param frontier the row-major indices of VAMPIRE cells, in increasing order
+     */
+    static void apply(Game game, Board board, int[] frontier) {
+        int width = board.getWidth();
+        int height = board.getHeight();
+        int n = frontier.length;
+
+        // resolve the cells first: lazy boards create them on the way
+        Cell[] vampires = new Cell[n];
+        Cell[] around = new Cell[n * 8];
+        for (int v = 0; v < n; v++) {
+            int x = frontier[v] % width;
+            int y = frontier[v] / width;
+            vampires[v] = board.tileAt(frontier[v]).getCell();
+            int k = 0;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    if (dx == 0 && dy == 0)
+                        continue;
+                    int nx = x + dx;
+                    int ny = y + dy;
+                    if (nx >= 0 && ny >= 0 && nx < width && ny < height)
+                        around[v * 8 + k] = board.tileAt(ny * width + nx).getCell();
+                    k++;
+                }
+            }
+        }
+
+        // victims of each vampire, from the moods before the event
+        byte[] victims = new byte[n];
+        IntStream range = IntStream.range(0, n);
+        if (n >= PARALLEL_THRESHOLD)
+            range = range.parallel();
+        range.forEach(v -> {
+            int mask = 0;
+            for (int k = 0; k < 8; k++) {
+                Cell c = around[v * 8 + k];
+                if (c != null && (c.getMood() == CellMood.NAIVE || c.getMood() == CellMood.HEALER))
+                    mask |= 1 << k;
+            }
+            victims[v] = (byte) mask;
+        });
+
+        // lifePoints left to each victim, handed out to its vampires in row-major order
+        Map<Cell, Integer> left = new IdentityHashMap<>();
+        int[] gains = new int[n];
+        for (int v = 0; v < n; v++) {
+            for (int k = 0; k < 8; k++) {
+                if ((victims[v] & (1 << k)) == 0)
+                    continue;
+                Cell victim = around[v * 8 + k];
+                int points = left.computeIfAbsent(victim, Cell::getLifePoints);
+                if (points > 0) {
+                    left.put(victim, points - 1);
+                    gains[v]++;
+                }
+            }
+        }
+
+        for (Map.Entry<Cell, Integer> e : left.entrySet()) {
+            game.changeLifePoints(e.getKey(), e.getValue());
+            game.changeMood(e.getKey(), CellMood.VAMPIRE);
+        }
+        for (int v = 0; v < n; v++) {
+            if (gains[v] > 0)
+                game.changeLifePoints(vampires[v], vampires[v].getLifePoints() + gains[v]);
+        }
+    }
+}
@@ -1,120 +1,591 @@
 package it.polito.extgol;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IntSummaryStatistics;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import jakarta.persistence.CascadeType;
-import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
 import jakarta.persistence.MapKey;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Transient;
 
-```java
+/**
+ * Entity representing the rectangular grid of tiles on which the game is played.
+ *
+ * Each board owns one Tile per coordinate, and each Tile owns its Cell.
+ * Only the cells are persisted, along with a reference to the board's static
+ * {@link BoardLayout}, shared with the other saved boards of the same layout;
+ * the tiles of a saved board are rebuilt from its cells on first use.
+ * Neighborhoods are wired once at construction time (8-cell Moore neighborhood,
+ * without wrap-around at the edges).
+ *
+ * Boards built with {@link #createLazy} hold their cell states in a compact
+ * {@link BoardState} instead, and create each Tile, with its Cell and neighborhood,
+ * on first access. Once every tile exists they behave exactly as eager boards.
+ */
+@Entity
+public class Board {
 
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
 
+    /** Number of columns of the board; stored by the layout. */
+    @Transient
+    private Integer width;
 
-public class Board {
-    private final int width;
-    private final int height;
-    private final Map<Coord, Tile> tiles = new HashMap<>();
+    /** Number of rows of the board; stored by the layout. */
+    @Transient
+    private Integer height;
+
+    /** Shared static layout, assigned when the board is first saved. */
+    @ManyToOne(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER, optional = false)
+    @JoinColumn(name = "layout_id", nullable = false, updatable = false)
+    private BoardLayout layout;
+
+    /** Reference to the owning game. */
+    @OneToOne(mappedBy = "board", fetch = FetchType.LAZY)
+    private Game game;
+
+    /** Cells of a saved board, keyed by their coordinates; filled when it is first saved. */
+    @OneToMany(
+        mappedBy = "board",
+        cascade = CascadeType.ALL,
+        orphanRemoval = true,
+        fetch = FetchType.LAZY
+    )
+    @MapKey(name = "cellCoord")
+    private Map<Coord, Cell> cells = new HashMap<>();
+
+    /** All tiles of the board, keyed by their coordinates; null until rebuilt on a loaded board. */
+    @Transient
+    private Map<Coord, Tile> tiles = new HashMap<>();
+
+    /** Scratch state reused when snapshotting generations of this board. */
+    @Transient
+    private BoardState snapshotBuffer;
+
+    /** Tiles in row-major order, built on first indexed access. */
+    @Transient
+    private Tile[] tileIndex;
+
+    /** Row-major positions of the VAMPIRE cells, built on first use; see {@link #vampires()}. */
+    @Transient
+    private BitSet vampires;
+
+    /**
+     * States of the cells of a lazy board; only meaningful for the tiles not
+     * materialized yet. Null once every tile exists.
+     */
+    @Transient
+    private BoardState pendingCells;
+
+    /**
+     * Snapshot and cell types a forked board starts from, expanded into
+     * {@link #pendingCells} on first use; null afterwards.
+     */
+    @Transient
+    private GenerationSnapshot seed;
+    @Transient
+    private byte[] seedTypes;
+
+    /**
+     * Default constructor required by JPA.
+     */
+    protected Board() {
+    }
 
-    public Board(int width, int height) {
+    /**
+     * Creates a board of the given size, with one tile (and one dead cell)
+     * per coordinate, and wires every tile to its neighbors.
+     *
+     * @param width  number of columns
+     * @param height number of rows
+     * @param game   the owning game
+     */
+    public Board(int width, int height, Game game) {
         this.width = width;
         this.height = height;
-        // initialize tiles with default Tile instances
+        this.game = game;
+
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
-                tiles.put(new Coord(x, y), new Tile(this, x, y));
+                Coord c = new Coord(x, y);
+                tiles.put(c, new Tile(x, y, this, game));
             }
         }
+        initializeNeighbors();
     }
 
-    public Tile getTile(int x, int y) {
-        return tiles.get(new Coord(x, y));
+    /**
+     * Creates a board for the extended version of the game.
+     *
+     * Extended boards share the standard layout; interactions between cells
+     * are driven by their moods and by the tiles' life point modifiers.
+     *
+     * @param width  number of columns
+     * @param height number of rows
+     * @param game   the owning game
+     * @return the new board
+     */
+    public static Board createExtended(int width, int height, Game game) {
+        return new Board(width, height, game);
     }
 
-    public Tile getTile(Coord c) {
-        return tiles.get(c);
+    /**
+     * Creates a board of the given size without any tile: all cells start dead
+     * in a compact state, and each tile is created with its cell on first access
+     * through {@link #getTile(Coord)}, {@link #getCell(Coord)} or {@link #getTiles()},
+     * the latter creating all of them. Compact states are captured and restored
+     * without creating any tile.
+     *
+     * @param width  number of columns
+     * @param height number of rows
+     * @param game   the owning game
+     * @return the new board
+     */
+    public static Board createLazy(int width, int height, Game game) throws ExtendedGameOfLifeException {
+        Board board = new Board();
+        board.width = width;
+        board.height = height;
+        board.game = game;
+        board.pendingCells = new BoardState(width, height);
+        return board;
     }
-}
 
-// Assuming InteractableTile is a subclass of Tile
-class InteractableTile extends Tile {
-    public InteractableTile(Board board, int x, int y) {
-        super(board, x, y);
+    /**
+     * Creates a lazy board holding the cells of a snapshot, for a forked game.
+     * Not even the compact state is allocated until the board is first used.
+     *
+     * @param seed  the snapshot to start from; it is shared, not copied
+     * @param types the type of every cell (CellType ordinals, row-major); it is retained
+     * @param game  the owning game
+     * @return the new board
+     */
+    static Board createFork(GenerationSnapshot seed, byte[] types, Game game) {
+        Board board = new Board();
+        board.width = seed.getWidth();
+        board.height = seed.getHeight();
+        board.game = game;
+        board.seed = seed;
+        board.seedTypes = types;
+        return board;
     }
 
-    // additional InteractableTile methods here
-}
+    /**
+     * Returns the states of the cells whose tiles were not created yet,
+     * expanding the seed of a forked board if needed; null once every tile exists.
+     */
+    private BoardState pending() {
+        if (seed != null) {
+            BoardState state = new BoardState(width, height);
+            System.arraycopy(seedTypes, 0, state.typePlane(), 0, seedTypes.length);
+            seed.copyInto(state);
+            pendingCells = state;
+            seed = null;
+            seedTypes = null;
+        }
+        return pendingCells;
+    }
 
-// Assuming Cell class with getTile method
-class Cell {
-    private final int x;
-    private final int y;
-    private final Board board;
-    private final CellType cellType;
+    /**
+     * Links each tile to the tiles surrounding it (up to eight).
+     */
+    private void initializeNeighbors() {
+        for (Tile t : tiles().values()) {
+            t.initializeNeighbors(neighborsOf(t));
+        }
+    }
 
-    public Cell(int x, int y, Board board, CellType cellType) {
-        this.x = x;
-        this.y = y;
-        this.board = board;
-        this.cellType = cellType;
+    /**
+     * Returns the tiles surrounding a tile (up to eight), creating them if needed.
+     */
+    Set<Tile> neighborsOf(Tile t) {
+        Set<Tile> neighbors = new HashSet<>();
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                if (dx == 0 && dy == 0)
+                    continue;
+                Tile n = getTile(new Coord(t.getX() + dx, t.getY() + dy));
+                if (n != null)
+                    neighbors.add(n);
+            }
+        }
+        return neighbors;
     }
 
-    public Tile getTile() {
-        return board.getTile(x, y);
+    /**
+     * Returns the tile at the given coordinates of a lazy board, creating it from
+     * the pending cell states if needed; null outside the board.
+     */
+    private Tile materialize(Coord c) {
+        Tile t = tiles.get(c);
+        if (t != null || c == null || c.getX() < 0 || c.getY() < 0 || c.getX() >= width || c.getY() >= height)
+            return t;
+
+        BoardState states = pending();
+        t = new Tile(c.getX(), c.getY(), this, game);
+        t.initializeNeighbors(null);
+        int i = states.index(c.getX(), c.getY());
+        Cell cell = t.getCell();
+        cell.setAlive(states.isAlive(i));
+        cell.setLifePoints(states.getLifePoints(i));
+        cell.setMood(states.getMood(i));
+        cell.setType(states.getType(i));
+        tiles.put(new Coord(c.getX(), c.getY()), t);
+
+        if (tiles.size() == width * height) {
+            // same insertion order as the constructor, hence the same iteration order
+            Map<Coord, Tile> ordered = new HashMap<>();
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    Coord k = new Coord(x, y);
+                    ordered.put(k, tiles.get(k));
+                }
+            }
+            tiles = ordered;
+            pendingCells = null;
+        }
+        return t;
     }
-}
 
-// Support classes used in Board.java
-class Coord {
-    public final int x, y;
+    /**
+     * Returns the tiles of the board, rebuilding them from the stored cells on a
+     * board that was loaded.
+     */
+    private Map<Coord, Tile> tiles() {
+        if (tiles == null) {
+            // same insertion order as the constructor, hence the same iteration order
+            Map<Coord, Tile> built = new HashMap<>();
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    Coord k = new Coord(x, y);
+                    built.put(k, new Tile(this, cells.get(k)));
+                }
+            }
+            tiles = built;
+            initializeNeighbors();
+        }
+        return tiles;
+    }
 
-    public Coord(int x, int y) {
-        this.x = x;
-        this.y = y;
+    /**
+     * Creates every tile a lazy board does not hold yet, collects the cells to
+     * store and assigns the board a layout of its own unless it shares one.
+     */
+    @PrePersist
+    private void prepareForPersist() {
+        materializeAll();
+        if (layout == null)
+            layout = BoardLayout.of(this);
+        for (Tile t : tiles().values()) {
+            cells.put(t.getTileCoord(), t.getCell());
+        }
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (!(o instanceof Coord)) return false;
-        Coord coord = (Coord) o;
-        return x == coord.x && y == coord.y;
+    @PostLoad
+    private void readLayout() {
+        width = layout.getWidth();
+        height = layout.getHeight();
+        tiles = null;
     }
 
-    @Override
-    public int hashCode() {
-        return 31 * x + y;
+    /**
+     * Creates every tile a lazy board does not hold yet.
+     */
+    void materializeAll() {
+        for (int x = 0; !isMaterialized() && x < width; x++) {
+            for (int y = 0; !isMaterialized() && y < height; y++) {
+                materialize(new Coord(x, y));
+            }
+        }
     }
-}
 
-class Tile {
-    protected final Board board;
-    protected final int x;
-    protected final int y;
+    /**
+     * Returns true unless the board was built lazily and some of its tiles were
+     * not created yet.
+     */
+    public boolean isMaterialized() {
+        return pendingCells == null && seed == null;
+    }
 
-    public Tile(Board board, int x, int y) {
-        this.board = board;
-        this.x = x;
-        this.y = y;
+    /**
+     * Drops every tile and cell of a board that was not persisted, keeping their
+     * states in compact form: tiles are created again on next access, as on a board
+     * built by {@link #createLazy}. Useful to reclaim memory once a large board is
+     * only simulated on compact states.
+     *
+     * Tiles and cells obtained earlier are detached from the board; generations
+     * already recorded keep referring to them.
+     *
+     * @throws ExtendedGameOfLifeException if the board is persisted
+     */
+    public void releaseTiles() throws ExtendedGameOfLifeException {
+        if (id != null)
+            throw new ExtendedGameOfLifeException("The tiles of a persisted board cannot be released");
+        BoardState states = new BoardState(width, height);
+        states.capture(this);
+        pendingCells = states;
+        tiles = new HashMap<>();
+        tileIndex = null;
     }
 
-    // Tile methods here
-}
+    /**
+     * Returns the states of the cells whose tiles were not created yet, or null.
+     */
+    BoardState pendingCells() {
+        return pending();
+    }
 
-enum CellType {
-    NAIVE, VAMPIRE, HEALER;
-}
-```
+    /**
+     * Returns the tiles created so far, without creating the others.
+     */
+    Collection<Tile> materializedTiles() {
+        return tiles().values();
+    }
+
+    /**
+     * Kills every cell, and resets its type to {@link CellType#BASIC} if requested,
+     * without creating any tile.
+     */
+    void clearCells(boolean resetTypes) {
+        BoardState pending = pending();
+        if (pending != null) {
+            Arrays.fill(pending.alivePlane(), (byte) 0);
+            if (resetTypes)
+                Arrays.fill(pending.typePlane(), (byte) CellType.BASIC.ordinal());
+        }
+        for (Tile t : tiles().values()) {
+            Cell cell = t.getCell();
+            if (cell != null) {
+                cell.setAlive(false);
+                if (resetTypes)
+                    cell.setType(CellType.BASIC);
+            }
+        }
+    }
+
+    public Long getId() {
+        return id;
+    }
 
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Returns the stored layout of the board, or null if it was never saved.
+     */
+    public BoardLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Makes the board use a stored layout, e.g. one shared with other boards,
+     * before it is first saved.
+     */
+    void useLayout(BoardLayout layout) throws ExtendedGameOfLifeException {
+        if (layout.getWidth() != width || layout.getHeight() != height)
+            throw new ExtendedGameOfLifeException("The layout does not match the board's dimensions");
+        this.layout = layout;
+    }
+
+    /**
+     * Returns the life point modifier the layout gives to the tile at the given
+     * coordinates; 0 if the board has no layout.
+     */
+    int lifePointModifier(int x, int y) {
+        return layout != null ? layout.getLifePointModifier(x, y) : 0;
+    }
+
+    public Tile getTile(Coord c) {
+        return !isMaterialized() ? materialize(c) : tiles().get(c);
+    }
+
+    public Cell getCell(Coord c) {
+        Tile t = getTile(c);
+        return t != null ? t.getCell() : null;
+    }
+
+    /**
+     * Returns every tile of the board; on a lazy board, the missing ones are created first.
+     */
+    public Collection<Tile> getTiles() {
+        materializeAll();
+        return tiles().values();
+    }
+
+    /**
+     * Returns the tile at the given row-major index ({@code y * width + x}),
+     * without hashing a coordinate.
+     */
+    Tile tileAt(int index) {
+        if (!isMaterialized())
+            return materialize(new Coord(index % width, index / width));
+        if (tileIndex == null) {
+            Tile[] byIndex = new Tile[width * height];
+            for (Tile t : tiles().values()) {
+                byIndex[t.getY() * width + t.getX()] = t;
+            }
+            tileIndex = byIndex;
+        }
+        return tileIndex[index];
+    }
+
+    /**
+     * Returns the row-major positions of the cells that are VAMPIRE, e.g. the
+     * frontier of a {@link BloodMoon}.
+     *
+     * The set is built from the board on first use, then kept up to date by
+     * {@link Cell#setMood(CellMood)}; restoring a compact state into the pending
+     * cells of a lazy board discards it.
+     */
+    BitSet vampires() {
+        if (vampires == null) {
+            BoardState state = snapshotBuffer();
+            state.capture(this);
+            byte[] moods = state.moodPlane();
+            BitSet found = new BitSet(moods.length);
+            for (int i = 0; i < moods.length; i++) {
+                if (moods[i] == CellMood.VAMPIRE.ordinal())
+                    found.set(i);
+            }
+            vampires = found;
+        }
+        return vampires;
+    }
+
+    /**
+     * Keeps {@link #vampires()} up to date with the new mood of a cell.
+     */
+    void moodChanged(Cell cell, CellMood mood) {
+        if (vampires != null)
+            vampires.set(cell.getY() * width + cell.getX(), mood == CellMood.VAMPIRE);
+    }
+
+    /**
+     * Discards {@link #vampires()}, after moods were changed without going through the cells.
+     */
+    void moodsChanged() {
+        vampires = null;
+    }
+
+    /**
+     * Returns a state with the board's dimensions, reused by every call; its content
+     * is only meaningful to the caller until the next call.
+     */
+    BoardState snapshotBuffer() throws ExtendedGameOfLifeException {
+        if (snapshotBuffer == null)
+            snapshotBuffer = new BoardState(width, height);
+        return snapshotBuffer;
+    }
+
+    /**
+     * Renders the board as stored in the given generation.
+     *
+     * "C" -> alive cell
+     * "0" -> dead cell
+     *
+     * @param generation the generation to render
+     * @return one line per row, rows separated by '\n'
+     */
+    public String visualize(Generation generation) {
+        Set<Coord> alive = generation.getAliveCells().stream()
+                .map(Cell::getCoordinates)
+                .collect(Collectors.toSet());
+
+        StringBuilder sb = new StringBuilder((width + 1) * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                sb.append(alive.contains(new Coord(x, y)) ? 'C' : '0');
+            }
+            if (y < height - 1)
+                sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Renders a published frame of this board, like {@link #visualize(Generation)}.
+     *
+     * Unlike the generation, the frame is immutable: it can be rendered by any
+     * thread while the game is being simulated, see {@link Game#getFrames()}.
+     *
+     * @param frame a frame of this board
+     * @return one line per row, rows separated by '\n'
+     */
+    public String visualize(GenerationSnapshot frame) {
+        StringBuilder sb = new StringBuilder((width + 1) * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                sb.append(frame.isAlive(x, y) ? 'C' : '0');
+            }
+            if (y < height - 1)
+                sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Renders a viewport of the board as stored in the given generation, zoomed
+     * out: each character stands for a block of 2^level x 2^level cells.
+     *
+     * "C" -> every cell of the block alive
+     * "0" -> no cell alive
+     * "1".."9" -> share of alive cells, in ninths rounded up
+     *
+     * The blocks are read from the game's {@link PopulationPyramid}, so the cost
+     * depends on the size of the viewport, not on the size of the board.
+     *
+     * @param generation the generation to render
+     * @param level      the zoom level, from 1 (2x2 cells per character)
+     * @param x          column of the viewport's leftmost blocks, in blocks
+     * @param y          row of the viewport's topmost blocks, in blocks
+     * @param columns    width of the viewport, in characters
+     * @param rows       height of the viewport, in lines
+     * @return one line per row of blocks, rows separated by '\n'
+     */
+    public String visualize(Generation generation, int level, int x, int y, int columns, int rows)
+            throws ExtendedGameOfLifeException {
+        return generation.getGame().getPyramid(generation).render(level, x, y, columns, rows);
+    }
+
+    /**
+     * Computes count, min, max, sum and average of the lifePoints of the cells
+     * alive in the given generation.
+     *
+     * @param generation the generation to inspect
+     * @return lifePoint statistics over the alive cells
+     */
+    public IntSummaryStatistics energyStatistics(Generation generation) {
+        Map<Cell, Integer> energy = generation.getEnergyStates();
+        return generation.getAliveCells().stream()
+                .mapToInt(c -> energy.getOrDefault(c, 0))
+                .summaryStatistics();
+    }
+
+}
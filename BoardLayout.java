@@ -0,0 +1,124 @@
+package it.polito.extgol;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+
+/**
+ * Persisted static layout of a board: its dimensions and the life point
+ * modifier of each tile ({@link Tile#getLifePointModifier()}).
+ *
+ * A layout is stored once and shared by every saved board with the same
+ * dimensions and modifiers (see {@link BoardLayoutRepository}); boards only
+ * persist the dynamic state of their cells, tiles being rebuilt from the layout
+ * on load. Rows are indexed by (width, height, layout_hash) so that a matching
+ * layout is found with an index lookup.
+ */
+@Entity
+@Table(name = "board_layout", indexes = @Index(name = "idx_board_layout", columnList = "width, height, layout_hash"))
+public class BoardLayout {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Integer width;
+
+    @Column(nullable = false)
+    private Integer height;
+
+    /** Modifier of each tile, row-major, as 4-byte integers; null when they are all 0. */
+    @Lob
+    @Column(name = "modifiers")
+    private byte[] modifiers;
+
+    @Column(name = "layout_hash", nullable = false)
+    private Long hash;
+
+    /** Decoded form of {@link #modifiers}, built on first use. */
+    @Transient
+    private int[] decoded;
+
+    /**
+     * Default constructor required by JPA.
+     */
+    protected BoardLayout() {
+    }
+
+    private BoardLayout(int width, int height, int[] modifiers) {
+        this.width = width;
+        this.height = height;
+        this.decoded = modifiers;
+        if (modifiers != null) {
+            ByteBuffer encoded = ByteBuffer.allocate(modifiers.length * Integer.BYTES);
+            encoded.asIntBuffer().put(modifiers);
+            this.modifiers = encoded.array();
+        }
+        this.hash = 31L * (31L * width + height) + Arrays.hashCode(modifiers);
+    }
+
+    /**
+     * Creates the layout of a board, not persisted. The tiles of a lazy board are
+     * not created, those missing being plain tiles.
+     */
+    static BoardLayout of(Board board) {
+        int width = board.getWidth();
+        int height = board.getHeight();
+        int[] modifiers = null;
+        for (Tile t : board.materializedTiles()) {
+            int m = t.getLifePointModifier();
+            if (m != 0 && modifiers == null)
+                modifiers = new int[width * height];
+            if (modifiers != null)
+                modifiers[t.getY() * width + t.getX()] = m;
+        }
+        return new BoardLayout(width, height, modifiers);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    long getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the life point modifier of the tile at the given coordinates.
+     */
+    public int getLifePointModifier(int x, int y) {
+        if (modifiers == null)
+            return 0;
+        if (decoded == null) {
+            int[] values = new int[width * height];
+            ByteBuffer.wrap(modifiers).asIntBuffer().get(values);
+            decoded = values;
+        }
+        return decoded[y * width + x];
+    }
+
+    /**
+     * Tells whether another layout has the same dimensions and modifiers.
+     */
+    boolean sameAs(BoardLayout other) {
+        return width.equals(other.width) && height.equals(other.height) && Arrays.equals(modifiers, other.modifiers);
+    }
+}
@@ -0,0 +1,34 @@
+package it.polito.extgol;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Repository of the persisted board layouts shared by saved boards.
+ */
+public class BoardLayoutRepository extends GenericExtGOLRepository<BoardLayout, Long> {
+
+    public BoardLayoutRepository() {
+        super(BoardLayout.class);
+    }
+
+    /**
+     * Returns the stored layout identical to the given one, persisting the given
+     * one within the caller's transaction if there is none.
+     *
+     * @param layout a layout that was not persisted
+     * @return the layout to share
+     */
+    BoardLayout share(EntityManager em, BoardLayout layout) {
+        for (BoardLayout stored : em.createQuery("SELECT l FROM " + entityName
+                + " l WHERE l.width = :width AND l.height = :height AND l.hash = :hash", BoardLayout.class)
+                .setParameter("width", layout.getWidth())
+                .setParameter("height", layout.getHeight())
+                .setParameter("hash", layout.getHash())
+                .getResultList()) {
+            if (stored.sameAs(layout))
+                return stored;
+        }
+        em.persist(layout);
+        return layout;
+    }
+}
@@ -0,0 +1,288 @@
+package it.polito.extgol;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compact, primitive-array representation of the state of every cell of a board.
+ *
+ * Cells are stored in row-major order: the cell at (x, y) has index
+ * {@code y * width + x}. For each cell the state holds its aliveness
+ * (one byte, 0 or 1), lifePoints, mood and type (as enum ordinals).
+ *
+ * A BoardState is detached from the entity graph: it is filled from the
+ * board's cells with {@link #capture(Board)} and written back with
+ * {@link #restore(Board)}.
+ */
+public class BoardState {
+
+    private static final CellMood[] MOODS = CellMood.values();
+    private static final CellType[] TYPES = CellType.values();
+
+    private final int width;
+    private final int height;
+
+    private final byte[] alive;
+    private final int[] lifePoints;
+    private final byte[] moods;
+    private final byte[] types;
+
+    /**
+     * Creates an empty state (all cells dead, NAIVE, BASIC, with 0 lifePoints).
+     *
+     * @param width  number of columns
+     * @param height number of rows
+     * @throws ExtendedGameOfLifeException if the dimensions are not positive or
+     *         the board has more cells than an array can hold
+     */
+    public BoardState(int width, int height) throws ExtendedGameOfLifeException {
+        if (width <= 0 || height <= 0)
+            throw new ExtendedGameOfLifeException("Board dimensions must be positive");
+        if ((long) width * height > Integer.MAX_VALUE - 8)
+            throw new ExtendedGameOfLifeException("Board too large: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        int size = width * height;
+        this.alive = new byte[size];
+        this.lifePoints = new int[size];
+        this.moods = new byte[size];
+        this.types = new byte[size];
+    }
+
+    /**
+     * Creates a state with its own aliveness plane (all dead) that shares the
+     * lifePoints, moods and types of another state: changes to those planes
+     * are seen by both. Used to double-buffer aliveness, the only part of the
+     * state changed by evolution.
+     *
+     * @param shared the state whose other planes are shared
+     */
+    BoardState(BoardState shared) {
+        this.width = shared.width;
+        this.height = shared.height;
+        this.alive = new byte[shared.alive.length];
+        this.lifePoints = shared.lifePoints;
+        this.moods = shared.moods;
+        this.types = shared.types;
+    }
+
+    /**
+     * Creates a state holding the current state of every cell of the board.
+     *
+     * @param board the board to read
+     * @return the captured state
+     */
+    public static BoardState of(Board board) {
+        BoardState state = new BoardState(board.getWidth(), board.getHeight());
+        state.capture(board);
+        return state;
+    }
+
+    /**
+     * Overwrites this state with the current state of the board's cells.
+     * The tiles of a lazy board are not created.
+     *
+     * @param board a board with the same dimensions as this state
+     */
+    public void capture(Board board) {
+        checkDimensions(board);
+        BoardState pending = board.pendingCells();
+        if (pending != null)
+            copyFrom(pending);
+        for (Tile tile : board.materializedTiles()) {
+            Cell cell = tile.getCell();
+            if (cell == null)
+                throw new IllegalStateException("Each tile should hold a cell!");
+            int i = index(cell.getX(), cell.getY());
+            alive[i] = (byte) (cell.isAlive() ? 1 : 0);
+            lifePoints[i] = cell.getLifePoints();
+            moods[i] = (byte) cell.getMood().ordinal();
+            types[i] = (byte) cell.getType().ordinal();
+        }
+    }
+
+    /**
+     * Overwrites the aliveness plane of this state with the aliveness of the board's cells,
+     * leaving lifePoints, moods and types untouched.
+     *
+     * @param board a board with the same dimensions as this state
+     */
+    public void captureAliveness(Board board) {
+        checkDimensions(board);
+        BoardState pending = board.pendingCells();
+        if (pending != null)
+            System.arraycopy(pending.alive, 0, alive, 0, alive.length);
+        for (Tile tile : board.materializedTiles()) {
+            Cell cell = tile.getCell();
+            if (cell == null)
+                throw new IllegalStateException("Each tile should hold a cell!");
+            alive[index(cell.getX(), cell.getY())] = (byte) (cell.isAlive() ? 1 : 0);
+        }
+    }
+
+    /**
+     * Writes this state back into the board's cells.
+     * The tiles of a lazy board are not created.
+     *
+     * @param board a board with the same dimensions as this state
+     */
+    public void restore(Board board) {
+        checkDimensions(board);
+        BoardState pending = board.pendingCells();
+        if (pending != null) {
+            pending.copyFrom(this);
+            board.moodsChanged();
+        }
+        for (Tile tile : board.materializedTiles()) {
+            Cell cell = tile.getCell();
+            if (cell == null)
+                throw new IllegalStateException("Each tile should hold a cell!");
+            int i = index(cell.getX(), cell.getY());
+            cell.setAlive(alive[i] != 0);
+            cell.setLifePoints(lifePoints[i]);
+            cell.setMood(MOODS[moods[i]]);
+            cell.setType(TYPES[types[i]]);
+        }
+    }
+
+    /**
+     * Copies another state of the same dimensions into this one.
+     *
+     * @param other the state to copy
+     */
+    public void copyFrom(BoardState other) {
+        if (other.width != width || other.height != height)
+            throw new ExtendedGameOfLifeException("Board states have different dimensions");
+        System.arraycopy(other.alive, 0, alive, 0, alive.length);
+        System.arraycopy(other.lifePoints, 0, lifePoints, 0, lifePoints.length);
+        System.arraycopy(other.moods, 0, moods, 0, moods.length);
+        System.arraycopy(other.types, 0, types, 0, types.length);
+    }
+
+    private void checkDimensions(Board board) {
+        if (board.getWidth() != width || board.getHeight() != height)
+            throw new ExtendedGameOfLifeException("Board is " + board.getWidth() + "x" + board.getHeight()
+                    + ", state is " + width + "x" + height);
+    }
+
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int size() {
+        return alive.length;
+    }
+
+    public boolean isAlive(int i) {
+        return alive[i] != 0;
+    }
+
+    public void setAlive(int i, boolean isAlive) {
+        alive[i] = (byte) (isAlive ? 1 : 0);
+    }
+
+    public int getLifePoints(int i) {
+        return lifePoints[i];
+    }
+
+    public void setLifePoints(int i, int points) {
+        lifePoints[i] = points;
+    }
+
+    public CellMood getMood(int i) {
+        return MOODS[moods[i]];
+    }
+
+    public void setMood(int i, CellMood mood) {
+        moods[i] = (byte) mood.ordinal();
+    }
+
+    public CellType getType(int i) {
+        return TYPES[types[i]];
+    }
+
+    public void setType(int i, CellType type) {
+        types[i] = (byte) type.ordinal();
+    }
+
+    /**
+     * Writes the aliveness of every cell at the buffer's position, packed 8 cells
+     * per byte, least significant bit first, the last byte zero-padded.
+     *
+     * @param buf the destination buffer, advanced by {@code ceil(size() / 8)} bytes
+     */
+    void writeAliveBits(ByteBuffer buf) {
+        int n = alive.length;
+        for (int i = 0; i < n; i += 8) {
+            int b = 0;
+            int end = Math.min(8, n - i);
+            for (int j = 0; j < end; j++) {
+                b |= alive[i + j] << j;
+            }
+            buf.put((byte) b);
+        }
+    }
+
+    /**
+     * Reads the aliveness of every cell as written by {@link #writeAliveBits(ByteBuffer)}.
+     *
+     * @param buf the source buffer, advanced by {@code ceil(size() / 8)} bytes
+     */
+    void readAliveBits(ByteBuffer buf) {
+        int n = alive.length;
+        for (int i = 0; i < n; i += 8) {
+            int b = buf.get();
+            int end = Math.min(8, n - i);
+            for (int j = 0; j < end; j++) {
+                alive[i + j] = (byte) ((b >>> j) & 1);
+            }
+        }
+    }
+
+    /**
+     * Direct access to the aliveness plane (one byte per cell, 0 or 1),
+     * for engines and codecs working on whole rows at once.
+     */
+    byte[] alivePlane() {
+        return alive;
+    }
+
+    /** Direct access to the lifePoints plane. */
+    int[] lifePointsPlane() {
+        return lifePoints;
+    }
+
+    /** Direct access to the mood plane (CellMood ordinals). */
+    byte[] moodPlane() {
+        return moods;
+    }
+
+    /** Direct access to the type plane (CellType ordinals). */
+    byte[] typePlane() {
+        return types;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BoardState)) return false;
+        BoardState s = (BoardState) o;
+        return width == s.width && height == s.height
+                && Arrays.equals(alive, s.alive)
+                && Arrays.equals(lifePoints, s.lifePoints)
+                && Arrays.equals(moods, s.moods)
+                && Arrays.equals(types, s.types);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * width + height) + Arrays.hashCode(alive);
+    }
+}
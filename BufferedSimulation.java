@@ -0,0 +1,147 @@
+package it.polito.extgol;
+
+/**
+ * Double-buffered simulation of a game on compact board states.
+ *
+ * The simulation keeps two aliveness planes (front and back) sharing a single
+ * copy of lifePoints, moods and types, which evolution does not change. Each
+ * {@link #step()} lets the engine write the next aliveness into the back plane
+ * and swaps the two, so steady-state stepping allocates nothing and leaves the
+ * board's cells untouched.
+ *
+ * Cells and generations are only updated on request: {@link #snapshot()}
+ * copies the front state into the cells and appends a Generation for the
+ * current step to the game. The game's statistics are recorded at every step.
+ */
+public class BufferedSimulation {
+
+    private final Game game;
+    private final Board board;
+    private final EvolutionEngine engine;
+
+    private BoardState front;
+    private BoardState back;
+
+    /** Step of the front state. */
+    private int step;
+
+    /** Step of the newest generation stored in the game. */
+    private int snapshotStep;
+
+    /**
+     * Starts a simulation from the current state of the game's board,
+     * i.e. the state of its newest generation.
+     *
+     * @param game   the game to simulate; its history must not be empty
+     * @param engine the engine computing each step
+     */
+    public BufferedSimulation(Game game, EvolutionEngine engine) throws ExtendedGameOfLifeException {
+        if (engine == null)
+            throw new ExtendedGameOfLifeException("Engine cannot be null");
+        if (game.getGenerations().isEmpty())
+            throw new ExtendedGameOfLifeException("No generations available");
+        this.game = game;
+        this.board = game.getBoard();
+        this.engine = engine;
+        this.front = BoardState.of(board);
+        this.back = new BoardState(front);
+        this.step = game.getGenerations().get(game.getGenerations().size() - 1).getStep();
+        this.snapshotStep = step;
+        game.getStatistics().reset(step, board);
+    }
+
+    /**
+     * Moves the simulation to an arbitrary state, e.g. a stored keyframe. The
+     * game's generations are left as they are; its statistics restart from the state.
+     *
+     * @param state the state to continue from, with the dimensions of the board
+     * @param step  the step the state belongs to
+     */
+    void reset(BoardState state, int step) {
+        front.copyFrom(state);
+        front.restore(board);
+        this.step = step;
+        this.snapshotStep = -1;
+        game.getStatistics().reset(step, board);
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    /** Returns the step the current state belongs to. */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Returns the current state. It is updated in place by the following steps
+     * and events, and must not be modified by callers.
+     */
+    public BoardState getState() {
+        return front;
+    }
+
+    /**
+     * Advances the state by one generation.
+     */
+    public void step() {
+        engine.step(front, back);
+
+        byte[] before = front.alivePlane();
+        byte[] after = back.alivePlane();
+        int born = 0;
+        int died = 0;
+        for (int i = 0; i < before.length; i++) {
+            born += after[i] & ~before[i];
+            died += before[i] & ~after[i];
+        }
+        game.getStatistics().record(step + 1, born, died);
+
+        BoardState swap = front;
+        front = back;
+        back = swap;
+        step++;
+    }
+
+    /**
+     * Applies a global event to the current state, with the same semantics as
+     * {@link Game#unrollEvent(EventType, Cell)}: the state goes through the cells,
+     * so events cost a full synchronization with the board.
+     *
+     * @param event the event to apply
+     */
+    public void applyEvent(EventType event) throws ExtendedGameOfLifeException {
+        applyEvent(event, null);
+    }
+
+    /**
+     * Applies a timeline entry to the current state, on the whole board or on its area.
+     */
+    public void applyEvent(ScheduledEvent event) throws ExtendedGameOfLifeException {
+        applyEvent(event.getType(), event.getRegion());
+    }
+
+    private void applyEvent(EventType event, Region region) throws ExtendedGameOfLifeException {
+        front.restore(board);
+        game.unrollEvent(event, region);
+        front.capture(board);
+    }
+
+    /**
+     * Copies the current state into the board's cells and appends the
+     * corresponding generation to the game, unless it was already stored.
+     * As in {@code run}, the generation of a step holds the state before the
+     * events applied at that step.
+     *
+     * @return the generation of the current step
+     */
+    public Generation snapshot() throws ExtendedGameOfLifeException {
+        if (step == snapshotStep) {
+            return game.getGeneration(step);
+        }
+        front.restore(board);
+        snapshotStep = step;
+        return Generation.createSnapshot(game, board, step);
+    }
+}
@@ -1,6 +1,5 @@
 package it.polito.extgol;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import jakarta.persistence.AttributeOverride;
@@ -14,7 +13,6 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
-import jakarta.persistence.OneToOne;
 import jakarta.persistence.Transient;
 
 @Entity
@@ -46,9 +44,6 @@ public class Cell implements Evolvable, Interactable {
     protected Game game;
 
     @Transient
-    protected List<Generation> generations = new ArrayList<>();
-
-    @OneToOne(mappedBy = "cell", fetch = FetchType.LAZY)
     protected Tile tile;
 
     @Transient
@@ -94,6 +89,10 @@ public class Cell implements Evolvable, Interactable {
         return willLive;
     }
 
+    public Long getId() {
+        return id;
+    }
+
     public List<Tile> getNeighbors() {
         return tile != null ? List.copyOf(tile.getNeighbors()) : List.of();
     }
@@ -109,12 +108,13 @@ public class Cell implements Evolvable, Interactable {
         return count;
     }
 
-    void addGeneration(Generation gen) {
-        generations.add(gen);
-    }
-
+    /**
+     * Returns the generations evolved from this cell's state that its game still
+     * keeps in memory, oldest first.
+     */
     public List<Generation> getGenerations() {
-        return List.copyOf(generations);
+        Game owner = game != null ? game : board != null ? board.getGame() : null;
+        return owner != null ? owner.evolvedGenerations() : List.of();
     }
 
     public int getX() {
@@ -169,7 +169,9 @@ public class Cell implements Evolvable, Interactable {
     }
 
     public void setMood(CellMood mood) {
-        if (mood != null) this.mood = mood;
+        if (mood == null) return;
+        this.mood = mood;
+        if (board != null) board.moodChanged(this, mood);
     }
 
     public CellMood getMood() {
@@ -183,4 +185,8 @@ public class Cell implements Evolvable, Interactable {
     public Tile getTile() {
         return this.tile;
     }
+
+    void setTile(Tile tile) {
+        this.tile = tile;
+    }
 }
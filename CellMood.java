@@ -1,11 +1,23 @@
 package it.polito.extgol;
 
 /**
- * Defines the type of a cell, which may influence its behavior and interactions.
+ * Defines the mood of a cell, which drives how it exchanges lifePoints
+ * with its neighbors during interactions and global events.
  */
-public enum CellType {
-    BASIC,      // Default cell type with standard behavior
-    HIGHLANDER, // Special cell type, e.g. higher life points or different rules
-    LONER,      // Prefers solitude, less interactions
-    SOCIAL      // Prefers interactions and exchanges
+public enum CellMood {
+
+    /**
+     * Neutral cell: neither gives nor takes lifePoints when interacting.
+     */
+    NAIVE,
+
+    /**
+     * Generous cell: transfers one of its own lifePoints to each neighbor it interacts with.
+     */
+    HEALER,
+
+    /**
+     * Predatory cell: steals one lifePoint from each neighbor it interacts with.
+     */
+    VAMPIRE
 }
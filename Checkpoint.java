@@ -0,0 +1,282 @@
+package it.polito.extgol;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Durable snapshot of a running simulation, from which the run can be resumed.
+ *
+ * A checkpoint holds the compact board state ({@link BoardState}), the step it
+ * was taken at, the step the run is heading to and the events still to be
+ * applied. It is stored in a single binary file:
+ * <pre>
+ *   int magic, int version, int width, int height, int step, int totalSteps,
+ *   int nameLength, byte[nameLength] name (UTF-8),
+ *   int eventCount, eventCount x (byte EventType ordinal, int start, int period,
+ *       int end, int x, int y, int width, int height),
+ *   alive bits (1 bit per cell, LSB first, padded to a byte),
+ *   int[cells] lifePoints, byte[cells] moods, byte[cells] types,
+ *   int CRC32 of all the preceding bytes
+ * </pre>
+ * Events are the pending entries of the run's {@link EventTimeline}, a width of -1
+ * denoting a board-wide event.
+ *
+ * The state may also be an {@link OffHeapBoardState}, written and read back with
+ * the same layout without going through the heap.
+ *
+ * Files are written through a memory mapping into a temporary sibling file,
+ * forced to disk and atomically renamed over the target, so that a crash
+ * leaves either the previous checkpoint or the new one, never a torn file.
+ */
+public class Checkpoint {
+
+    private static final int MAGIC = 0x4547434B; // "EGCK"
+    private static final int VERSION = 1;
+    private static final int ENTRY_BYTES = 1 + 7 * Integer.BYTES;
+    private static final EventType[] EVENTS = EventType.values();
+
+    private final String gameName;
+    private final int step;
+    private final int totalSteps;
+    private final EventTimeline pendingEvents;
+    private final BoardState state;
+    private final OffHeapBoardState offHeapState;
+
+    /**
+     * @param gameName   name of the checkpointed game
+     * @param step       the step of the generation the state belongs to
+     * @param totalSteps the step the run stops at
+     * @param events     the run's event schedule; only events at or after {@code step} are kept
+     * @param state      the board state at {@code step}
+     */
+    public Checkpoint(String gameName, int step, int totalSteps,
+                      Map<Integer, EventType> events, BoardState state) {
+        this(gameName, step, totalSteps, EventTimeline.of(events), state);
+    }
+
+    /**
+     * @param gameName   name of the checkpointed game
+     * @param step       the step of the generation the state belongs to
+     * @param totalSteps the step the run stops at
+     * @param timeline   the run's events; only occurrences at or after {@code step} are kept
+     * @param state      the board state at {@code step}
+     */
+    public Checkpoint(String gameName, int step, int totalSteps,
+                      EventTimeline timeline, BoardState state) {
+        this.gameName = gameName;
+        this.step = step;
+        this.totalSteps = totalSteps;
+        this.pendingEvents = timeline.from(step);
+        this.state = state;
+        this.offHeapState = null;
+    }
+
+    /**
+     * @param gameName   name of the checkpointed game
+     * @param step       the step of the generation the state belongs to
+     * @param totalSteps the step the run stops at
+     * @param timeline   the run's events; only occurrences at or after {@code step} are kept
+     * @param state      the off-heap board state at {@code step}, e.g. of an {@link OffHeapSimulation}
+     */
+    public Checkpoint(String gameName, int step, int totalSteps,
+                      EventTimeline timeline, OffHeapBoardState state) {
+        this.gameName = gameName;
+        this.step = step;
+        this.totalSteps = totalSteps;
+        this.pendingEvents = timeline.from(step);
+        this.state = null;
+        this.offHeapState = state;
+    }
+
+    public String getGameName() {
+        return gameName;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public int getTotalSteps() {
+        return totalSteps;
+    }
+
+    /**
+     * Returns the events not yet applied when the checkpoint was taken.
+     */
+    public EventTimeline getPendingEvents() {
+        return pendingEvents;
+    }
+
+    /** Returns the board state, or null if the checkpoint holds an off-heap one. */
+    public BoardState getState() {
+        return state;
+    }
+
+    /** Returns the off-heap board state, or null if the checkpoint holds an on-heap one. */
+    public OffHeapBoardState getOffHeapState() {
+        return offHeapState;
+    }
+
+    /**
+     * Atomically writes this checkpoint to the given file, replacing any previous one.
+     *
+     * @param path the checkpoint file
+     * @throws ExtendedGameOfLifeException if the file cannot be written
+     */
+    public void writeTo(Path path) throws ExtendedGameOfLifeException {
+        byte[] name = gameName.getBytes(UTF_8);
+        long cells = state != null ? state.size() : offHeapState.size();
+        long size = 7L * Integer.BYTES + name.length
+                + Integer.BYTES + (long) pendingEvents.getEvents().size() * ENTRY_BYTES
+                + (cells + 7) / 8 + cells * Integer.BYTES + 2 * cells
+                + Integer.BYTES;
+        if (size > Integer.MAX_VALUE)
+            throw new ExtendedGameOfLifeException("Board too large for a single checkpoint file");
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            MappedByteBuffer buf = ch.map(MapMode.READ_WRITE, 0, size);
+            buf.putInt(MAGIC).putInt(VERSION)
+               .putInt(state != null ? state.getWidth() : offHeapState.getWidth())
+               .putInt(state != null ? state.getHeight() : offHeapState.getHeight())
+               .putInt(step).putInt(totalSteps)
+               .putInt(name.length).put(name);
+
+            buf.putInt(pendingEvents.getEvents().size());
+            for (ScheduledEvent e : pendingEvents.getEvents()) {
+                buf.put((byte) e.getType().ordinal())
+                   .putInt(e.getStart()).putInt(e.getPeriod()).putInt(e.getEnd())
+                   .putInt(e.getX()).putInt(e.getY()).putInt(e.getWidth()).putInt(e.getHeight());
+            }
+
+            if (state != null) {
+                state.writeAliveBits(buf);
+                buf.asIntBuffer().put(state.lifePointsPlane());
+                buf.position(buf.position() + (int) cells * Integer.BYTES);
+                buf.put(state.moodPlane());
+                buf.put(state.typePlane());
+            } else {
+                offHeapState.writeAliveBits(buf);
+                offHeapState.writeLifePoints(buf);
+                offHeapState.writeMoods(buf);
+                offHeapState.writeTypes(buf);
+            }
+
+            buf.putInt(crc(buf, buf.position()));
+            buf.force();
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot write checkpoint " + path, e);
+        }
+
+        try {
+            Files.move(tmp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot publish checkpoint " + path, e);
+        }
+    }
+
+    /**
+     * Reads a checkpoint written by {@link #writeTo(Path)}.
+     *
+     * @param path the checkpoint file
+     * @return the decoded checkpoint
+     * @throws ExtendedGameOfLifeException if the file cannot be read or is corrupted
+     */
+    public static Checkpoint readFrom(Path path) throws ExtendedGameOfLifeException {
+        return read(path, null);
+    }
+
+    /**
+     * Reads a checkpoint written by {@link #writeTo(Path)}, decoding its board state
+     * straight into an off-heap state instead of the heap.
+     *
+     * @param path the checkpoint file
+     * @param into the state receiving the board, with the dimensions of the checkpointed one
+     * @return the decoded checkpoint, holding {@code into}
+     * @throws ExtendedGameOfLifeException if the file cannot be read, is corrupted
+     *                                     or does not match the dimensions of {@code into}
+     */
+    public static Checkpoint readFrom(Path path, OffHeapBoardState into) throws ExtendedGameOfLifeException {
+        if (into == null)
+            throw new ExtendedGameOfLifeException("Off-heap state cannot be null");
+        return read(path, into);
+    }
+
+    private static Checkpoint read(Path path, OffHeapBoardState into) throws ExtendedGameOfLifeException {
+        try (FileChannel ch = FileChannel.open(path, READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE || size < 8L * Integer.BYTES)
+                throw new ExtendedGameOfLifeException("Not a checkpoint file: " + path);
+            MappedByteBuffer buf = ch.map(MapMode.READ_ONLY, 0, size);
+
+            if (buf.getInt() != MAGIC)
+                throw new ExtendedGameOfLifeException("Not a checkpoint file: " + path);
+            int version = buf.getInt();
+            if (version != VERSION)
+                throw new ExtendedGameOfLifeException("Unsupported checkpoint version " + version);
+            int storedCrc = buf.getInt((int) size - Integer.BYTES);
+            if (crc(buf, (int) size - Integer.BYTES) != storedCrc)
+                throw new ExtendedGameOfLifeException("Corrupted checkpoint file: " + path);
+
+            int width = buf.getInt();
+            int height = buf.getInt();
+            int step = buf.getInt();
+            int totalSteps = buf.getInt();
+            byte[] name = new byte[buf.getInt()];
+            buf.get(name);
+
+            int eventCount = buf.getInt();
+            EventTimeline events = new EventTimeline();
+            for (int i = 0; i < eventCount; i++) {
+                EventType type = EVENTS[buf.get()];
+                events.add(ScheduledEvent.of(type, buf.getInt(), buf.getInt(), buf.getInt(),
+                        buf.getInt(), buf.getInt(), buf.getInt(), buf.getInt()));
+            }
+
+            if (into != null) {
+                if (into.getWidth() != width || into.getHeight() != height)
+                    throw new ExtendedGameOfLifeException("Checkpoint dimensions do not match the off-heap state");
+                into.readAliveBits(buf);
+                into.readLifePoints(buf);
+                into.readMoods(buf);
+                into.readTypes(buf);
+                return new Checkpoint(new String(name, UTF_8), step, totalSteps, events, into);
+            }
+
+            BoardState state = new BoardState(width, height);
+            int cells = state.size();
+            state.readAliveBits(buf);
+            buf.asIntBuffer().get(state.lifePointsPlane());
+            buf.position(buf.position() + cells * Integer.BYTES);
+            buf.get(state.moodPlane());
+            buf.get(state.typePlane());
+
+            return new Checkpoint(new String(name, UTF_8), step, totalSteps, events, state);
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot read checkpoint " + path, e);
+        }
+    }
+
+    private static int crc(ByteBuffer buf, int length) {
+        ByteBuffer view = buf.duplicate();
+        view.position(0).limit(length);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,58 @@
+package it.polito.extgol;
+
+/**
+ * Describes a recurrence detected while running a simulation.
+ *
+ * Once the board state at step {@code start + period} equals the state at
+ * {@code start}, and no further events are scheduled, the evolution repeats
+ * forever with the given period. A period of 1 denotes a still life.
+ */
+public final class Cycle {
+
+    /** First step of the repeating sequence. */
+    private final int start;
+
+    /** Number of steps after which the state repeats. */
+    private final int period;
+
+    public Cycle(int start, int period) throws ExtendedGameOfLifeException {
+        if (start < 0 || period <= 0)
+            throw new ExtendedGameOfLifeException("Invalid cycle: start=" + start + ", period=" + period);
+        this.start = start;
+        this.period = period;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    /**
+     * Tells whether the cycle is a still life, i.e. the state no longer changes.
+     */
+    public boolean isStillLife() {
+        return period == 1;
+    }
+
+    /**
+     * Maps any step to the earliest step holding the same board state.
+     *
+     * Steps before the start of the cycle map to themselves.
+     *
+     * @param step a simulation step, possibly beyond the last simulated one
+     * @return the equivalent step within [0, start + period)
+     */
+    public int equivalentStep(int step) {
+        if (step < start)
+            return step;
+        return start + (step - start) % period;
+    }
+
+    @Override
+    public String toString() {
+        return "Cycle[start=" + start + ", period=" + period + "]";
+    }
+}
@@ -0,0 +1,66 @@
+package it.polito.extgol;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Detects when a simulation revisits a recent board state.
+ *
+ * The detector remembers the state hashes of the last {@code window}
+ * generations it observed. When a new generation hashes to a remembered
+ * value, the two snapshots are compared cell by cell to rule out collisions,
+ * and the resulting {@link Cycle} is reported. Periods up to the window
+ * size are therefore detected.
+ */
+public class CycleDetector {
+
+    private final int window;
+
+    /** Hash to generation, for the generations still within the window. */
+    private final Map<Long, Generation> recent = new HashMap<>();
+
+    /** Observation order, oldest first, used to evict generations leaving the window. */
+    private final Deque<Generation> order = new ArrayDeque<>();
+
+    /**
+     * @param window number of recent generations to compare against
+     * @throws ExtendedGameOfLifeException if the window is not positive
+     */
+    public CycleDetector(int window) throws ExtendedGameOfLifeException {
+        if (window <= 0)
+            throw new ExtendedGameOfLifeException("Cycle detection window must be positive");
+        this.window = window;
+    }
+
+    /**
+     * Records a generation and checks it against the recent ones.
+     *
+     * @param generation the newest generation of the run
+     * @return the detected cycle, or null if the state is new within the window
+     */
+    public Cycle observe(Generation generation) {
+        long hash = generation.getStateHash();
+        Generation previous = recent.get(hash);
+        if (previous != null && previous.sameStateAs(generation)) {
+            return new Cycle(previous.getStep(), generation.getStep() - previous.getStep());
+        }
+
+        if (order.size() == window) {
+            Generation evicted = order.removeFirst();
+            recent.remove(evicted.getStateHash(), evicted);
+        }
+        order.addLast(generation);
+        recent.put(hash, generation);
+        return null;
+    }
+
+    /**
+     * Forgets all observed generations.
+     */
+    public void reset() {
+        recent.clear();
+        order.clear();
+    }
+}
@@ -0,0 +1,199 @@
+package it.polito.extgol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Schedule of the events of a run, replacing a plain step-to-event map.
+ *
+ * A timeline holds any number of {@link ScheduledEvent}s, one-shot or recurring,
+ * board-wide or scoped to an area, so that several events may occur at the same
+ * step; they are then applied in the order they were added.
+ *
+ * Runs walk the timeline with a {@link Cursor}, which always knows the next step
+ * holding an event: steps in between need no lookup at all and can be simulated
+ * in a single batch.
+ */
+public final class EventTimeline {
+
+    private final List<ScheduledEvent> events = new ArrayList<>();
+
+    public EventTimeline() {
+    }
+
+    /**
+     * Builds the timeline of a step-to-event map, the classic schedule of {@code run}.
+     */
+    public static EventTimeline of(Map<Integer, EventType> eventMap) throws ExtendedGameOfLifeException {
+        EventTimeline timeline = new EventTimeline();
+        for (Map.Entry<Integer, EventType> e : new TreeMap<>(eventMap).entrySet()) {
+            timeline.add(ScheduledEvent.once(e.getKey(), e.getValue()));
+        }
+        return timeline;
+    }
+
+    /**
+     * Adds an event after those already scheduled.
+     *
+     * @return this timeline
+     */
+    public EventTimeline add(ScheduledEvent event) throws ExtendedGameOfLifeException {
+        if (event == null)
+            throw new ExtendedGameOfLifeException("Event cannot be null");
+        events.add(event);
+        return this;
+    }
+
+    /**
+     * Schedules a board-wide event at a single step.
+     *
+     * @return this timeline
+     */
+    public EventTimeline schedule(int step, EventType type) throws ExtendedGameOfLifeException {
+        return add(ScheduledEvent.once(step, type));
+    }
+
+    /**
+     * Schedules a board-wide event at a single step in place of the one-shot,
+     * board-wide events already scheduled there, as a step-to-event map would;
+     * recurring and scoped entries are kept. The new event takes the place of
+     * the first one replaced, or comes after all others if there was none.
+     *
+     * @return this timeline
+     */
+    public EventTimeline reschedule(int step, EventType type) throws ExtendedGameOfLifeException {
+        ScheduledEvent event = ScheduledEvent.once(step, type);
+        int at = -1;
+        for (int k = events.size() - 1; k >= 0; k--) {
+            ScheduledEvent e = events.get(k);
+            if (e.getStart() == step && !e.isRecurring() && !e.isScoped()) {
+                events.remove(k);
+                at = k;
+            }
+        }
+        if (at < 0)
+            return add(event);
+        events.add(at, event);
+        return this;
+    }
+
+    /**
+     * Schedules a board-wide event every {@code period} steps from {@code start}.
+     *
+     * @return this timeline
+     */
+    public EventTimeline scheduleRecurring(EventType type, int start, int period) throws ExtendedGameOfLifeException {
+        return add(ScheduledEvent.recurring(type, start, period));
+    }
+
+    /**
+     * Returns the scheduled entries, in application order.
+     */
+    public List<ScheduledEvent> getEvents() {
+        return Collections.unmodifiableList(events);
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    /**
+     * Returns the events occurring at the given step, in application order.
+     */
+    public List<ScheduledEvent> eventsAt(int step) {
+        List<ScheduledEvent> at = new ArrayList<>();
+        for (ScheduledEvent e : events) {
+            if (e.nextOccurrence(step) == step)
+                at.add(e);
+        }
+        return at;
+    }
+
+    /**
+     * Returns the last step before {@code step} at which some event occurs, or -1.
+     */
+    public int lastStepBefore(int step) {
+        int last = -1;
+        for (ScheduledEvent e : events) {
+            last = Math.max(last, e.lastOccurrenceBefore(step));
+        }
+        return last;
+    }
+
+    /**
+     * Returns the timeline of the occurrences at or after the given step.
+     */
+    public EventTimeline from(int step) throws ExtendedGameOfLifeException {
+        EventTimeline pending = new EventTimeline();
+        for (ScheduledEvent e : events) {
+            ScheduledEvent rest = e.from(step);
+            if (rest != null)
+                pending.add(rest);
+        }
+        return pending;
+    }
+
+    /**
+     * Starts walking the occurrences at or after the given step.
+     */
+    public Cursor cursor(int step) {
+        return new Cursor(step);
+    }
+
+    /**
+     * Iterator over the occurrences of a timeline, in step order.
+     *
+     * Later changes to the timeline are not seen by existing cursors.
+     */
+    public final class Cursor {
+
+        /** Pending occurrences: {next step, position in the timeline}. */
+        private final PriorityQueue<int[]> queue = new PriorityQueue<>(
+                (a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+        private final List<ScheduledEvent> snapshot = new ArrayList<>(events);
+        private final List<ScheduledEvent> due = new ArrayList<>();
+
+        private Cursor(int step) {
+            for (int k = 0; k < snapshot.size(); k++) {
+                int next = snapshot.get(k).nextOccurrence(step);
+                if (next >= 0)
+                    queue.add(new int[] { next, k });
+            }
+        }
+
+        /**
+         * Returns the next step holding an event, or {@link Integer#MAX_VALUE}
+         * if no event is left.
+         */
+        public int nextStep() {
+            int[] head = queue.peek();
+            return head != null ? head[0] : Integer.MAX_VALUE;
+        }
+
+        /**
+         * Moves the cursor to the given step and returns the events occurring at
+         * it, in application order; occurrences before it are skipped.
+         *
+         * The returned list is reused by the next call.
+         */
+        public List<ScheduledEvent> advanceTo(int step) {
+            due.clear();
+            while (!queue.isEmpty() && queue.peek()[0] <= step) {
+                int[] head = queue.poll();
+                ScheduledEvent event = snapshot.get(head[1]);
+                if (head[0] == step)
+                    due.add(event);
+                int next = event.nextOccurrence(Math.max(head[0], step) + 1);
+                if (next >= 0) {
+                    head[0] = next;
+                    queue.add(head);
+                }
+            }
+            return due;
+        }
+    }
+}
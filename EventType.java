@@ -24,6 +24,8 @@ public enum EventType {
     /** 
      * Each Vampire cell steals 1 lifePoint from each adjacent Naive or Healer 
      * and converts them into Vampires.
+     * Only the Vampires present before the event feed; a cell adjacent to more
+     * Vampires than it has lifePoints feeds the first ones in row-major order.
      */
     BLOOD_MOON,
 
@@ -0,0 +1,39 @@
+package it.polito.extgol;
+
+/**
+ * Computes generations on compact board states, as an alternative to the
+ * cell-by-cell evolution of {@link ExtendedGameOfLife#evolve(Generation)}.
+ *
+ * The cells counted around each cell are given by the engine's {@link Neighborhood},
+ * cells outside the board counting as dead; its extent is {@link #getRadius()}.
+ * By default it is the 8-cell Moore neighborhood of radius 1 of the reference
+ * evolution: engines using it with the reference rule, such as those of
+ * {@link EvolutionEngines#best()}, must produce exactly the same results. A
+ * {@link NeighborhoodEvolutionEngine} may use Moore(r), von Neumann(r) or
+ * hexagonal neighborhoods, and other rules, instead.
+ *
+ * @see EvolutionEngines
+ */
+public interface EvolutionEngine {
+
+    /**
+     * Computes the aliveness of every cell in the next generation.
+     *
+     * Only the aliveness plane of {@code next} is written; lifePoints, moods
+     * and types are not affected by evolution.
+     *
+     * @param current the current state
+     * @param next    the state receiving the next aliveness, with the same
+     *                dimensions and distinct from {@code current}
+     */
+    void step(BoardState current, BoardState next);
+
+    /**
+     * Returns the largest distance, along either axis, between a cell and the
+     * cells its next state depends on. Simulations exchanging one row of halo
+     * between bands of the board only accept engines of radius 1.
+     */
+    default int getRadius() {
+        return 1;
+    }
+}
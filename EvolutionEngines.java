@@ -0,0 +1,78 @@
+package it.polito.extgol;
+
+/**
+ * Factory of {@link EvolutionEngine}s, choosing at runtime the fastest
+ * implementation the JVM supports.
+ */
+public final class EvolutionEngines {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_ENGINE = "it.polito.extgol.VectorEvolutionEngine";
+
+    private EvolutionEngines() {} // utility class need not to be instantiated
+
+    /**
+     * Returns the vector engine if the Vector API is available, the scalar one otherwise.
+     */
+    public static EvolutionEngine best() {
+        try {
+            return vector();
+        } catch (ExtendedGameOfLifeException e) {
+            return scalar();
+        }
+    }
+
+    /**
+     * Returns the portable, one-cell-at-a-time engine.
+     */
+    public static EvolutionEngine scalar() {
+        return new ScalarEvolutionEngine(RuleTable.reference());
+    }
+
+    /**
+     * Returns an engine applying the reference rule of {@link Cell} over the given
+     * neighborhood, e.g. {@code Neighborhood.moore(5)}.
+     */
+    public static EvolutionEngine withNeighborhood(Neighborhood neighborhood) throws ExtendedGameOfLifeException {
+        return withNeighborhood(neighborhood, RuleTable.reference(neighborhood.getMaxNeighbors()));
+    }
+
+    /**
+     * Returns an engine applying the given rule over the given neighborhood.
+     */
+    public static EvolutionEngine withNeighborhood(Neighborhood neighborhood, RuleTable rule)
+            throws ExtendedGameOfLifeException {
+        return new NeighborhoodEvolutionEngine(neighborhood, rule);
+    }
+
+    /**
+     * Returns the engine based on the Java Vector API.
+     *
+     * @throws ExtendedGameOfLifeException if the Vector API is not available
+     *         (the JVM must be started with --add-modules jdk.incubator.vector)
+     */
+    public static EvolutionEngine vector() throws ExtendedGameOfLifeException {
+        if (!ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent())
+            throw new ExtendedGameOfLifeException("Vector API not available: module " + VECTOR_MODULE + " not loaded");
+        try {
+            // loaded reflectively, so that this class links without the incubator module
+            return (EvolutionEngine) Class.forName(VECTOR_ENGINE)
+                    .getDeclaredConstructor(RuleTable.class)
+                    .newInstance(RuleTable.reference());
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new ExtendedGameOfLifeException("Vector API not available", e);
+        }
+    }
+
+    /**
+     * Tells whether the vector engine can be used in this JVM.
+     */
+    public static boolean isVectorApiAvailable() {
+        try {
+            vector();
+            return true;
+        } catch (ExtendedGameOfLifeException e) {
+            return false;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package it.polito.extgol;
 
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityTransaction;
@@ -14,9 +18,88 @@ import jakarta.persistence.EntityTransaction;
  *   - Evolve a single generation or advance multiple steps.
  *   - Visualize the board state and retrieve alive cells by coordinate.
  *   - Persist and reload entire game instances.
+ *   - Checkpoint long runs and resume them after a crash.
+ *   - Run simulations asynchronously, streaming their progress.
+ *   - Split large boards among several workers, possibly in other JVMs.
+ *   - Replay saved games, seeking to any step from the stored generations.
  */
 public class ExtendedGameOfLife {
 
+    /** Number of recent generations compared when looking for cycles; 0 disables detection. */
+    private int cycleWindow = 0;
+
+    /** File periodic checkpoints are written to; null disables checkpointing. */
+    private Path checkpointPath;
+
+    /** Number of generations between two checkpoints. */
+    private int checkpointInterval;
+
+    /** Engine evaluating the evolution rule on compact states; null for cell-by-cell evolution. */
+    private EvolutionEngine engine;
+
+    /** Aliveness buffers used by the engine, reused across steps. */
+    private BoardState engineCurrent;
+    private BoardState engineNext;
+
+    /** Id of the game last saved through this instance, whose events {@link #loadEvents()} returns. */
+    private Long lastSavedGameId;
+
+    /**
+     * Enables (or disables, with 0) cycle detection in {@code run}.
+     *
+     * When enabled, a run stops as soon as the board revisits a state seen within
+     * the last {@code window} generations and no more events are scheduled: the
+     * detected period is reported through {@link Game#getDetectedCycle()}, and
+     * later steps can be resolved through {@link Game#getGeneration(int)}.
+     *
+     * @param window number of recent generations to remember, 0 to disable
+     * @throws ExtendedGameOfLifeException if the window is negative
+     */
+    public void setCycleDetectionWindow(int window) throws ExtendedGameOfLifeException {
+        if (window < 0)
+            throw new ExtendedGameOfLifeException("Cycle detection window cannot be negative");
+        this.cycleWindow = window;
+    }
+
+    public int getCycleDetectionWindow() {
+        return cycleWindow;
+    }
+
+    /**
+     * Enables periodic checkpoints of running simulations.
+     *
+     * Every {@code interval} generations, {@code run} atomically replaces the given
+     * file with a {@link Checkpoint} of the current state, from which an interrupted
+     * run can be continued with {@link #resume(Path)}.
+     *
+     * @param path     the checkpoint file, or null to disable checkpointing
+     * @param interval number of generations between two checkpoints
+     * @throws ExtendedGameOfLifeException if a path is given with a non-positive interval
+     */
+    public void setCheckpointing(Path path, int interval) throws ExtendedGameOfLifeException {
+        if (path != null && interval <= 0)
+            throw new ExtendedGameOfLifeException("Checkpoint interval must be positive");
+        this.checkpointPath = path;
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * Selects the engine computing the next aliveness of the cells in {@code evolve}.
+     *
+     * By default (null) every cell evaluates its own rule over its neighbor tiles;
+     * an engine, e.g. {@link EvolutionEngines#best()}, evaluates the whole board on
+     * a compact aliveness plane instead, with identical results.
+     *
+     * @param engine the engine to use, or null for the cell-by-cell evolution
+     */
+    public void setEngine(EvolutionEngine engine) {
+        this.engine = engine;
+    }
+
+    public EvolutionEngine getEngine() {
+        return engine;
+    }
+
     /**
      * Computes and returns the next generation based on the current one.
      *
@@ -42,6 +125,15 @@ public class ExtendedGameOfLife {
                 "Generation must have associated Board and Game!");
         }
 
+        StatisticsSeries statistics = game.getStatistics();
+        if (!statistics.endsAt(current.getStep())) {
+            statistics.reset(current.getStep(), board);
+        }
+
+        if (engine != null) {
+            return evolveWithEngine(current, board);
+        }
+
         // Step 1: Compute next state for each cell based only on current generation state
         Map<Cell, Boolean> nextStates = new HashMap<>();
         for (Tile tile : board.getTiles()) {
@@ -57,17 +149,71 @@ public class ExtendedGameOfLife {
         }
 
         // Step 2: Instantiate the next Generation based on current
-        Generation nextGen = Generation.createNextGeneration(current);
+        Generation nextGen = Generation.beginNextGeneration(current);
 
         // Step 3: Apply all computed states simultaneously to avoid intermediate inconsistencies
+        PopulationPyramid pyramid = game.evolvingPyramid(current);
+        int born = 0;
+        int died = 0;
         for (Map.Entry<Cell, Boolean> e : nextStates.entrySet()) {
             Cell c = e.getKey();
-            c.setAlive(e.getValue());
-            c.addGeneration(nextGen);  // register cell with new generation
+            boolean alive = e.getValue();
+            if (alive != c.isAlive()) {
+                if (alive) born++;
+                else died++;
+                if (pyramid != null) pyramid.aliveChanged(c.getX(), c.getY(), alive);
+            }
+            c.setAlive(alive);
+        }
+
+        // Step 4: Persist snapshot of the next generation state
+        nextGen.snap();
+        game.publishGeneration(nextGen);
+        game.getStatistics().record(nextGen.getStep(), born, died);
+        if (pyramid != null) game.pyramidEvolved(nextGen);
+
+        return nextGen;
+    }
+
+    /**
+     * Same as {@link #evolve(Generation)}, with the next aliveness of every cell
+     * computed by the configured engine on the compact aliveness plane.
+     */
+    private Generation evolveWithEngine(Generation current, Board board) {
+        if (engineCurrent == null || engineCurrent.getWidth() != board.getWidth()
+                || engineCurrent.getHeight() != board.getHeight()) {
+            engineCurrent = new BoardState(board.getWidth(), board.getHeight());
+            engineNext = new BoardState(board.getWidth(), board.getHeight());
+        }
+
+        // Step 1: Compute next state for each cell based only on current generation state
+        engineCurrent.captureAliveness(board);
+        engine.step(engineCurrent, engineNext);
+
+        // Step 2: Instantiate the next Generation based on current
+        Generation nextGen = Generation.beginNextGeneration(current);
+
+        // Step 3: Apply all computed states simultaneously
+        Game game = current.getGame();
+        PopulationPyramid pyramid = game.evolvingPyramid(current);
+        int born = 0;
+        int died = 0;
+        for (Tile tile : board.getTiles()) {
+            Cell c = tile.getCell();
+            boolean alive = engineNext.isAlive(engineNext.index(c.getX(), c.getY()));
+            if (alive != c.isAlive()) {
+                if (alive) born++;
+                else died++;
+                if (pyramid != null) pyramid.aliveChanged(c.getX(), c.getY(), alive);
+            }
+            c.setAlive(alive);
         }
 
         // Step 4: Persist snapshot of the next generation state
-        nextGen.snapCells();
+        nextGen.snap();
+        game.publishGeneration(nextGen);
+        game.getStatistics().record(nextGen.getStep(), born, died);
+        if (pyramid != null) game.pyramidEvolved(nextGen);
 
         return nextGen;
     }
@@ -78,17 +224,15 @@ public class ExtendedGameOfLife {
      * Starting from the game's initial generation, this method repeatedly computes the next
      * generation and appends it to the game's history.
      *
+     * If cycle detection is enabled, the run stops early once the board settles into
+     * a still life or an oscillator.
+     *
      * @param game  The Game instance whose generations will be advanced.
      * @param steps The number of evolution steps (generations) to perform.
      * @return The same Game instance, updated with the new generation.
      */
     public Game run(Game game, int steps) {
-        Generation current = game.getStart();
-        for (int i = 0; i < steps; i++) {
-            Generation next = evolve(current);
-            current = next;
-        }
-        return game;
+        return run(game, steps, Map.of());
     }
 
     /**
@@ -104,6 +248,9 @@ public class ExtendedGameOfLife {
      *      corresponding event is applied to all tiles before evolution.
      *   2. The board then evolves to the next generation, which is added to the game.
      *
+     * If cycle detection is enabled, the run stops early once the board settles into
+     * a still life or an oscillator after the last scheduled event.
+     *
      * @param game      The Game instance to run and update.
      * @param steps     The total number of generations to simulate.
      * @param eventMap  A map from generation index (0-based) to the EventType to trigger;
@@ -111,65 +258,318 @@ public class ExtendedGameOfLife {
      * @return          The same Game instance, now containing the extended generation history.
      */
     public Game run(Game game, int steps, Map<Integer, EventType> eventMap) {
-        Generation current = game.getStart();
-
-        for (int i = 0; i < steps; i++) {
-            EventType event = eventMap.get(i);
-            if (event != null) {
-                Board board = current.getBoard();
-
-                for (Tile tile : board.getTiles()) {
-                    Cell cell = tile.getCell();
-                    if (cell == null) continue;
-
-                    switch (event) {
-                        case CATACLYSM:
-                            cell.setLifePoints(0);
-                            break;
-
-                        case FAMINE:
-                            cell.setLifePoints(Math.max(0, cell.getLifePoints() - 1));
-                            break;
-
-                        case BLOOM:
-                            cell.setLifePoints(cell.getLifePoints() + 2);
-                            break;
-
-                        case BLOOD_MOON:
-                            if (cell.getMood() == CellMood.VAMPIRE) {
-                                for (Tile neighborTile : tile.getNeighbors()) {
-                                    Cell neighborCell = neighborTile.getCell();
-                                    if (neighborCell == null) continue;
-
-                                    CellMood neighborMood = neighborCell.getMood();
-                                    if (neighborMood == CellMood.NAIVE || neighborMood == CellMood.HEALER) {
-                                        int stolen = Math.min(1, neighborCell.getLifePoints());
-                                        neighborCell.setLifePoints(neighborCell.getLifePoints() - stolen);
-                                        cell.setLifePoints(cell.getLifePoints() + stolen);
-                                        neighborCell.setMood(CellMood.VAMPIRE);
-                                    }
-                                }
-                            }
-                            break;
-
-                        case SANCTUARY:
-                            if (cell.getMood() == CellMood.HEALER) {
-                                cell.setLifePoints(cell.getLifePoints() + 1);
-                            } else if (cell.getMood() == CellMood.VAMPIRE) {
-                                cell.setMood(CellMood.NAIVE);
-                            }
-                            break;
+        return run(game, steps, EventTimeline.of(eventMap));
+    }
+
+    /**
+     * Advances the simulation like {@link #run(Game, int, Map)}, applying the events
+     * of a timeline: several events may occur at the same step, in timeline order,
+     * recur periodically or be restricted to an area of the board.
+     *
+     * @param game     The Game instance to run and update.
+     * @param steps    The total number of generations to simulate.
+     * @param timeline The events to apply.
+     * @return         The same Game instance, now containing the extended generation history.
+     */
+    public Game run(Game game, int steps, EventTimeline timeline) {
+        return runFrom(game, game.getStart(), steps, timeline, null);
+    }
+
+    /**
+     * Starts {@link #run(Game, int, Map)} on the common fork-join pool.
+     *
+     * @see #runAsync(Game, int, Map, Executor)
+     */
+    public SimulationHandle runAsync(Game game, int steps, Map<Integer, EventType> eventMap) {
+        return runAsync(game, steps, eventMap, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Starts {@link #run(Game, int, Map)} on the given executor and returns immediately.
+     *
+     * The returned handle completes with the game, can cancel the run between two
+     * steps, and streams the frame of every generation produced to its progress
+     * subscribers, which are served on the same executor. Runs sharing this
+     * instance share its engine buffers, so they must not overlap.
+     *
+     * @param game     The Game instance to run and update.
+     * @param steps    The step to advance the game to.
+     * @param eventMap A map from generation index to the EventType to trigger.
+     * @param executor The executor running the simulation and serving subscribers.
+     * @return         A handle on the running simulation.
+     */
+    public SimulationHandle runAsync(Game game, int steps, Map<Integer, EventType> eventMap, Executor executor) {
+        return runAsync(game, steps, EventTimeline.of(eventMap), executor);
+    }
+
+    /**
+     * Starts {@link #run(Game, int, EventTimeline)} on the given executor and returns
+     * immediately, see {@link #runAsync(Game, int, Map, Executor)}.
+     */
+    public SimulationHandle runAsync(Game game, int steps, EventTimeline timeline, Executor executor) {
+        Objects.requireNonNull(executor, "executor");
+        SimulationHandle handle = new SimulationHandle(executor);
+        executor.execute(() -> {
+            try {
+                handle.complete(runFrom(game, game.getStart(), steps, timeline, handle));
+            } catch (Throwable t) {
+                handle.fail(t);
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * Advances the simulation like {@link #run(Game, int, Map)}, but on double-buffered
+     * compact board states: steps do not touch cells nor allocate, and generations
+     * are only materialized every {@code snapshotInterval} steps and at the end.
+     *
+     * The simulation starts from the game's newest generation and uses the configured
+     * engine, or {@link EvolutionEngines#best()} if none is set. Checkpoints are written
+     * as in {@code run}; cycle detection needs every generation and is not performed.
+     *
+     * @param game             The Game instance to run and update.
+     * @param steps            The step to advance the game to.
+     * @param eventMap         A map from generation index to the EventType to trigger.
+     * @param snapshotInterval Number of steps between two stored generations;
+     *                         0 stores only the final one.
+     * @return                 The same Game instance, with the snapshots appended to its history.
+     */
+    public Game runBuffered(Game game, int steps, Map<Integer, EventType> eventMap, int snapshotInterval)
+            throws ExtendedGameOfLifeException {
+        return runBuffered(game, steps, EventTimeline.of(eventMap), snapshotInterval);
+    }
+
+    /**
+     * Advances the simulation like {@link #runBuffered(Game, int, Map, int)}, applying
+     * the events of a timeline.
+     */
+    public Game runBuffered(Game game, int steps, EventTimeline timeline, int snapshotInterval)
+            throws ExtendedGameOfLifeException {
+        if (snapshotInterval < 0)
+            throw new ExtendedGameOfLifeException("Snapshot interval cannot be negative");
+        BufferedSimulation sim = new BufferedSimulation(game, engine != null ? engine : EvolutionEngines.best());
+        EventTimeline.Cursor cursor = timeline.cursor(sim.getStep());
+
+        for (int i = sim.getStep(); i < steps; i++) {
+            if (cursor.nextStep() == i) {
+                game.eventsApplied(i);
+                for (ScheduledEvent event : cursor.advanceTo(i)) {
+                    sim.applyEvent(event);
+                }
+            }
+            sim.step();
+
+            int step = sim.getStep();
+            if (checkpointPath != null && step % checkpointInterval == 0) {
+                new Checkpoint(game.getName(), step, steps, timeline, sim.getState()).writeTo(checkpointPath);
+            }
+            if (snapshotInterval > 0 && step % snapshotInterval == 0) {
+                sim.snapshot();
+            }
+        }
+        sim.snapshot();
+        return game;
+    }
+
+    /**
+     * Advances the simulation like {@link #runBuffered}, with the board split into
+     * bands evolved by worker threads of this JVM.
+     *
+     * @param game             The Game instance to run and update.
+     * @param steps            The step to advance the game to.
+     * @param eventMap         A map from generation index to the EventType to trigger.
+     * @param workers          Number of bands, each evolved by its own thread.
+     * @param snapshotInterval Number of steps between two stored generations;
+     *                         0 stores only the final one.
+     * @return                 The same Game instance, with the snapshots appended to its history.
+     */
+    public Game runPartitioned(Game game, int steps, Map<Integer, EventType> eventMap, int workers,
+            int snapshotInterval) throws ExtendedGameOfLifeException {
+        return runPartitioned(game, steps, EventTimeline.of(eventMap), workers, snapshotInterval);
+    }
+
+    /**
+     * Advances the simulation like {@link #runPartitioned(Game, int, Map, int, int)},
+     * applying the events of a timeline.
+     */
+    public Game runPartitioned(Game game, int steps, EventTimeline timeline, int workers,
+            int snapshotInterval) throws ExtendedGameOfLifeException {
+        InProcessTransport[] endpoints = InProcessTransport.create(workers);
+        try {
+            for (int w = 1; w <= workers; w++) {
+                Thread worker = new Thread(new PartitionWorker(endpoints[w], EvolutionEngines.best()),
+                        "extgol-worker-" + w);
+                worker.setDaemon(true);
+                worker.start();
+            }
+            return runPartitioned(game, steps, timeline, endpoints[PartitionTransport.COORDINATOR], workers,
+                    snapshotInterval);
+        } finally {
+            for (InProcessTransport endpoint : endpoints) {
+                endpoint.close();
+            }
+        }
+    }
+
+    /**
+     * Advances the simulation like {@link #runBuffered}, with the board split into
+     * bands evolved by {@link PartitionWorker}s already listening on the transport,
+     * e.g. in other processes. The workers are stopped at the end of the run.
+     *
+     * Events and snapshots produce exactly the generations of a single-node run.
+     * Checkpoints, cycle detection and statistics are not available in this mode.
+     *
+     * @param game             The Game instance to run and update.
+     * @param steps            The step to advance the game to.
+     * @param eventMap         A map from generation index to the EventType to trigger.
+     * @param coordinator      The coordinator's endpoint.
+     * @param workers          Number of workers, numbered 1..workers on the transport.
+     * @param snapshotInterval Number of steps between two stored generations;
+     *                         0 stores only the final one.
+     * @return                 The same Game instance, with the snapshots appended to its history.
+     */
+    public Game runPartitioned(Game game, int steps, Map<Integer, EventType> eventMap,
+            PartitionTransport coordinator, int workers, int snapshotInterval) throws ExtendedGameOfLifeException {
+        return runPartitioned(game, steps, EventTimeline.of(eventMap), coordinator, workers, snapshotInterval);
+    }
+
+    /**
+     * Advances the simulation like
+     * {@link #runPartitioned(Game, int, Map, PartitionTransport, int, int)},
+     * applying the events of a timeline.
+     */
+    public Game runPartitioned(Game game, int steps, EventTimeline timeline,
+            PartitionTransport coordinator, int workers, int snapshotInterval) throws ExtendedGameOfLifeException {
+        if (snapshotInterval < 0)
+            throw new ExtendedGameOfLifeException("Snapshot interval cannot be negative");
+        try (PartitionedSimulation sim = new PartitionedSimulation(game, coordinator, workers)) {
+            EventTimeline.Cursor cursor = timeline.cursor(sim.getStep());
+            int i = sim.getStep();
+            while (i < steps) {
+                if (cursor.nextStep() == i) {
+                    game.eventsApplied(i);
+                    for (ScheduledEvent event : cursor.advanceTo(i)) {
+                        sim.applyEvent(event);
                     }
                 }
+
+                // step in one batch up to the next event or snapshot
+                int until = Math.min(steps, cursor.nextStep());
+                if (snapshotInterval > 0) {
+                    until = Math.min(until, (i / snapshotInterval + 1) * snapshotInterval);
+                }
+                sim.step(until - i);
+                i = until;
+
+                if (snapshotInterval > 0 && i % snapshotInterval == 0) {
+                    sim.snapshot();
+                }
+            }
+            sim.snapshot();
+        }
+        return game;
+    }
+
+    /**
+     * Continues a run from the checkpoint stored in the given file.
+     *
+     * The game is rebuilt from the checkpointed board state, its history starting at
+     * the checkpointed step, and evolved up to the step the interrupted run was heading
+     * to, applying the events that were still pending. Nothing is replayed from the
+     * initial generation.
+     *
+     * @param checkpointPath a file written by a run with checkpointing enabled
+     * @return the resumed game, holding the generations from the checkpoint onwards
+     * @throws ExtendedGameOfLifeException if the checkpoint cannot be read
+     */
+    public Game resume(Path checkpointPath) throws ExtendedGameOfLifeException {
+        Checkpoint checkpoint = Checkpoint.readFrom(checkpointPath);
+        BoardState state = checkpoint.getState();
+
+        Game game = Game.create(checkpoint.getGameName(), state.getWidth(), state.getHeight());
+        state.restore(game.getBoard());
+        Generation start = Generation.createAt(game, game.getBoard(), checkpoint.getStep());
+
+        return runFrom(game, start, checkpoint.getTotalSteps(), checkpoint.getPendingEvents(), null);
+    }
+
+    /**
+     * Evolves the game from the given generation up to step {@code steps},
+     * applying scheduled events, detecting cycles and writing checkpoints.
+     * Statistics restart from a scan of the starting state, then follow the run.
+     * If a handle is given, the frame of each generation is published to it and
+     * the run stops early once it is cancelled.
+     */
+    private Game runFrom(Game game, Generation current, int steps, EventTimeline timeline,
+            SimulationHandle handle) {
+        int lastEventStep = timeline.lastStepBefore(steps);
+        if (lastEventStep < current.getStep())
+            lastEventStep = -1;
+        CycleDetector detector = startCycleDetection(game, lastEventStep < 0 ? current : null);
+        game.getStatistics().reset(current.getStep(), current.getBoard());
+        BoardState checkpointBuffer = checkpointPath != null ? BoardState.of(current.getBoard()) : null;
+        EventTimeline.Cursor cursor = timeline.cursor(current.getStep());
+
+        for (int i = current.getStep(); i < steps; i++) {
+            if (handle != null && handle.isCancelled())
+                break;
+            if (cursor.nextStep() == i) {
+                game.eventsApplied(i);
+                for (ScheduledEvent event : cursor.advanceTo(i)) {
+                    game.unrollEvent(event.getType(), event.getRegion());
+                }
             }
 
             Generation next = evolve(current);
             current = next;
+            if (handle != null)
+                handle.publish(next.getSnapshot());
+
+            if (checkpointBuffer != null && next.getStep() % checkpointInterval == 0) {
+                checkpointBuffer.capture(next.getBoard());
+                new Checkpoint(game.getName(), next.getStep(), steps, timeline, checkpointBuffer)
+                        .writeTo(checkpointPath);
+            }
+
+            // states reached before the last event cannot repeat deterministically
+            if (detector != null && i >= lastEventStep && cycleDetected(game, detector, next))
+                break;
         }
 
         return game;
     }
 
+    /**
+     * Prepares cycle detection for a run, clearing any cycle left by a previous one.
+     *
+     * @param game  the game about to run
+     * @param start the first generation to observe, or null
+     * @return a fresh detector, or null if detection is disabled
+     */
+    private CycleDetector startCycleDetection(Game game, Generation start) {
+        game.setDetectedCycle(null);
+        if (cycleWindow == 0)
+            return null;
+        CycleDetector detector = new CycleDetector(cycleWindow);
+        if (start != null)
+            detector.observe(start);
+        return detector;
+    }
+
+    /**
+     * Feeds a new generation to the detector, recording the cycle on the game if found.
+     *
+     * @return true if the run can stop
+     */
+    private boolean cycleDetected(Game game, CycleDetector detector, Generation next) {
+        Cycle cycle = detector.observe(next);
+        if (cycle == null)
+            return false;
+        game.setDetectedCycle(cycle);
+        return true;
+    }
+
     /**
      * Builds and returns a map associating each coordinate with its alive Cell 
      * instance for the specified generation.
@@ -203,26 +603,58 @@ public class ExtendedGameOfLife {
     }
 
     /**
-     * Persists the complete state of the provided Game instance, including its Board, Tiles,
-     * Cells, and all associated Generations.
+     * Renders a viewport of a generation zoomed out by 2^level, one character
+     * per block of cells; see {@link Board#visualize(Generation, int, int, int, int, int)}.
+     */
+    public String visualize(Generation generation, int level, int x, int y, int columns, int rows)
+            throws ExtendedGameOfLifeException {
+        return generation.getBoard().visualize(generation, level, x, y, columns, rows);
+    }
+
+    /**
+     * Persists the game, together with its event timeline ({@link Game#getTimeline()}),
+     * in a single transaction.
      *
-     * If the Game is new, it will be created and persisted.
-     * Otherwise, its state will be updated (merged) in the database. Ensures transactional 
-     * safety and consistency through commit and rollback handling.
+     * A new game is inserted, its board sharing the stored {@link BoardLayout} of
+     * the boards with the same dimensions and tile modifiers if there is one. Its
+     * changes are tracked from then on: saving it again only writes the generations
+     * added, dropped or edited since, the cells that changed and the timeline if it
+     * changed (see {@link GameRepository}). Games whose changes are not tracked,
+     * e.g. loaded by other means, are merged.
      *
-     * @param game The Game instance to persist or update.
+     * @param game the game to save
+     * @throws jakarta.persistence.OptimisticLockException if another writer saved
+     *         the game since this instance was last saved or loaded
      */
     public void saveGame(Game game) {
         EntityManager em = JPAUtil.getEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             tx.begin();
+            boolean tracked = game.getId() == null || game.isTracked();
+            long version;
             if (game.getId() == null) {
+                Board board = game.getBoard();
+                board.useLayout(new BoardLayoutRepository().share(em, BoardLayout.of(board)));
                 em.persist(game);
+                em.flush();
+                version = game.getVersion();
+                new GameEventRepository().replaceTimeline(em, game.getId(), game.getTimeline());
+            } else if (tracked) {
+                version = new GameRepository().saveChanges(em, game);
             } else {
-                em.merge(game);
+                Game managed = em.merge(game);
+                em.flush();
+                version = managed.getVersion();
+                new GameEventRepository().replaceTimeline(em, managed.getId(), game.getTimeline());
             }
             tx.commit();
+            if (tracked) {
+                game.markSaved(version);
+            } else {
+                game.versionSaved(version);
+            }
+            lastSavedGameId = game.getId();
         } catch (RuntimeException e) {
             if (tx.isActive()) {
                 tx.rollback();
@@ -240,10 +672,68 @@ public class ExtendedGameOfLife {
      * the provided generic repository class for persistence. This method reconstructs 
      * the event timeline for inspection or replay.
      *
+     * The events are those of the game last saved through this instance.
+     *
      * @return A Map<Integer, EventType> mapping generation steps to associated events.
+     * @throws ExtendedGameOfLifeException if no game was saved through this instance
+     */
+    public Map<Integer, EventType> loadEvents() throws ExtendedGameOfLifeException {
+        if (lastSavedGameId == null)
+            throw new ExtendedGameOfLifeException("No game has been saved yet");
+        return loadEvents(lastSavedGameId);
+    }
+
+    /**
+     * Loads the one-shot, board-wide events stored for a game, keyed by step.
+     * When several such events share a step, the first one in timeline order is kept;
+     * recurring and scoped events only appear in {@link #loadTimeline(Long)}.
+     *
+     * @param gameId the id of a saved game
+     * @return the events by step, sorted
+     */
+    public Map<Integer, EventType> loadEvents(Long gameId) throws ExtendedGameOfLifeException {
+        Map<Integer, EventType> events = new TreeMap<>();
+        for (ScheduledEvent e : loadTimeline(gameId).getEvents()) {
+            if (!e.isRecurring() && !e.isScoped())
+                events.putIfAbsent(e.getStart(), e.getType());
+        }
+        return events;
+    }
+
+    /**
+     * Loads the whole event timeline stored for a game.
+     *
+     * @param gameId the id of a saved game
+     * @return the timeline, in the order it was scheduled
      */
-    public Map<Integer, EventType> loadEvents() {
-        // اگر نیاز بود می‌توانید این قسمت را پیاده کنید
-        return null;
+    public EventTimeline loadTimeline(Long gameId) throws ExtendedGameOfLifeException {
+        return new GameEventRepository().loadTimeline(gameId);
+    }
+
+    /**
+     * Opens a replay of a saved game: any step can be sought from the stored
+     * generations, re-simulating the steps in between with the stored timeline
+     * and this instance's engine, or {@link EvolutionEngines#best()} if none is set.
+     *
+     * Generations are loaded one at a time, when needed.
+     *
+     * @param gameId        the id of a saved game
+     * @param cacheCapacity maximum number of frames kept for scrubbing
+     * @return the replay, positioned before the first step
+     * @throws ExtendedGameOfLifeException if the game does not exist
+     */
+    public ReplayService replay(Long gameId, int cacheCapacity) throws ExtendedGameOfLifeException {
+        BoardState layout;
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            Game game = em.find(Game.class, gameId);
+            if (game == null)
+                throw new ExtendedGameOfLifeException("No saved game with id " + gameId);
+            layout = BoardState.of(game.getBoard());
+        } finally {
+            em.close();
+        }
+        return new ReplayService(new GenerationRepository().keyframes(gameId), loadTimeline(gameId), layout,
+                engine != null ? engine : EvolutionEngines.best(), cacheCapacity, ReplayService.DEFAULT_CACHE_STRIDE);
     }
 }
@@ -1,9 +1,15 @@
 package it.polito.extgol;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import jakarta.persistence.*;
 
@@ -18,6 +24,11 @@ public class Game {
     @Column(nullable = false, unique = true)
     private String name;
 
+    /** Incremented by each save, to detect writers saving over each other. */
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     @OneToOne(
         cascade = CascadeType.ALL,
         orphanRemoval = true,
@@ -39,6 +50,86 @@ public class Game {
     @Transient
     private Map<Integer, EventType> eventMap = new HashMap<>();
 
+    /** Every event scheduled on this game, including recurring and scoped ones. */
+    @Transient
+    private EventTimeline timeline = new EventTimeline();
+
+    @Transient
+    private Cycle detectedCycle;
+
+    /** Optional on-disk store of past generations, see {@link #useHistory}. */
+    @Transient
+    private GenerationHistory history;
+
+    /** Game this one was forked from, which holds its generations before {@link #forkStep}. */
+    @Transient
+    private Game parent;
+
+    /** Step this game was forked at; meaningless without a parent. */
+    @Transient
+    private int forkStep;
+
+    /** Number of forks made by {@link #fork(int)}, used to name them. */
+    @Transient
+    private int forks;
+
+    /** Off-heap states allocated by {@link #allocateOffHeap}, released together. */
+    @Transient
+    private List<OffHeapBoardState> offHeapStates = new ArrayList<>();
+
+    /** Frames published for concurrent readers, see {@link #getFrames()}. */
+    @Transient
+    private volatile GenerationLog frames = new GenerationLog();
+
+    /** Generation added by a step still being applied, published once its state is final. */
+    @Transient
+    private Generation unpublished;
+
+    /** Which generations are kept as the game grows; null keeps them all. */
+    @Transient
+    private RetentionPolicy retention;
+
+    /** Steps at which runs applied events, see {@link #hadEventsAt(int)}. */
+    @Transient
+    private BitSet eventSteps = new BitSet();
+
+    /** Per-generation statistics, maintained by runs and events. */
+    @Transient
+    private StatisticsSeries statistics = new StatisticsSeries();
+
+    /** Population pyramid of the board, maintained by evolve; see {@link #getPyramid}. */
+    @Transient
+    private PopulationPyramid pyramid;
+
+    /** Newest generation when {@link #pyramid} was built or last evolved. */
+    @Transient
+    private Generation pyramidGeneration;
+
+    /** Whether events changed the board since {@link #pyramidGeneration} was snapped. */
+    @Transient
+    private boolean pyramidAhead;
+
+    /** Cell states as last saved, or null if the changes since are not tracked; see {@link #isTracked()}. */
+    @Transient
+    private BoardState savedCells;
+
+    /** Index in {@link #generations} of each generation as last saved. */
+    @Transient
+    private Map<Generation, Integer> savedIndices = new IdentityHashMap<>();
+
+    /** Saved generations edited since the last save. */
+    @Transient
+    private Set<Generation> editedGenerations = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** Timeline events as last saved. */
+    @Transient
+    private List<ScheduledEvent> savedTimeline = List.of();
+
+    /** Encoded form of {@link #statistics}, written on flush and decoded on load. */
+    @Lob
+    @Column(name = "statistics")
+    private byte[] statisticsData;
+
     protected Game() {
     }
 
@@ -53,21 +144,28 @@ public class Game {
             throw new ExtendedGameOfLifeException("Board dimensions must be positive");
 
         this.name = name;
-        this.board = new Board(width, height, this);
+        this.board = Board.createLazy(width, height, this);
         Generation.createInitial(this, board);
     }
 
+    /**
+     * Creates a game on a lazy board (see {@link Board#createLazy}): only compact
+     * cell states are allocated, and tiles and cells are created on first access.
+     */
     public static Game create(String name, int width, int height) throws ExtendedGameOfLifeException {
         Game game = new Game(name);
-        Board board = new Board(width, height, game);
+        Board board = Board.createLazy(width, height, game);
         game.setBoard(board);
         Generation.createInitial(game, board);
         return game;
     }
 
+    /**
+     * Creates a game for the extended version, on a lazy board like {@link #create}.
+     */
     public static Game createExtended(String name, int width, int height) throws ExtendedGameOfLifeException {
         Game game = new Game(name);
-        Board board = Board.createExtended(width, height, game);
+        Board board = Board.createLazy(width, height, game);
         game.setBoard(board);
         Generation.createInitial(game, board);
         return game;
@@ -77,15 +175,60 @@ public class Game {
         if (generation == null) {
             throw new ExtendedGameOfLifeException("Cannot add null generation");
         }
-        generation.setGame(this);
-        generations.add(generation);
+        insertGeneration(generation, null);
+        publish(generation);
+        applyRetention();
     }
 
     public void addGeneration(Generation generation, Integer step) throws ExtendedGameOfLifeException {
         if (generation == null) {
             throw new ExtendedGameOfLifeException("Cannot add null generation");
         }
-        if (step == null || step < 0 || step > generations.size()) {
+        if (step == null && history == null) {
+            throw new ExtendedGameOfLifeException("Invalid generation step index: null");
+        }
+        insertGeneration(generation, step);
+        publish(generation);
+        applyRetention();
+    }
+
+    /**
+     * Adds a generation whose state is still being applied, without publishing
+     * its frame: readers would otherwise see its step with the former state.
+     * The caller publishes it with {@link #publishGeneration} once the state of
+     * the step is final.
+     *
+     * @param generation the generation to add
+     * @param step       its index in the generations, or null to append it
+     */
+    void addUnpublishedGeneration(Generation generation, Integer step) throws ExtendedGameOfLifeException {
+        if (generation == null) {
+            throw new ExtendedGameOfLifeException("Cannot add null generation");
+        }
+        insertGeneration(generation, step);
+        unpublished = generation;
+        applyRetention();
+    }
+
+    /**
+     * Publishes the frame of a generation added by {@link #addUnpublishedGeneration},
+     * its state being final.
+     */
+    void publishGeneration(Generation generation) {
+        if (generation != unpublished)
+            return;
+        unpublished = null;
+        publish(generation);
+    }
+
+    private void insertGeneration(Generation generation, Integer step) throws ExtendedGameOfLifeException {
+        if (step == null || history != null) {
+            generation.setGame(this);
+            spillToHistory();
+            generations.add(generation);
+            return;
+        }
+        if (step < 0 || step > generations.size()) {
             throw new ExtendedGameOfLifeException("Invalid generation step index: " + step);
         }
         generation.setGame(this);
@@ -94,16 +237,527 @@ public class Game {
 
     public void clearGenerations() {
         generations.clear();
+        frames = new GenerationLog();
+        unpublished = null;
+    }
+
+    /**
+     * Returns the log of the frames published by this game, for threads reading
+     * the game while another one simulates it.
+     *
+     * The simulating thread owns the game: {@link #getGenerations()}, the board,
+     * its cells and the maps of each {@link Generation} are mutated in place and
+     * must not be read concurrently. Other threads read frames instead: each
+     * generation added to the game publishes its immutable {@link GenerationSnapshot}
+     * once complete, so readers never block the simulation nor see a half-applied
+     * step. Frames are published for the generations added since the game was
+     * created or loaded; clearing the generations starts a new log, so readers
+     * should fetch the log again rather than keep it across runs.
+     */
+    public GenerationLog getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the frame of the newest generation, or null if none was published;
+     * safe to call from any thread, see {@link #getFrames()}.
+     */
+    public GenerationSnapshot getLatestFrame() {
+        return frames.latest();
+    }
+
+    /**
+     * Publishes the frame of a generation just added.
+     */
+    private void publish(Generation generation) {
+        if (generation.getStep() > frames.lastStep()) {
+            frames.append(generation.getSnapshot());
+            return;
+        }
+        // inserted among existing steps: publish the whole list again
+        GenerationLog rebuilt = new GenerationLog();
+        for (Generation g : generations) {
+            if (g != unpublished && g.getStep() > rebuilt.lastStep())
+                rebuilt.append(g.getSnapshot());
+        }
+        frames = rebuilt;
+    }
+
+    /**
+     * Publishes the new snapshot of a generation of this game that was edited.
+     */
+    void republish(Generation generation) {
+        if (savedIndices.containsKey(generation))
+            editedGenerations.add(generation);
+        if (generation == unpublished || generation.getStep() > frames.lastStep())
+            return;
+        int lo = 0;
+        int hi = generations.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            Generation g = generations.get(mid);
+            if (g.getStep() < generation.getStep()) {
+                lo = mid + 1;
+            } else if (g.getStep() > generation.getStep()) {
+                hi = mid - 1;
+            } else {
+                if (g == generation)
+                    frames.replace(generation.getSnapshot());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets which generations this game keeps, e.g. {@link RetentionPolicy#lastGenerations(int)}
+     * for long runs with bounded memory. The policy is applied right away and then
+     * every time a generation is added, so it also bounds what {@code saveGame}
+     * persists. The first and the newest generation are always kept.
+     *
+     * The policy does not apply to an attached {@link GenerationHistory}, which
+     * keeps every generation it receives.
+     *
+     * @param policy the policy, or null to keep every generation from now on
+     */
+    public void setRetention(RetentionPolicy policy) {
+        this.retention = policy;
+        applyRetention();
+    }
+
+    /**
+     * Returns the retention policy of this game, {@link RetentionPolicy#all()} if none was set.
+     */
+    public RetentionPolicy getRetention() {
+        return retention != null ? retention : RetentionPolicy.all();
+    }
+
+    /**
+     * Tells whether events were applied at a step, by a run of this game or
+     * through its own timeline.
+     */
+    public boolean hadEventsAt(int step) {
+        return step >= 0 && (eventSteps.get(step) || !timeline.eventsAt(step).isEmpty());
+    }
+
+    /**
+     * Records that a run applied events at a step.
+     */
+    void eventsApplied(int step) {
+        eventSteps.set(step);
+    }
+
+    /**
+     * Drops the generations the retention policy no longer keeps.
+     */
+    private void applyRetention() {
+        if (retention == null || generations.size() < 3)
+            return;
+        int newest = generations.get(generations.size() - 1).getStep();
+        Set<Generation> evicted = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int k = 1; k < generations.size() - 1; k++) {
+            Generation g = generations.get(k);
+            if (!retention.retains(this, g.getStep(), newest))
+                evicted.add(g);
+        }
+        if (evicted.isEmpty())
+            return;
+        generations.removeIf(evicted::contains);
+        for (Generation g : evicted) {
+            frames.evict(g.getStep());
+        }
     }
 
     public List<Generation> getGenerations() {
         return generations;
     }
 
+    /**
+     * Returns the generations kept in memory that were produced by evolving the
+     * previous one, i.e. those computed from the state of every cell; see
+     * {@link Cell#getGenerations()}. Cells do not reference generations, so
+     * that dropping one costs nothing per cell.
+     */
+    List<Generation> evolvedGenerations() {
+        List<Generation> evolved = new ArrayList<>();
+        for (Generation g : generations) {
+            if (g.isEvolved())
+                evolved.add(g);
+        }
+        return List.copyOf(evolved);
+    }
+
+    /**
+     * Switches this game to an on-disk generation history, as an alternative to
+     * keeping every generation in memory.
+     *
+     * From then on only the newest generation stays in {@link #getGenerations()}
+     * (and is the start of subsequent runs): each time a new one is added, the
+     * previous one, whose snapshot is final by then, is appended to the history.
+     * Past states are read back through {@link #readState(int, BoardState)}.
+     *
+     * The history should be attached once the game has been seeded.
+     *
+     * @param history an open history with the dimensions of this game's board
+     * @throws ExtendedGameOfLifeException if the dimensions do not match
+     */
+    public void useHistory(GenerationHistory history) throws ExtendedGameOfLifeException {
+        if (history == null) {
+            throw new ExtendedGameOfLifeException("History cannot be null");
+        }
+        if (history.getWidth() != board.getWidth() || history.getHeight() != board.getHeight()) {
+            throw new ExtendedGameOfLifeException("History dimensions do not match the board");
+        }
+        this.history = history;
+        if (generations.size() > 1) {
+            Generation newest = generations.get(generations.size() - 1);
+            generations.remove(generations.size() - 1);
+            spillToHistory();
+            generations.add(newest);
+        }
+    }
+
+    /**
+     * Appends the newest generation to the history as well, and detaches the history
+     * from this game, which goes back to keeping generations in memory.
+     *
+     * @return the detached history, holding every generation of the game, or null
+     */
+    public GenerationHistory detachHistory() {
+        GenerationHistory detached = history;
+        spillToHistory();
+        history = null;
+        return detached;
+    }
+
+    public GenerationHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Copies the current state of the board into off-heap memory, e.g. to run an
+     * {@link OffHeapSimulation} without keeping the state on the heap.
+     *
+     * The state belongs to this game until {@link #releaseOffHeap()}.
+     *
+     * @param file the file backing the state, or null for direct memory
+     * @return the new state
+     * @throws ExtendedGameOfLifeException if the state cannot be allocated
+     */
+    public OffHeapBoardState allocateOffHeap(Path file) throws ExtendedGameOfLifeException {
+        if (board == null) throw new ExtendedGameOfLifeException("Board not initialized");
+        OffHeapBoardState state = file != null
+                ? OffHeapBoardState.map(file, board.getWidth(), board.getHeight())
+                : OffHeapBoardState.allocate(board.getWidth(), board.getHeight());
+        state.copyFrom(BoardState.of(board));
+        offHeapStates.add(state);
+        return state;
+    }
+
+    /**
+     * Closes every off-heap state allocated by this game; file-backed ones are
+     * written to disk first.
+     *
+     * @throws ExtendedGameOfLifeException if a backing file cannot be closed
+     */
+    public void releaseOffHeap() throws ExtendedGameOfLifeException {
+        IOException failure = null;
+        for (OffHeapBoardState state : offHeapStates) {
+            try {
+                state.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        offHeapStates.clear();
+        if (failure != null)
+            throw new ExtendedGameOfLifeException("Cannot release off-heap states", failure);
+    }
+
+    /**
+     * Moves every resident generation to the history, if one is attached.
+     */
+    private void spillToHistory() {
+        if (history == null || generations.isEmpty()) {
+            return;
+        }
+        for (Generation g : generations) {
+            history.append(g);
+            frames.evict(g.getStep());
+        }
+        generations.clear();
+    }
+
+    /**
+     * Reads the board state at the given step, from the on-disk history if the
+     * generation is stored there, otherwise from its in-memory snapshot.
+     *
+     * Cell types are not part of generation snapshots and are left untouched.
+     *
+     * @param step  the requested step; steps after the end of a run that stopped
+     *              on a cycle are resolved to the equivalent stored step
+     * @param state the state to overwrite, or null to allocate one
+     * @return the state at that step
+     * @throws ExtendedGameOfLifeException if the step is not available
+     */
+    public BoardState readState(int step, BoardState state) throws ExtendedGameOfLifeException {
+        if (parent != null && step < forkStep) {
+            return parent.readState(step, state);
+        }
+        int newest = generations.isEmpty() ? -1 : generations.get(generations.size() - 1).getStep();
+        if (step > newest && detectedCycle != null) {
+            step = detectedCycle.equivalentStep(step);
+        }
+        if (history != null && history.size() > 0) {
+            int k = step - history.getStep(0);
+            if (k >= 0 && k < history.size()) {
+                return history.read(k, state);
+            }
+        }
+        Generation generation = getGeneration(step);
+        if (state == null) {
+            state = new BoardState(board.getWidth(), board.getHeight());
+        }
+        generation.copyInto(state);
+        return state;
+    }
+
+    /**
+     * Forks this game at a step, for what-if runs with different events: the fork
+     * starts from the state of that step and evolves independently of this game.
+     *
+     * Nothing is copied up front. The fork's first generation shares the snapshot
+     * of the step, whose chunks the following snapshots keep sharing as long as
+     * they do not change; earlier generations are read from this game; and the
+     * fork's board is a lazy board whose compact state is only allocated when the
+     * fork is first simulated or inspected. Only cell types are copied, one byte per cell.
+     * Pending events of this game's timeline are carried over.
+     *
+     * @param name the name of the fork
+     * @param step the step to fork at, which this game must be able to read
+     * @return the fork, not persisted
+     * @throws ExtendedGameOfLifeException if the step is not available
+     */
+    public Game fork(String name, int step) throws ExtendedGameOfLifeException {
+        if (name == null || name.trim().isEmpty())
+            throw new ExtendedGameOfLifeException("Game name cannot be null or empty");
+        GenerationSnapshot at = snapshotAt(step).atStep(step);
+
+        BoardState layout = board.snapshotBuffer();
+        layout.capture(board);
+        byte[] types = layout.typePlane().clone();
+
+        Game fork = new Game(name);
+        fork.parent = this;
+        fork.forkStep = step;
+        fork.board = Board.createFork(at, types, fork);
+        fork.timeline = timeline.from(step);
+        Generation.createFork(fork, fork.board, at);
+        return fork;
+    }
+
+    /**
+     * Forks this game at a step like {@link #fork(String, int)}, naming the fork after this game.
+     */
+    public Game fork(int step) throws ExtendedGameOfLifeException {
+        return fork(name + "@" + step + "#" + (++forks), step);
+    }
+
+    /**
+     * Returns the snapshot of the state at a step, shared with the generation
+     * holding it unless the step was spilled to the on-disk history.
+     */
+    private GenerationSnapshot snapshotAt(int step) throws ExtendedGameOfLifeException {
+        if (parent != null && step < forkStep) {
+            return parent.snapshotAt(step);
+        }
+        int newest = generations.isEmpty() ? -1 : generations.get(generations.size() - 1).getStep();
+        if (step > newest && detectedCycle != null) {
+            step = detectedCycle.equivalentStep(step);
+        }
+        if (history != null && history.size() > 0) {
+            int k = step - history.getStep(0);
+            if (k >= 0 && k < history.size()) {
+                return GenerationSnapshot.capture(step, history.getStateHash(k), history.read(k, null), null);
+            }
+        }
+        return getGeneration(step).getSnapshot();
+    }
+
+    /**
+     * Returns the game this one was forked from, or null.
+     */
+    public Game getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the step this game was forked at, or -1 if it is not a fork.
+     */
+    public int getForkStep() {
+        return parent != null ? forkStep : -1;
+    }
+
+    /**
+     * Returns the statistics time series of this game: one point per generation
+     * produced by {@code evolve}, plus one at the start of each run.
+     */
+    public StatisticsSeries getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the population pyramid of a generation, for zoomed-out rendering of
+     * large boards (see {@link Board#visualize(Generation, int, int, int, int, int)}).
+     *
+     * The pyramid of the newest generation is built from the board on first request,
+     * then kept up to date by {@code evolve} from the cells that change, so that
+     * rendering each new generation costs no more than the rendered blocks. Other
+     * generations get a pyramid built from their snapshot.
+     *
+     * The returned pyramid must not be modified.
+     *
+     * @param generation a generation of this game
+     * @throws ExtendedGameOfLifeException if the board is not initialized
+     */
+    public PopulationPyramid getPyramid(Generation generation) throws ExtendedGameOfLifeException {
+        if (board == null) throw new ExtendedGameOfLifeException("Board not initialized");
+        if (generation == null) throw new ExtendedGameOfLifeException("Generation cannot be null");
+        Generation newest = generations.isEmpty() ? null : generations.get(generations.size() - 1);
+        if (generation == newest && (pyramid == null || pyramidGeneration != newest)) {
+            BoardState state = BoardState.of(board);
+            pyramid = PopulationPyramid.of(state);
+            pyramidGeneration = newest;
+            pyramidAhead = newest.getStateHash() != ZobristHash.of(state);
+        }
+        if (generation == pyramidGeneration && !pyramidAhead)
+            return pyramid;
+        BoardState state = new BoardState(board.getWidth(), board.getHeight());
+        generation.copyInto(state);
+        return PopulationPyramid.of(state);
+    }
+
+    /**
+     * Returns the maintained pyramid if it follows the given generation, for
+     * {@code evolve} to update it, or null; any other pyramid is dropped.
+     */
+    PopulationPyramid evolvingPyramid(Generation current) {
+        if (pyramid != null && pyramidGeneration != current)
+            pyramid = null;
+        return pyramid;
+    }
+
+    /**
+     * Records that the maintained pyramid now follows the given generation.
+     */
+    void pyramidEvolved(Generation next) {
+        pyramidGeneration = next;
+        pyramidAhead = false;
+    }
+
+    @PrePersist
+    @PreUpdate
+    private void encodeStatistics() {
+        statisticsData = statistics.toByteArray();
+    }
+
+    @PostLoad
+    private void decodeStatistics() throws ExtendedGameOfLifeException {
+        statistics = statisticsData != null ? StatisticsSeries.fromByteArray(statisticsData) : new StatisticsSeries();
+    }
+
     public Long getId() {
         return id;
     }
 
+    /**
+     * Returns the version of the stored game this instance was last saved as.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Tells whether the changes made to this game since it was last saved are
+     * tracked, so that saving writes only them; true once the game was saved
+     * for the first time through {@code saveGame}.
+     */
+    public boolean isTracked() {
+        return savedCells != null;
+    }
+
+    /**
+     * Records that this game was just saved as the given version, with its
+     * current generations, cells and timeline; changes are tracked from now on.
+     */
+    void markSaved(long version) {
+        this.version = version;
+        savedCells = BoardState.of(board);
+        savedIndices = new IdentityHashMap<>();
+        for (int k = 0; k < generations.size(); k++) {
+            savedIndices.put(generations.get(k), k);
+        }
+        editedGenerations.clear();
+        savedTimeline = List.copyOf(timeline.getEvents());
+    }
+
+    /**
+     * Records that the stored game is now at the given version, without
+     * tracking changes, e.g. after it was merged.
+     */
+    void versionSaved(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Returns the cell states as last saved, or null if changes are not tracked.
+     */
+    BoardState savedCells() {
+        return savedCells;
+    }
+
+    /**
+     * Returns the index a generation had when the game was last saved, or null
+     * if it was not saved.
+     */
+    Integer savedIndex(Generation generation) {
+        return savedIndices.get(generation);
+    }
+
+    /**
+     * Returns the saved generations that were dropped from the game since.
+     */
+    List<Generation> evictedSinceSave() {
+        Set<Generation> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        kept.addAll(generations);
+        List<Generation> evicted = new ArrayList<>();
+        for (Generation g : savedIndices.keySet()) {
+            if (!kept.contains(g))
+                evicted.add(g);
+        }
+        return evicted;
+    }
+
+    /**
+     * Returns the saved generations that were edited since the last save and
+     * are still part of the game.
+     */
+    List<Generation> editedSinceSave() {
+        List<Generation> edited = new ArrayList<>();
+        for (Generation g : generations) {
+            if (editedGenerations.contains(g))
+                edited.add(g);
+        }
+        return edited;
+    }
+
+    /**
+     * Tells whether the timeline changed since the game was last saved.
+     */
+    boolean timelineChangedSinceSave() {
+        return !savedTimeline.equals(timeline.getEvents());
+    }
+
     public String getName() {
         return name;
     }
@@ -133,43 +787,91 @@ public class Game {
         return generations.get(0);
     }
 
+    /**
+     * Returns the generation holding the board state at the given step.
+     *
+     * Steps beyond the last simulated one can be resolved when the last run
+     * stopped on a detected cycle: they are mapped onto the stored generation
+     * with the same state. On a fork, steps before the fork step are served
+     * by the game it was forked from.
+     *
+     * @param step the requested step
+     * @return the generation with the state of that step
+     * @throws ExtendedGameOfLifeException if the step was neither simulated nor
+     *         covered by a detected cycle
+     */
+    public Generation getGeneration(int step) throws ExtendedGameOfLifeException {
+        if (parent != null && step < forkStep) {
+            return parent.getGeneration(step);
+        }
+        int first = getStart().getStep();
+        int last = generations.get(generations.size() - 1).getStep();
+        if (step > last) {
+            if (detectedCycle == null) {
+                throw new ExtendedGameOfLifeException("Generation " + step + " has not been simulated");
+            }
+            step = detectedCycle.equivalentStep(step);
+        }
+        if (step < first) {
+            throw new ExtendedGameOfLifeException("Generation " + step + " is not available");
+        }
+
+        // contiguous histories are indexed directly, sparse ones (snapshots) are searched
+        if (last - first == generations.size() - 1) {
+            return generations.get(step - first);
+        }
+        int lo = 0;
+        int hi = generations.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midStep = generations.get(mid).getStep();
+            if (midStep < step) {
+                lo = mid + 1;
+            } else if (midStep > step) {
+                hi = mid - 1;
+            } else {
+                return generations.get(mid);
+            }
+        }
+        throw new ExtendedGameOfLifeException("Generation " + step + " was not stored");
+    }
+
+    /**
+     * Returns the cycle detected by the last run, or null if the run
+     * went through all its steps.
+     */
+    public Cycle getDetectedCycle() {
+        return detectedCycle;
+    }
+
+    public void setDetectedCycle(Cycle cycle) {
+        this.detectedCycle = cycle;
+    }
+
     public void unrollEvent(EventType event, Cell cell) throws ExtendedGameOfLifeException {
         if (cell == null) throw new ExtendedGameOfLifeException("Cell cannot be null");
         if (event == null) throw new ExtendedGameOfLifeException("Event cannot be null");
 
         switch (event) {
             case CATACLYSM:
-                cell.setLifePoints(0);
+                changeLifePoints(cell, 0);
                 break;
             case FAMINE:
-                cell.setLifePoints(Math.max(0, cell.getLifePoints() - 1));
+                changeLifePoints(cell, Math.max(0, cell.getLifePoints() - 1));
                 break;
             case BLOOM:
-                cell.setLifePoints(cell.getLifePoints() + 2);
+                changeLifePoints(cell, cell.getLifePoints() + 2);
                 break;
             case BLOOD_MOON:
-                if (cell.getMood() == CellMood.VAMPIRE) {
-                    Tile tile = cell.getTile();
-                    if (tile != null) {
-                        for (Tile neighbor : tile.getNeighbors()) {
-                            Cell neighborCell = neighbor.getCell();
-                            if (neighborCell == null) continue;
-                            CellMood mood = neighborCell.getMood();
-                            if (mood == CellMood.NAIVE || mood == CellMood.HEALER) {
-                                int stolen = Math.min(1, neighborCell.getLifePoints());
-                                neighborCell.setLifePoints(neighborCell.getLifePoints() - stolen);
-                                cell.setLifePoints(cell.getLifePoints() + stolen);
-                                neighborCell.setMood(CellMood.VAMPIRE);
-                            }
-                        }
-                    }
+                if (cell.getMood() == CellMood.VAMPIRE && cell.getTile() != null) {
+                    BloodMoon.apply(this, board, new int[] { cell.getY() * board.getWidth() + cell.getX() });
                 }
                 break;
             case SANCTUARY:
                 if (cell.getMood() == CellMood.HEALER) {
-                    cell.setLifePoints(cell.getLifePoints() + 1);
+                    changeLifePoints(cell, cell.getLifePoints() + 1);
                 } else if (cell.getMood() == CellMood.VAMPIRE) {
-                    cell.setMood(CellMood.NAIVE);
+                    changeMood(cell, CellMood.NAIVE);
                 }
                 break;
             default:
@@ -177,6 +879,61 @@ public class Game {
         }
     }
 
+    /**
+     * Applies an event to every cell of the board, or of a region of it.
+     *
+     * Board-wide events visit the cells in the board's tile order, as {@code run}
+     * always did; scoped events visit the region in row-major order. BLOOD_MOON
+     * only visits the vampires of the board or region and their neighbors, and
+     * does not depend on any order, see {@link BloodMoon}.
+     *
+     * @param event  the event to apply
+     * @param region the cells to apply it to, or null for the whole board
+     */
+    public void unrollEvent(EventType event, Region region) throws ExtendedGameOfLifeException {
+        if (board == null) throw new ExtendedGameOfLifeException("Board not initialized");
+        if (event == EventType.BLOOD_MOON) {
+            BloodMoon.apply(this, board, region);
+            return;
+        }
+        if (region == null) {
+            for (Tile tile : board.getTiles()) {
+                Cell cell = tile.getCell();
+                if (cell != null)
+                    unrollEvent(event, cell);
+            }
+            return;
+        }
+        int width = board.getWidth();
+        int height = board.getHeight();
+        for (int i = region.nextIndex(width, height, 0); i >= 0; i = region.nextIndex(width, height, i + 1)) {
+            Cell cell = board.tileAt(i).getCell();
+            if (cell != null)
+                unrollEvent(event, cell);
+        }
+    }
+
+    /**
+     * Sets the lifePoints of a cell, keeping the statistics' running totals in sync.
+     */
+    void changeLifePoints(Cell cell, int lifePoints) {
+        statistics.lifePointsChanged(lifePoints - cell.getLifePoints());
+        if (pyramid != null) {
+            pyramid.lifePointsChanged(cell.getX(), cell.getY(), lifePoints - cell.getLifePoints());
+            pyramidAhead = true;
+        }
+        cell.setLifePoints(lifePoints);
+    }
+
+    /**
+     * Sets the mood of a cell, keeping the statistics' running totals in sync.
+     */
+    void changeMood(Cell cell, CellMood mood) {
+        if (mood == null) return;
+        statistics.moodChanged(cell.getMood(), mood);
+        cell.setMood(mood);
+    }
+
     public void setMood(CellMood mood, List<Coord> targetCoordinates) throws ExtendedGameOfLifeException {
         if (board == null) {
             throw new ExtendedGameOfLifeException("Board not initialized");
@@ -194,7 +951,32 @@ public class Game {
             if (cell == null) {
                 throw new ExtendedGameOfLifeException("No cell on tile at coordinate: " + coord);
             }
-            cell.setMood(mood);
+            changeMood(cell, mood);
+        }
+    }
+
+    /**
+     * Sets the mood of every cell of a region, walking the board by index
+     * instead of looking up each coordinate.
+     *
+     * @param mood   the new mood
+     * @param region the cells to update
+     */
+    public void setMood(CellMood mood, Region region) throws ExtendedGameOfLifeException {
+        if (board == null) {
+            throw new ExtendedGameOfLifeException("Board not initialized");
+        }
+        if (mood == null || region == null) {
+            throw new ExtendedGameOfLifeException("Mood and region cannot be null");
+        }
+        int width = board.getWidth();
+        int height = board.getHeight();
+        for (int i = region.nextIndex(width, height, 0); i >= 0; i = region.nextIndex(width, height, i + 1)) {
+            Cell cell = board.tileAt(i).getCell();
+            if (cell == null) {
+                throw new ExtendedGameOfLifeException("No cell on tile at index: " + i);
+            }
+            changeMood(cell, mood);
         }
     }
 
@@ -210,6 +992,22 @@ public class Game {
             throw new ExtendedGameOfLifeException("Event type cannot be null");
         }
         eventMap.put(generationIndex, event);
+        timeline.reschedule(generationIndex, event);
+    }
+
+    /**
+     * Adds an entry (possibly recurring or scoped) to the event timeline of this game.
+     */
+    public void scheduleEvent(ScheduledEvent event) throws ExtendedGameOfLifeException {
+        timeline.add(event);
+    }
+
+    /**
+     * Returns the events scheduled on this game, to be passed to
+     * {@link ExtendedGameOfLife#run(Game, int, EventTimeline)}.
+     */
+    public EventTimeline getTimeline() {
+        return timeline;
     }
 
     public EventType getScheduledEvent(int generationIndex) {
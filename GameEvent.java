@@ -0,0 +1,109 @@
+package it.polito.extgol;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * Persisted entry of a game's {@link EventTimeline}, one row per {@link ScheduledEvent}.
+ *
+ * Rows are indexed by (game_id, step), {@code step} being the first occurrence
+ * of the event, so that the events of a window of steps are loaded with a range scan.
+ */
+@Entity
+@Table(name = "game_event", indexes = @Index(name = "idx_game_event_step", columnList = "game_id, step"))
+public class GameEvent {
+
+    /** Ids come from a pooled sequence, so that bulk inserts can be batched. */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "game_event_seq")
+    @SequenceGenerator(name = "game_event_seq", sequenceName = "game_event_seq", allocationSize = 500)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "game_id", nullable = false)
+    private Game game;
+
+    /** Position of the entry in the timeline, i.e. its order among same-step events. */
+    @Column(nullable = false)
+    private Integer position;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EventType type;
+
+    @Column(nullable = false)
+    private Integer step;
+
+    @Column(nullable = false)
+    private Integer period;
+
+    @Column(name = "end_step", nullable = false)
+    private Integer endStep;
+
+    @Column(name = "region_x", nullable = false)
+    private Integer regionX;
+
+    @Column(name = "region_y", nullable = false)
+    private Integer regionY;
+
+    /** Width of the scope; -1 for board-wide events. */
+    @Column(name = "region_width", nullable = false)
+    private Integer regionWidth;
+
+    @Column(name = "region_height", nullable = false)
+    private Integer regionHeight;
+
+    protected GameEvent() {
+    }
+
+    GameEvent(Game game, int position, ScheduledEvent event) {
+        this.game = game;
+        this.position = position;
+        this.type = event.getType();
+        this.step = event.getStart();
+        this.period = event.getPeriod();
+        this.endStep = event.getEnd();
+        this.regionX = event.getX();
+        this.regionY = event.getY();
+        this.regionWidth = event.getWidth();
+        this.regionHeight = event.getHeight();
+    }
+
+    /**
+     * Rebuilds the timeline entry stored in this row.
+     */
+    public ScheduledEvent toScheduledEvent() throws ExtendedGameOfLifeException {
+        return ScheduledEvent.of(type, step, period, endStep, regionX, regionY, regionWidth, regionHeight);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    public int getStep() {
+        return step;
+    }
+}
@@ -0,0 +1,115 @@
+package it.polito.extgol;
+
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+
+/**
+ * Repository of the persisted event timelines of games.
+ *
+ * Timelines are written in batches, flushing and clearing the persistence
+ * context every {@link #BATCH_SIZE} rows so that large schedules neither grow
+ * it without bound nor issue one round trip per row (with
+ * {@code hibernate.jdbc.batch_size} set accordingly).
+ */
+public class GameEventRepository extends GenericExtGOLRepository<GameEvent, Long> {
+
+    /** Number of rows inserted between two flushes. */
+    static final int BATCH_SIZE = 500;
+
+    public GameEventRepository() {
+        super(GameEvent.class);
+    }
+
+    /**
+     * Replaces the stored timeline of a persisted game.
+     *
+     * @param game     a game that has already been saved
+     * @param timeline the events to store
+     */
+    public void saveTimeline(Game game, EventTimeline timeline) throws ExtendedGameOfLifeException {
+        if (game.getId() == null)
+            throw new ExtendedGameOfLifeException("The game must be saved before its events");
+        EntityManager em = JPAUtil.getEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            replaceTimeline(em, game.getId(), timeline);
+            tx.commit();
+        } catch (RuntimeException ex) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw ex;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Replaces the stored timeline of a game within the caller's transaction.
+     * The persistence context is cleared along the way.
+     */
+    void replaceTimeline(EntityManager em, Long gameId, EventTimeline timeline) {
+        em.createQuery("DELETE FROM " + entityName + " e WHERE e.game.id = :game")
+          .setParameter("game", gameId)
+          .executeUpdate();
+
+        Game game = em.getReference(Game.class, gameId);
+        int position = 0;
+        for (ScheduledEvent event : timeline.getEvents()) {
+            em.persist(new GameEvent(game, position++, event));
+            if (position % BATCH_SIZE == 0) {
+                em.flush();
+                em.clear();
+                game = em.getReference(Game.class, gameId);
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    /**
+     * Loads the whole stored timeline of a game.
+     */
+    public EventTimeline loadTimeline(Long gameId) throws ExtendedGameOfLifeException {
+        return loadWindow(gameId, 0, ScheduledEvent.FOREVER);
+    }
+
+    /**
+     * Loads the stored events of a game with at least one occurrence in the
+     * window [from, to), e.g. to stream events alongside a range of generations.
+     * Recurring events starting before the window are included.
+     *
+     * @param gameId the id of the game
+     * @param from   first step of the window
+     * @param to     step after the last one of the window
+     * @return the events, in timeline order; occurrences outside the window are kept
+     */
+    public EventTimeline loadWindow(Long gameId, int from, int to) throws ExtendedGameOfLifeException {
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            List<GameEvent> rows = em.createQuery(
+                    "SELECT e FROM " + entityName + " e WHERE e.game.id = :game AND e.step < :to"
+                    + " AND (e.step >= :from OR (e.period > 0 AND e.endStep > :from))"
+                    + " ORDER BY e.position", GameEvent.class)
+                .setParameter("game", gameId)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
+
+            EventTimeline timeline = new EventTimeline();
+            for (GameEvent row : rows) {
+                ScheduledEvent event = row.toScheduledEvent();
+                // a recurring event may have no occurrence between two of its periods
+                int next = event.nextOccurrence(from);
+                if (next >= 0 && next < to)
+                    timeline.add(event);
+            }
+            return timeline;
+        } finally {
+            em.close();
+        }
+    }
+}
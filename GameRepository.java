@@ -0,0 +1,99 @@
+package it.polito.extgol;
+
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+
+/**
+ * Repository of persisted games, saving only what changed in a game since it
+ * was last saved instead of merging its whole graph.
+ *
+ * Changes are found from what the game recorded when it was last saved (see
+ * {@link Game#isTracked()}): generations added, dropped or edited since, cells
+ * whose aliveness or lifePoints differ, and whether the timeline changed. The
+ * stored game's version guards against another writer having saved it meanwhile.
+ */
+public class GameRepository extends GenericExtGOLRepository<Game, Long> {
+
+    /** Number of generations inserted between two flushes of the persistence context. */
+    static final int BATCH_SIZE = 50;
+
+    public GameRepository() {
+        super(Game.class);
+    }
+
+    /**
+     * Writes the changes made to a tracked game since it was last saved, within
+     * the caller's transaction. The persistence context is cleared along the way.
+     *
+     * @param game a game whose changes are tracked
+     * @return the version the stored game was saved as
+     * @throws OptimisticLockException if the stored game is no longer at the
+     *                                 version this game was last saved as
+     */
+    long saveChanges(EntityManager em, Game game) {
+        Long gameId = game.getId();
+        int updated = em.createQuery("UPDATE " + entityName + " g SET g.version = g.version + 1,"
+                + " g.statisticsData = :statistics WHERE g.id = :game AND g.version = :version")
+            .setParameter("statistics", game.getStatistics().toByteArray())
+            .setParameter("game", gameId)
+            .setParameter("version", game.getVersion())
+            .executeUpdate();
+        if (updated == 0)
+            throw new OptimisticLockException("Game " + game.getName() + " was saved by another writer");
+
+        // dropped generations first, their steps may have been simulated again
+        for (Generation g : game.evictedSinceSave()) {
+            if (g.getId() != null)
+                em.remove(em.getReference(Generation.class, g.getId()));
+        }
+        em.flush();
+        for (Generation g : game.editedSinceSave()) {
+            em.merge(g);
+        }
+
+        List<Generation> generations = game.getGenerations();
+        int inserted = 0;
+        for (Generation g : generations) {
+            if (g.getId() == null) {
+                em.persist(g);
+                if (++inserted % BATCH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+        }
+        em.flush();
+        em.clear();
+
+        // the order column is written by Game.generations, which is not merged
+        for (int k = 0; k < generations.size(); k++) {
+            Generation g = generations.get(k);
+            Integer saved = game.savedIndex(g);
+            if (saved == null || saved != k) {
+                em.createNativeQuery("UPDATE generation SET generation_index = ?1 WHERE id = ?2")
+                  .setParameter(1, k)
+                  .setParameter(2, g.getId())
+                  .executeUpdate();
+            }
+        }
+
+        BoardState saved = game.savedCells();
+        BoardState cells = BoardState.of(game.getBoard());
+        Board board = game.getBoard();
+        for (int i = 0; i < cells.size(); i++) {
+            if (cells.isAlive(i) == saved.isAlive(i) && cells.getLifePoints(i) == saved.getLifePoints(i))
+                continue;
+            em.createQuery("UPDATE Cell c SET c.isAlive = :alive, c.lifepoints = :lifePoints WHERE c.id = :cell")
+              .setParameter("alive", cells.isAlive(i))
+              .setParameter("lifePoints", cells.getLifePoints(i))
+              .setParameter("cell", board.tileAt(i).getCell().getId())
+              .executeUpdate();
+        }
+
+        if (game.timelineChangedSinceSave())
+            new GameEventRepository().replaceTimeline(em, gameId, game.getTimeline());
+        return game.getVersion() + 1;
+    }
+}
@@ -1,10 +1,12 @@
 package it.polito.extgol;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import jakarta.persistence.CollectionTable;
@@ -18,7 +20,9 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.MapKeyJoinColumn;
+import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import jakarta.persistence.UniqueConstraint;
 
 @Entity
@@ -60,6 +64,40 @@ public class Generation {
     @Column(name = "mood", nullable = false)
     private Map<Cell, CellMood> moodStates = new HashMap<>();
 
+    /** Zobrist hash of the snapshot (alive, mood, lifePoints of every cell). */
+    @Column(name = "state_hash")
+    private Long stateHash = 0L;
+
+    /**
+     * Immutable, chunk-shared copy of the maps above; rebuilt on demand when the
+     * generation is loaded, and when its states are replaced through the setters.
+     */
+    @Transient
+    private volatile GenerationSnapshot snapshot;
+
+    /**
+     * True while the maps above are not built: generations of a lazy board
+     * only record their snapshot, and the maps are derived from it on first use.
+     */
+    @Transient
+    private boolean statesPending;
+
+    /**
+     * Whether each map above was handed out by its getter since it was built:
+     * region updates copy such a map before changing it, and update the others
+     * in place.
+     */
+    /** Whether this generation was produced by evolving the previous one, see {@link Cell#getGenerations()}. */
+    @Transient
+    private boolean evolved;
+
+    @Transient
+    private boolean alivenessShared;
+    @Transient
+    private boolean energyShared;
+    @Transient
+    private boolean moodsShared;
+
     protected Generation() {
     }
 
@@ -89,19 +127,16 @@ public class Generation {
             }
             cell.setAlive(true);
         }
-        this.snapCells();
+        this.snap();
     }
 
     public static Generation createInitial(Game game, Board board) throws ExtendedGameOfLifeException {
         game.clearGenerations();
         Generation init = new Generation(game, board, 0);
 
-        for (Tile t : board.getTiles()) {
-            if (t.getCell() != null)
-                t.getCell().setAlive(false);
-        }
+        board.clearCells(false);
 
-        init.snapCells();
+        init.snap();
         game.addGeneration(init, 0);
         return init;
     }
@@ -113,10 +148,7 @@ public class Generation {
 
         game.clearGenerations();
 
-        for (Tile t : board.getTiles()) {
-            if (t.getCell() != null)
-                t.getCell().setAlive(false);
-        }
+        board.clearCells(false);
 
         Generation init = new Generation(game, board, 0);
 
@@ -128,13 +160,13 @@ public class Generation {
             if (cell != null) {
                 cell.setAlive(true);
             } else {
-                cell = new Cell(c.getX(), c.getY(), board, CellType.NAIVE);
+                cell = new Cell(c.getX(), c.getY(), board, CellType.BASIC);
                 cell.setAlive(true);
                 tile.setCell(cell);
             }
         }
 
-        init.snapCells();
+        init.snap();
         game.addGeneration(init, 0);
         return init;
     }
@@ -146,12 +178,7 @@ public class Generation {
 
         game.clearGenerations();
 
-        for (Tile t : board.getTiles()) {
-            if (t.getCell() != null) {
-                t.getCell().setAlive(false);
-                t.getCell().setType(CellType.NAIVE);
-            }
-        }
+        board.clearCells(true);
 
         Generation init = new Generation(game, board, 0);
 
@@ -171,39 +198,320 @@ public class Generation {
             cell.setAlive(true);
         }
 
-        init.snapCells();
+        init.snap();
+        game.addGeneration(init, 0);
+        return init;
+    }
+
+    /**
+     * Creates the initial generation of a game from a compact board state,
+     * e.g. one filled by {@link PatternReader}: every cell takes the aliveness,
+     * type, mood and lifePoints stored in the state.
+     *
+     * @param game  the game whose history is reset
+     * @param board the board to seed
+     * @param state the initial state, with the board's dimensions
+     * @return the initial generation
+     */
+    public static Generation createInitial(Game game, Board board, BoardState state) throws ExtendedGameOfLifeException {
+        Objects.requireNonNull(game, "Game cannot be null");
+        Objects.requireNonNull(board, "Board cannot be null");
+        Objects.requireNonNull(state, "state cannot be null");
+
+        game.clearGenerations();
+        state.restore(board);
+
+        Generation init = new Generation(game, board, 0);
+        init.snap();
         game.addGeneration(init, 0);
         return init;
     }
 
     public static Generation createNextGeneration(Generation prev) throws ExtendedGameOfLifeException {
+        Generation next = beginNextGeneration(prev);
+        next.getGame().publishGeneration(next);
+        return next;
+    }
+
+    /**
+     * Same as {@link #createNextGeneration}, without publishing the frame of the
+     * new generation: the caller applies the state of the step to the board, snaps
+     * it and then publishes it with {@link Game#publishGeneration}.
+     */
+    static Generation beginNextGeneration(Generation prev) throws ExtendedGameOfLifeException {
         Objects.requireNonNull(prev, "Previous generation cannot be null");
 
         Generation next = new Generation(prev.getGame(), prev.getBoard(), prev.getStep() + 1);
-
-        next.snapCells();
-        prev.getGame().addGeneration(next, prev.getStep() + 1);
+        next.evolved = true;
+
+        next.snap();
+        Game game = prev.getGame();
+        List<Generation> generations = game.getGenerations();
+        if (!generations.isEmpty() && generations.get(generations.size() - 1) == prev) {
+            game.addUnpublishedGeneration(next, null);
+        } else {
+            game.addUnpublishedGeneration(next, prev.getStep() + 1 - game.getStart().getStep());
+        }
         return next;
     }
 
+    /**
+     * Appends to the game's history a snapshot of the current state of the board,
+     * as the generation of the given step. Used when generations are only
+     * materialized on demand, so that the stored steps need not be contiguous.
+     *
+     * @param game  the game whose history is extended
+     * @param board the board holding the state of that step
+     * @param step  the step of the snapshot, after the newest stored one
+     * @return the new generation
+     */
+    public static Generation createSnapshot(Game game, Board board, int step) throws ExtendedGameOfLifeException {
+        Objects.requireNonNull(game, "Game cannot be null");
+        Objects.requireNonNull(board, "Board cannot be null");
+        List<Generation> generations = game.getGenerations();
+        if (!generations.isEmpty() && generations.get(generations.size() - 1).getStep() >= step)
+            throw new ExtendedGameOfLifeException("Snapshot step " + step + " is not after the newest generation");
+
+        Generation snapshot = new Generation(game, board, step);
+        snapshot.snap();
+        game.addGeneration(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Creates the first generation of a game whose history starts at the given step,
+     * snapshotting the current state of the board (e.g. a game resumed from a checkpoint).
+     *
+     * @param game  the game whose history is replaced
+     * @param board the board holding the state of that step
+     * @param step  the step of the new first generation
+     * @return the new first generation
+     */
+    public static Generation createAt(Game game, Board board, int step) throws ExtendedGameOfLifeException {
+        Objects.requireNonNull(game, "Game cannot be null");
+        Objects.requireNonNull(board, "Board cannot be null");
+        if (step < 0)
+            throw new ExtendedGameOfLifeException("Invalid generation step: " + step);
+
+        game.clearGenerations();
+        Generation first = new Generation(game, board, step);
+        first.snap();
+        game.addGeneration(first);
+        return first;
+    }
+
+    /**
+     * Creates the first generation of a forked game, sharing the snapshot of the
+     * step the game was forked at; its maps are built on first use.
+     *
+     * @param game  the forked game, without generations
+     * @param board the board of the forked game
+     * @param at    the snapshot to share, labelled with the fork step
+     * @return the new first generation
+     */
+    static Generation createFork(Game game, Board board, GenerationSnapshot at) throws ExtendedGameOfLifeException {
+        Generation first = new Generation(game, board, at.getStep());
+        first.snapshot = at;
+        first.stateHash = at.getStateHash();
+        first.statesPending = true;
+        game.addGeneration(first);
+        return first;
+    }
+
+    /**
+     * Records the current state of every cell of the board in this generation.
+     *
+     * The state maps are replaced rather than updated in place, so maps previously
+     * returned by the getters keep describing the former state. The immutable
+     * {@link GenerationSnapshot} is rebuilt as well, sharing unchanged chunks with
+     * the previous snapshot of this generation or, failing that, of the newest
+     * generation of the game.
+     *
+     * @return the new aliveness states
+     */
     public Map<Cell, Boolean> snapCells() throws ExtendedGameOfLifeException {
-        cellAlivenessStates.clear();
-        energyStates.clear();
-        moodStates.clear();
+        snap();
+        return getCellAlivenessStates();
+    }
+
+    /**
+     * Records the current state of every cell of the board, see {@link #snapCells()}.
+     *
+     * On a board whose tiles are not all created, only the snapshot is recorded,
+     * from the board's compact state; the maps are built when first needed.
+     */
+    void snap() throws ExtendedGameOfLifeException {
+        GenerationSnapshot base = snapshot != null ? snapshot : newestSnapshot();
+        BoardState buffer = board.snapshotBuffer();
+        if (!board.isMaterialized()) {
+            buffer.capture(board);
+            long hash = ZobristHash.of(buffer);
+            cellAlivenessStates = new HashMap<>();
+            energyStates = new HashMap<>();
+            moodStates = new HashMap<>();
+            unshare();
+            statesPending = true;
+            stateHash = hash;
+            snapshot = GenerationSnapshot.capture(step, hash, buffer, base);
+            republish();
+            return;
+        }
 
+        Map<Cell, Boolean> aliveness = new HashMap<>();
+        Map<Cell, Integer> energy = new HashMap<>();
+        Map<Cell, CellMood> moods = new HashMap<>();
+
+        long hash = 0L;
         for (Tile tile : board.getTiles()) {
             Cell cell = tile.getCell();
             if (cell == null) {
                 throw new IllegalStateException("Each tile should hold a cell!");
             }
-            cellAlivenessStates.put(cell, cell.isAlive());
-            energyStates.put(cell, cell.getLifePoints());
-            moodStates.put(cell, cell.getMood());
+            aliveness.put(cell, cell.isAlive());
+            energy.put(cell, cell.getLifePoints());
+            moods.put(cell, cell.getMood());
+            hash ^= ZobristHash.cellKey(cell);
+
+            int i = buffer.index(cell.getX(), cell.getY());
+            buffer.setAlive(i, cell.isAlive());
+            buffer.setLifePoints(i, cell.getLifePoints());
+            buffer.setMood(i, cell.getMood());
+        }
+
+        cellAlivenessStates = aliveness;
+        energyStates = energy;
+        moodStates = moods;
+        unshare();
+        statesPending = false;
+        stateHash = hash;
+        snapshot = GenerationSnapshot.capture(step, hash, buffer, base);
+        republish();
+    }
+
+    /**
+     * Publishes the new snapshot of this generation to the game's concurrent
+     * readers, if the generation was already published.
+     */
+    private void republish() {
+        if (game != null)
+            game.republish(this);
+    }
+
+    /**
+     * Builds the maps of a generation that only recorded its snapshot, creating
+     * the board's tiles on the way.
+     */
+    @PrePersist
+    private void buildStates() {
+        if (!statesPending)
+            return;
+        GenerationSnapshot s = snapshot;
+        int width = board.getWidth();
+        Map<Cell, Boolean> aliveness = new HashMap<>();
+        Map<Cell, Integer> energy = new HashMap<>();
+        Map<Cell, CellMood> moods = new HashMap<>();
+        for (int i = 0; i < width * board.getHeight(); i++) {
+            Cell cell = board.tileAt(i).getCell();
+            int x = i % width;
+            int y = i / width;
+            aliveness.put(cell, s.isAlive(x, y));
+            energy.put(cell, s.getLifePoints(x, y));
+            moods.put(cell, s.getMood(x, y));
         }
-        return Map.copyOf(cellAlivenessStates);
+        cellAlivenessStates = aliveness;
+        energyStates = energy;
+        moodStates = moods;
+        unshare();
+        statesPending = false;
+    }
+
+    /**
+     * Records that none of the maps was handed out, after they were all replaced.
+     */
+    private void unshare() {
+        alivenessShared = false;
+        energyShared = false;
+        moodsShared = false;
+    }
+
+    /**
+     * Returns the snapshot of the game's newest generation if it is already built.
+     */
+    private GenerationSnapshot newestSnapshot() {
+        if (game == null)
+            return null;
+        List<Generation> generations = game.getGenerations();
+        return generations.isEmpty() ? null : generations.get(generations.size() - 1).snapshot;
+    }
+
+    /**
+     * Returns an immutable view of this generation's cell states.
+     *
+     * Unlike the map getters, the snapshot is safe to read while the simulation
+     * keeps running on another thread, and costs no copy.
+     */
+    public GenerationSnapshot getSnapshot() throws ExtendedGameOfLifeException {
+        GenerationSnapshot s = snapshot;
+        if (s == null) {
+            BoardState state = new BoardState(board.getWidth(), board.getHeight());
+            copyInto(state);
+            s = GenerationSnapshot.capture(step, stateHash, state, null);
+            snapshot = s;
+        }
+        return s;
+    }
+
+    /**
+     * Returns the Zobrist hash of this snapshot, see {@link ZobristHash}.
+     * Equal snapshots always have equal hashes.
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * Writes this snapshot (aliveness, lifePoints and mood of every cell) into a
+     * compact board state. Cell types are not part of the snapshot and are left untouched.
+     *
+     * @param state a state with the dimensions of this generation's board
+     */
+    public void copyInto(BoardState state) {
+        if (statesPending) {
+            snapshot.copyInto(state);
+            return;
+        }
+        for (Map.Entry<Cell, Boolean> e : cellAlivenessStates.entrySet()) {
+            Cell c = e.getKey();
+            state.setAlive(state.index(c.getX(), c.getY()), e.getValue());
+        }
+        for (Map.Entry<Cell, Integer> e : energyStates.entrySet()) {
+            Cell c = e.getKey();
+            state.setLifePoints(state.index(c.getX(), c.getY()), e.getValue());
+        }
+        for (Map.Entry<Cell, CellMood> e : moodStates.entrySet()) {
+            Cell c = e.getKey();
+            state.setMood(state.index(c.getX(), c.getY()), e.getValue());
+        }
+    }
+
+    /**
+     * Compares the snapshots of two generations of the same board cell by cell,
+     * without copying them.
+     *
+     * @param other the generation to compare with
+     * @return true if every cell has the same aliveness, lifePoints and mood in both
+     */
+    boolean sameStateAs(Generation other) {
+        buildStates();
+        other.buildStates();
+        return stateHash.equals(other.stateHash)
+                && cellAlivenessStates.equals(other.cellAlivenessStates)
+                && energyStates.equals(other.energyStates)
+                && moodStates.equals(other.moodStates);
     }
 
     public Set<Cell> getAliveCells() {
+        buildStates();
         return cellAlivenessStates.entrySet().stream()
                 .filter(Map.Entry::getValue)
                 .map(Map.Entry::getKey)
@@ -222,7 +530,109 @@ public class Generation {
 
             cell.setAlive(aliveness);
         }
-        this.snapCells();
+        this.snap();
+    }
+
+    /**
+     * Sets the aliveness of every cell of a region in a single pass.
+     *
+     * Unlike {@link #setState(List, boolean)}, only the cells of the region are
+     * recorded again in this generation: its maps, snapshot and hash are updated
+     * cell by cell, so the cost is proportional to the region. Maps previously
+     * returned by the getters are copied first, so they keep describing the
+     * former state.
+     *
+     * @param region    the cells to update
+     * @param aliveness the new aliveness
+     */
+    public void setState(Region region, boolean aliveness) throws ExtendedGameOfLifeException {
+        updateRegion(region, null, cell -> cell.setAlive(aliveness));
+    }
+
+    /**
+     * Sets the type of every cell of a region and makes it alive, in a single pass
+     * updating only the region in this generation, see {@link #setState(Region, boolean)}.
+     *
+     * @param region the cells to update
+     * @param type   the new type
+     */
+    public void setType(Region region, CellType type) throws ExtendedGameOfLifeException {
+        Objects.requireNonNull(type, "type cannot be null");
+        updateRegion(region, type, cell -> {
+            cell.setType(type);
+            cell.setAlive(true);
+        });
+    }
+
+    /**
+     * Applies an update to the cells of a region and records their new state.
+     *
+     * @param region      the cells to update
+     * @param missingType type of the cells created on tiles without one, or null
+     *                    if such tiles are an error
+     * @param update      the change applied to each cell
+     */
+    private void updateRegion(Region region, CellType missingType, Consumer<Cell> update)
+            throws ExtendedGameOfLifeException {
+        Objects.requireNonNull(region, "region cannot be null");
+        int width = board.getWidth();
+        int height = board.getHeight();
+
+        // generations that only recorded their snapshot keep doing so
+        boolean pending = statesPending;
+        GenerationSnapshot before = getSnapshot();
+        GenerationSnapshot.Editor editor = before.edit();
+        if (!pending) {
+            // copy on write, for maps handed out to readers only
+            if (alivenessShared)
+                cellAlivenessStates = new HashMap<>(cellAlivenessStates);
+            if (energyShared)
+                energyStates = new HashMap<>(energyStates);
+            if (moodsShared)
+                moodStates = new HashMap<>(moodStates);
+            unshare();
+        }
+        Map<Cell, Boolean> aliveness = cellAlivenessStates;
+        Map<Cell, Integer> energy = energyStates;
+        Map<Cell, CellMood> moods = moodStates;
+        long hash = stateHash;
+
+        for (int i = region.nextIndex(width, height, 0); i >= 0; i = region.nextIndex(width, height, i + 1)) {
+            Tile tile = board.tileAt(i);
+            Cell cell = tile.getCell();
+            if (cell == null) {
+                if (missingType == null)
+                    throw new IllegalStateException("Tile at " + tile.getX() + "," + tile.getY() + " has no cell");
+                cell = new Cell(tile.getX(), tile.getY(), board, missingType);
+                tile.setCell(cell);
+            }
+
+            int x = cell.getX();
+            int y = cell.getY();
+            if (pending) {
+                hash ^= ZobristHash.cellKey(x, y, before.isAlive(x, y), before.getMood(x, y), before.getLifePoints(x, y));
+            } else {
+                Boolean wasAlive = aliveness.get(cell);
+                if (wasAlive != null) {
+                    hash ^= ZobristHash.cellKey(x, y, wasAlive, moods.get(cell), energy.get(cell));
+                }
+            }
+            update.accept(cell);
+            hash ^= ZobristHash.cellKey(cell);
+
+            if (!pending) {
+                aliveness.put(cell, cell.isAlive());
+                energy.put(cell, cell.getLifePoints());
+                moods.put(cell, cell.getMood());
+            }
+            editor.setAlive(i, cell.isAlive());
+            editor.setLifePoints(i, cell.getLifePoints());
+            editor.setMood(i, cell.getMood());
+        }
+
+        stateHash = hash;
+        snapshot = editor.build(hash);
+        republish();
     }
 
     public Long getId() {
@@ -233,6 +643,14 @@ public class Generation {
         return step;
     }
 
+    /**
+     * Tells whether this generation was produced by evolving the previous one,
+     * rather than seeded, restored or snapshotted.
+     */
+    boolean isEvolved() {
+        return evolved;
+    }
+
     public Game getGame() {
         return game;
     }
@@ -246,27 +664,54 @@ public class Generation {
     }
 
     public Map<Cell, Integer> getEnergyStates() {
-        return Map.copyOf(energyStates);
+        buildStates();
+        energyShared = true;
+        return Collections.unmodifiableMap(energyStates);
     }
 
     public Map<Cell, Boolean> getCellAlivenessStates() {
-        return Map.copyOf(cellAlivenessStates);
+        buildStates();
+        alivenessShared = true;
+        return Collections.unmodifiableMap(cellAlivenessStates);
     }
 
     public Map<Cell, CellMood> getMoodStates() {
-        return Map.copyOf(moodStates);
+        buildStates();
+        moodsShared = true;
+        return Collections.unmodifiableMap(moodStates);
     }
 
     public void setCellAlivenessStates(Map<Cell, Boolean> states) {
-        this.cellAlivenessStates = states;
+        buildStates();
+        this.cellAlivenessStates = new HashMap<>(states);
+        this.alivenessShared = false;
+        restate();
     }
 
     public void setEnergyStates(Map<Cell, Integer> states) {
-        this.energyStates = states;
+        buildStates();
+        this.energyStates = new HashMap<>(states);
+        this.energyShared = false;
+        restate();
     }
 
     public void setMoodStates(Map<Cell, CellMood> states) {
-        this.moodStates = states;
+        buildStates();
+        this.moodStates = new HashMap<>(states);
+        this.moodsShared = false;
+        restate();
+    }
+
+    /**
+     * Rebuilds the snapshot and the hash from the maps, after one of them was replaced.
+     */
+    private void restate() {
+        BoardState state = new BoardState(board.getWidth(), board.getHeight());
+        copyInto(state);
+        long hash = ZobristHash.of(state);
+        stateHash = hash;
+        snapshot = GenerationSnapshot.capture(step, hash, state, snapshot);
+        republish();
     }
 
 }
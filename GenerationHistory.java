@@ -0,0 +1,509 @@
+package it.polito.extgol;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only, memory-mapped file holding the snapshots of a game's generations.
+ *
+ * File layout:
+ * <pre>
+ *   header (64 bytes): int magic, int version, int width, int height,
+ *                      int capacity, int frameCount, int segmentSize
+ *   index: capacity x long, the file offset of each frame
+ *   frames, starting at the first 4 KiB boundary after the index
+ * </pre>
+ * Each frame stores one generation snapshot (aliveness, lifePoints and mood of
+ * every cell; cell types are not part of generation snapshots):
+ * <pre>
+ *   int length, int step, long stateHash, byte lifePointsEncoding, byte moodEncoding,
+ *   alive bits (1 bit per cell, LSB first),
+ *   lifePoints: DENSE int[cells] | SPARSE int count, count x (int index, int value),
+ *   moods:      DENSE byte[cells] | SPARSE int count, count x (int index, byte ordinal)
+ * </pre>
+ * The sparse encodings only list cells differing from the resting state
+ * (0 lifePoints, NAIVE), and are chosen per frame whenever they are smaller.
+ *
+ * Frames are laid out in fixed-size, lazily mapped segments and never straddle
+ * two of them, so generation k is located with one index lookup and decoded
+ * straight from the mapping into a caller-provided {@link BoardState}. The file
+ * grows one whole segment at a time (a sparse region on most file systems).
+ * Generations of an {@link OffHeapBoardState} are appended and read back the same
+ * way, without copying the state onto the heap. The frame
+ * count in the header is updated after the frame and its index entry, so a crash
+ * while appending loses at most the frame being written.
+ */
+public class GenerationHistory implements Closeable {
+
+    private static final int MAGIC = 0x45474853; // "EGHS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int COUNT_OFFSET = 20;
+    private static final int FRAME_HEADER_SIZE = 18;
+    private static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    private static final long PAGE = 4096;
+
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    private static final CellMood[] MOODS = CellMood.values();
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int capacity;
+    private final int segmentSize;
+    private final long dataStart;
+
+    /** Header and offset index. */
+    private final MappedByteBuffer indexRegion;
+
+    /** Frame segments, mapped on first access. */
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /** Scratch state used to encode appended generations. */
+    private final BoardState scratch;
+
+    private int frameCount;
+    private long writeOffset;
+
+    private GenerationHistory(FileChannel channel, int width, int height, int capacity,
+                              int segmentSize, int frameCount) throws IOException {
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.capacity = capacity;
+        this.segmentSize = segmentSize;
+        this.frameCount = frameCount;
+        this.scratch = new BoardState(width, height);
+
+        long indexEnd = HEADER_SIZE + (long) capacity * Long.BYTES;
+        this.dataStart = (indexEnd + PAGE - 1) / PAGE * PAGE;
+        this.indexRegion = channel.map(MapMode.READ_WRITE, 0, indexEnd);
+
+        if (frameCount == 0) {
+            writeOffset = dataStart;
+        } else {
+            long last = frameOffset(frameCount - 1);
+            writeOffset = last + segment(last).getInt(segmentPosition(last));
+        }
+    }
+
+    /**
+     * Creates a new, empty history file.
+     *
+     * @param path     the file to create; it must not exist
+     * @param width    board width
+     * @param height   board height
+     * @param capacity maximum number of generations the file can hold
+     * @return the opened history
+     * @throws ExtendedGameOfLifeException if the file cannot be created
+     */
+    public static GenerationHistory create(Path path, int width, int height, int capacity)
+            throws ExtendedGameOfLifeException {
+        if (capacity <= 0 || capacity > (Integer.MAX_VALUE - HEADER_SIZE) / Long.BYTES)
+            throw new ExtendedGameOfLifeException("Invalid history capacity: " + capacity);
+        long maxFrame = maxFrameSize((long) width * height);
+        if (maxFrame > Integer.MAX_VALUE)
+            throw new ExtendedGameOfLifeException("Board too large for a history file");
+        int segmentSize = (int) Math.max(DEFAULT_SEGMENT_SIZE, maxFrame);
+
+        try {
+            FileChannel ch = FileChannel.open(path, CREATE_NEW, READ, WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height)
+                  .putInt(capacity).putInt(0).putInt(segmentSize);
+            header.clear();
+            ch.write(header, 0);
+            return new GenerationHistory(ch, width, height, capacity, segmentSize, 0);
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot create history file " + path, e);
+        }
+    }
+
+    /**
+     * Opens an existing history file, to read it and append further generations.
+     *
+     * @param path the history file
+     * @return the opened history
+     * @throws ExtendedGameOfLifeException if the file cannot be opened or is not a history file
+     */
+    public static GenerationHistory open(Path path) throws ExtendedGameOfLifeException {
+        try {
+            FileChannel ch = FileChannel.open(path, READ, WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            ch.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                ch.close();
+                throw new ExtendedGameOfLifeException("Not a history file: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                ch.close();
+                throw new ExtendedGameOfLifeException("Unsupported history version " + version);
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            int capacity = header.getInt();
+            int count = header.getInt();
+            int segmentSize = header.getInt();
+            return new GenerationHistory(ch, width, height, capacity, segmentSize, count);
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot open history file " + path, e);
+        }
+    }
+
+    private static long maxFrameSize(long cells) {
+        return FRAME_HEADER_SIZE + (cells + 7) / 8
+                + Integer.BYTES + cells * Integer.BYTES
+                + Integer.BYTES + cells;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Number of generations stored. */
+    public int size() {
+        return frameCount;
+    }
+
+    /**
+     * Appends the snapshot of a generation.
+     *
+     * @param generation a generation of a board with the history's dimensions
+     * @throws ExtendedGameOfLifeException if the history is full or cannot grow
+     */
+    public void append(Generation generation) throws ExtendedGameOfLifeException {
+        generation.copyInto(scratch);
+        append(generation.getStep(), generation.getStateHash(), scratch);
+    }
+
+    /**
+     * Appends a board state as the snapshot of the given step.
+     *
+     * @param step      the generation step
+     * @param stateHash the Zobrist hash of the state
+     * @param state     the state to store (types are ignored)
+     * @throws ExtendedGameOfLifeException if the history is full or cannot grow
+     */
+    public void append(int step, long stateHash, BoardState state) throws ExtendedGameOfLifeException {
+        if (state.getWidth() != width || state.getHeight() != height)
+            throw new ExtendedGameOfLifeException("State dimensions do not match the history");
+        if (frameCount == capacity)
+            throw new ExtendedGameOfLifeException("History is full (" + capacity + " generations)");
+
+        int cells = state.size();
+        int[] lifePoints = state.lifePointsPlane();
+        byte[] moods = state.moodPlane();
+        int lpCount = 0;
+        int moodCount = 0;
+        for (int i = 0; i < cells; i++) {
+            if (lifePoints[i] != 0) lpCount++;
+            if (moods[i] != 0) moodCount++;
+        }
+        boolean sparseLp = (long) lpCount * 8 < (long) cells * 4;
+        boolean sparseMood = (long) moodCount * 5 < cells;
+
+        long frameSize = frameSize(cells, sparseLp, lpCount, sparseMood, moodCount);
+        try {
+            ByteBuffer buf = startFrame(frameSize, step, stateHash, sparseLp, sparseMood);
+            state.writeAliveBits(buf);
+
+            if (sparseLp) {
+                buf.putInt(lpCount);
+                for (int i = 0; i < cells; i++) {
+                    if (lifePoints[i] != 0) buf.putInt(i).putInt(lifePoints[i]);
+                }
+            } else {
+                buf.asIntBuffer().put(lifePoints);
+                buf.position(buf.position() + cells * Integer.BYTES);
+            }
+
+            if (sparseMood) {
+                buf.putInt(moodCount);
+                for (int i = 0; i < cells; i++) {
+                    if (moods[i] != 0) buf.putInt(i).put(moods[i]);
+                }
+            } else {
+                buf.put(moods);
+            }
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot grow history file", e);
+        }
+        commitFrame(frameSize);
+    }
+
+    /**
+     * Appends an off-heap board state as the snapshot of the given step, in the
+     * same format as {@link #append(int, long, BoardState)}.
+     *
+     * @param step      the generation step
+     * @param stateHash the Zobrist hash of the state
+     * @param state     the state to store (types are ignored)
+     * @throws ExtendedGameOfLifeException if the history is full or cannot grow
+     */
+    public void append(int step, long stateHash, OffHeapBoardState state) throws ExtendedGameOfLifeException {
+        if (state.getWidth() != width || state.getHeight() != height)
+            throw new ExtendedGameOfLifeException("State dimensions do not match the history");
+        if (frameCount == capacity)
+            throw new ExtendedGameOfLifeException("History is full (" + capacity + " generations)");
+
+        // the dimensions were checked against maxFrameSize when the history was created
+        int cells = (int) state.size();
+        int lpCount = 0;
+        int moodCount = 0;
+        for (int i = 0; i < cells; i++) {
+            if (state.getLifePoints(i) != 0) lpCount++;
+            if (state.getMood(i) != CellMood.NAIVE) moodCount++;
+        }
+        boolean sparseLp = (long) lpCount * 8 < (long) cells * 4;
+        boolean sparseMood = (long) moodCount * 5 < cells;
+
+        long frameSize = frameSize(cells, sparseLp, lpCount, sparseMood, moodCount);
+        try {
+            ByteBuffer buf = startFrame(frameSize, step, stateHash, sparseLp, sparseMood);
+            state.writeAliveBits(buf);
+
+            if (sparseLp) {
+                buf.putInt(lpCount);
+                for (int i = 0; i < cells; i++) {
+                    int points = state.getLifePoints(i);
+                    if (points != 0) buf.putInt(i).putInt(points);
+                }
+            } else {
+                state.writeLifePoints(buf);
+            }
+
+            if (sparseMood) {
+                buf.putInt(moodCount);
+                for (int i = 0; i < cells; i++) {
+                    CellMood mood = state.getMood(i);
+                    if (mood != CellMood.NAIVE) buf.putInt(i).put((byte) mood.ordinal());
+                }
+            } else {
+                state.writeMoods(buf);
+            }
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot grow history file", e);
+        }
+        commitFrame(frameSize);
+    }
+
+    private static long frameSize(int cells, boolean sparseLp, int lpCount, boolean sparseMood, int moodCount) {
+        return FRAME_HEADER_SIZE + (cells + 7) / 8
+                + (sparseLp ? Integer.BYTES + lpCount * 8L : cells * 4L)
+                + (sparseMood ? Integer.BYTES + moodCount * 5L : cells);
+    }
+
+    /**
+     * Places a frame of the given size at the write offset, moving to the next
+     * segment if needed, and writes its header.
+     *
+     * @return a view positioned after the frame header
+     */
+    private ByteBuffer startFrame(long frameSize, int step, long stateHash, boolean sparseLp, boolean sparseMood)
+            throws IOException {
+        // frames never straddle two segments
+        long relative = writeOffset - dataStart;
+        long room = segmentSize - relative % segmentSize;
+        if (frameSize > room)
+            writeOffset += room;
+
+        ByteBuffer buf = segment(writeOffset).duplicate();
+        buf.position(segmentPosition(writeOffset));
+        buf.putInt((int) frameSize).putInt(step).putLong(stateHash)
+           .put(sparseLp ? SPARSE : DENSE).put(sparseMood ? SPARSE : DENSE);
+        return buf;
+    }
+
+    /**
+     * Publishes the frame written at the write offset: index entry first, then frame count.
+     */
+    private void commitFrame(long frameSize) {
+        indexRegion.putLong(HEADER_SIZE + frameCount * Long.BYTES, writeOffset);
+        writeOffset += frameSize;
+        frameCount++;
+        indexRegion.putInt(COUNT_OFFSET, frameCount);
+    }
+
+    /**
+     * Returns the step of the k-th stored generation.
+     */
+    public int getStep(int k) {
+        return frame(k).getInt(4);
+    }
+
+    /**
+     * Returns the state hash of the k-th stored generation.
+     */
+    public long getStateHash(int k) {
+        return frame(k).getLong(8);
+    }
+
+    /**
+     * Decodes the k-th stored generation into the given state, straight from the
+     * file mapping. Cell types are left untouched.
+     *
+     * @param k     the position of the generation in the history (0-based)
+     * @param state the state to overwrite, with the history's dimensions;
+     *              a new one is allocated if null
+     * @return the decoded state
+     * @throws ExtendedGameOfLifeException if k is out of range
+     */
+    public BoardState read(int k, BoardState state) throws ExtendedGameOfLifeException {
+        if (state == null)
+            state = new BoardState(width, height);
+        else if (state.getWidth() != width || state.getHeight() != height)
+            throw new ExtendedGameOfLifeException("State dimensions do not match the history");
+
+        ByteBuffer buf = frame(k);
+        int cells = state.size();
+        byte lpEncoding = buf.get(16);
+        byte moodEncoding = buf.get(17);
+        buf.position(FRAME_HEADER_SIZE);
+        state.readAliveBits(buf);
+
+        int[] lifePoints = state.lifePointsPlane();
+        if (lpEncoding == SPARSE) {
+            Arrays.fill(lifePoints, 0);
+            int count = buf.getInt();
+            for (int j = 0; j < count; j++) {
+                lifePoints[buf.getInt()] = buf.getInt();
+            }
+        } else {
+            buf.asIntBuffer().get(lifePoints);
+            buf.position(buf.position() + cells * Integer.BYTES);
+        }
+
+        byte[] moods = state.moodPlane();
+        if (moodEncoding == SPARSE) {
+            Arrays.fill(moods, (byte) 0);
+            int count = buf.getInt();
+            for (int j = 0; j < count; j++) {
+                moods[buf.getInt()] = buf.get();
+            }
+        } else {
+            buf.get(moods);
+        }
+        return state;
+    }
+
+    /**
+     * Decodes the k-th stored generation into an off-heap state, straight from the
+     * file mapping. Cell types are left untouched.
+     *
+     * @param k     the position of the generation in the history (0-based)
+     * @param state the state to overwrite, with the history's dimensions
+     * @throws ExtendedGameOfLifeException if k is out of range or the dimensions differ
+     */
+    public void readInto(int k, OffHeapBoardState state) throws ExtendedGameOfLifeException {
+        if (state.getWidth() != width || state.getHeight() != height)
+            throw new ExtendedGameOfLifeException("State dimensions do not match the history");
+
+        ByteBuffer buf = frame(k);
+        int cells = (int) state.size();
+        byte lpEncoding = buf.get(16);
+        byte moodEncoding = buf.get(17);
+        buf.position(FRAME_HEADER_SIZE);
+        state.readAliveBits(buf);
+
+        if (lpEncoding == SPARSE) {
+            for (int i = 0; i < cells; i++) {
+                state.setLifePoints(i, 0);
+            }
+            int count = buf.getInt();
+            for (int j = 0; j < count; j++) {
+                state.setLifePoints(buf.getInt(), buf.getInt());
+            }
+        } else {
+            state.readLifePoints(buf);
+        }
+
+        if (moodEncoding == SPARSE) {
+            for (int i = 0; i < cells; i++) {
+                state.setMood(i, CellMood.NAIVE);
+            }
+            int count = buf.getInt();
+            for (int j = 0; j < count; j++) {
+                state.setMood(buf.getInt(), MOODS[buf.get()]);
+            }
+        } else {
+            state.readMoods(buf);
+        }
+    }
+
+    /**
+     * Forces all appended generations to the storage device.
+     */
+    public void flush() {
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) segment.force();
+        }
+        indexRegion.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    /**
+     * Returns a view of the k-th frame, positioned at its start.
+     */
+    private ByteBuffer frame(int k) throws ExtendedGameOfLifeException {
+        if (k < 0 || k >= frameCount)
+            throw new ExtendedGameOfLifeException("No generation at history position " + k);
+        long offset = frameOffset(k);
+        try {
+            ByteBuffer buf = segment(offset).duplicate();
+            int start = segmentPosition(offset);
+            buf.position(start).limit(start + buf.getInt(start));
+            return buf.slice();
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot map history file", e);
+        }
+    }
+
+    private long frameOffset(int k) {
+        return indexRegion.getLong(HEADER_SIZE + k * Long.BYTES);
+    }
+
+    private int segmentPosition(long offset) {
+        return (int) ((offset - dataStart) % segmentSize);
+    }
+
+    private MappedByteBuffer segment(long offset) throws IOException {
+        int s = (int) ((offset - dataStart) / segmentSize);
+        while (segments.size() <= s) {
+            segments.add(null);
+        }
+        MappedByteBuffer segment = segments.get(s);
+        if (segment == null) {
+            segment = channel.map(MapMode.READ_WRITE, dataStart + (long) s * segmentSize, segmentSize);
+            segments.set(s, segment);
+        }
+        return segment;
+    }
+}
@@ -0,0 +1,160 @@
+package it.polito.extgol;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Append-only log of the frames ({@link GenerationSnapshot}s) a game publishes
+ * for concurrent readers, see {@link Game#getFrames()}.
+ *
+ * The log has a single writer, the thread simulating the game, and any number
+ * of readers, none of which ever blocks. A frame is appended once its generation
+ * is complete, so readers never observe a half-applied step: they see a prefix
+ * of the log, each entry holding the final state of its step. Frames of
+ * generations evicted by the game's {@link RetentionPolicy} read as null; a frame
+ * replaced by an edit of its generation (e.g. {@link Generation#setState(Region, boolean)})
+ * reads as either version.
+ *
+ * Entries live in fixed-size chunks that are never moved, so appending costs
+ * no copy of the frames already published.
+ */
+public final class GenerationLog {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** Frame chunks; the array is replaced, never modified, when it grows. */
+    private volatile AtomicReferenceArray<GenerationSnapshot>[] frames = newDirectory(0);
+
+    /** Step of each entry, written once before the entry is published. */
+    private volatile int[][] steps = new int[0][];
+
+    /** Number of published entries; written last, after the entry itself. */
+    private volatile int size;
+
+    private volatile GenerationSnapshot latest;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AtomicReferenceArray<GenerationSnapshot>[] newDirectory(int length) {
+        return new AtomicReferenceArray[length];
+    }
+
+    /**
+     * Returns the number of entries published so far, evicted ones included.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the newest frame, or null if the log is empty.
+     */
+    public GenerationSnapshot latest() {
+        return latest;
+    }
+
+    /**
+     * Returns the step of the k-th entry.
+     *
+     * @throws IndexOutOfBoundsException if k is not below {@link #size()}
+     */
+    public int getStep(int k) {
+        checkIndex(k);
+        return steps[k >>> CHUNK_BITS][k & CHUNK_MASK];
+    }
+
+    /**
+     * Returns the frame of the k-th entry, or null if its generation was evicted.
+     *
+     * @throws IndexOutOfBoundsException if k is not below {@link #size()}
+     */
+    public GenerationSnapshot get(int k) {
+        checkIndex(k);
+        return frames[k >>> CHUNK_BITS].get(k & CHUNK_MASK);
+    }
+
+    /**
+     * Returns the frame of a step, or null if the step was not published or its
+     * generation was evicted.
+     */
+    public GenerationSnapshot find(int step) {
+        int k = indexOf(step, size);
+        return k >= 0 ? get(k) : null;
+    }
+
+    private void checkIndex(int k) {
+        if (k < 0 || k >= size)
+            throw new IndexOutOfBoundsException("No entry " + k + " in a log of " + size);
+    }
+
+    /** Binary search of a step among the first n entries, whose steps increase. */
+    private int indexOf(int step, int n) {
+        int[][] s = steps;
+        int lo = 0;
+        int hi = n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midStep = s[mid >>> CHUNK_BITS][mid & CHUNK_MASK];
+            if (midStep < step) {
+                lo = mid + 1;
+            } else if (midStep > step) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the step of the newest entry, or -1.
+     */
+    int lastStep() {
+        int n = size;
+        return n > 0 ? steps[(n - 1) >>> CHUNK_BITS][(n - 1) & CHUNK_MASK] : -1;
+    }
+
+    /**
+     * Publishes the frame of a step after the newest one. Writer only.
+     */
+    void append(GenerationSnapshot frame) {
+        int n = size;
+        int chunk = n >>> CHUNK_BITS;
+        if (chunk == frames.length) {
+            int[][] s = Arrays.copyOf(steps, chunk + 1);
+            s[chunk] = new int[CHUNK_SIZE];
+            AtomicReferenceArray<GenerationSnapshot>[] f = Arrays.copyOf(frames, chunk + 1);
+            f[chunk] = new AtomicReferenceArray<>(CHUNK_SIZE);
+            steps = s;
+            frames = f;
+        }
+        steps[chunk][n & CHUNK_MASK] = frame.getStep();
+        frames[chunk].set(n & CHUNK_MASK, frame);
+        latest = frame;
+        size = n + 1;
+    }
+
+    /**
+     * Replaces the frame of a published step, e.g. after its generation was
+     * edited; does nothing if the step was not published. Writer only.
+     */
+    void replace(GenerationSnapshot frame) {
+        int n = size;
+        int k = indexOf(frame.getStep(), n);
+        if (k < 0)
+            return;
+        frames[k >>> CHUNK_BITS].set(k & CHUNK_MASK, frame);
+        if (k == n - 1)
+            latest = frame;
+    }
+
+    /**
+     * Drops the frame of an evicted step, keeping its entry. Writer only.
+     */
+    void evict(int step) {
+        int k = indexOf(step, size);
+        if (k >= 0)
+            frames[k >>> CHUNK_BITS].set(k & CHUNK_MASK, null);
+    }
+}
@@ -0,0 +1,124 @@
+package it.polito.extgol;
+
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Repository of persisted generations, loaded one step at a time instead of
+ * through the whole {@code Game.generations} list.
+ *
+ * Lookups go through the (game_id, step) unique constraint of the generation table.
+ */
+public class GenerationRepository extends GenericExtGOLRepository<Generation, Long> {
+
+    public GenerationRepository() {
+        super(Generation.class);
+    }
+
+    /**
+     * Returns the greatest stored step of a game less than or equal to the given one, or -1.
+     */
+    public int floorStep(Long gameId, int step) {
+        return boundStep("SELECT MAX(g.step) FROM " + entityName + " g WHERE g.game.id = :game AND g.step <= :step",
+                gameId, step);
+    }
+
+    /**
+     * Returns the smallest stored step of a game greater than the given one, or -1.
+     */
+    public int higherStep(Long gameId, int step) {
+        return boundStep("SELECT MIN(g.step) FROM " + entityName + " g WHERE g.game.id = :game AND g.step > :step",
+                gameId, step);
+    }
+
+    private int boundStep(String query, Long gameId, int step) {
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            Object bound = em.createQuery(query)
+                             .setParameter("game", gameId)
+                             .setParameter("step", step)
+                             .getSingleResult();
+            return bound != null ? ((Number) bound).intValue() : -1;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Loads the generation of a game stored at a step into a compact state.
+     *
+     * @return the hash recorded with the generation
+     * @throws ExtendedGameOfLifeException if the step is not stored
+     */
+    public long readState(Long gameId, int step, BoardState state) throws ExtendedGameOfLifeException {
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            Generation generation = find(em, gameId, step);
+            generation.copyInto(state);
+            return generation.getStateHash();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Returns the hash recorded with the generation of a game stored at a step,
+     * without loading its cell states.
+     *
+     * @throws ExtendedGameOfLifeException if the step is not stored
+     */
+    public long stateHash(Long gameId, int step) throws ExtendedGameOfLifeException {
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            List<Long> hashes = em.createQuery(
+                    "SELECT g.stateHash FROM " + entityName + " g WHERE g.game.id = :game AND g.step = :step", Long.class)
+                .setParameter("game", gameId)
+                .setParameter("step", step)
+                .getResultList();
+            if (hashes.isEmpty())
+                throw new ExtendedGameOfLifeException("Generation " + step + " was not stored");
+            return hashes.get(0);
+        } finally {
+            em.close();
+        }
+    }
+
+    private Generation find(EntityManager em, Long gameId, int step) throws ExtendedGameOfLifeException {
+        List<Generation> found = em.createQuery(
+                "SELECT g FROM " + entityName + " g WHERE g.game.id = :game AND g.step = :step", Generation.class)
+            .setParameter("game", gameId)
+            .setParameter("step", step)
+            .getResultList();
+        if (found.isEmpty())
+            throw new ExtendedGameOfLifeException("Generation " + step + " was not stored");
+        return found.get(0);
+    }
+
+    /**
+     * Returns the stored generations of a game as keyframes for a {@link ReplayService}.
+     */
+    public KeyframeStore keyframes(Long gameId) {
+        return new KeyframeStore() {
+            @Override
+            public int floorStep(int step) {
+                return GenerationRepository.this.floorStep(gameId, step);
+            }
+
+            @Override
+            public int higherStep(int step) {
+                return GenerationRepository.this.higherStep(gameId, step);
+            }
+
+            @Override
+            public void read(int step, BoardState state) throws ExtendedGameOfLifeException {
+                readState(gameId, step, state);
+            }
+
+            @Override
+            public long stateHash(int step) throws ExtendedGameOfLifeException {
+                return GenerationRepository.this.stateHash(gameId, step);
+            }
+        };
+    }
+}
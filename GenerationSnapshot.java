@@ -0,0 +1,285 @@
+package it.polito.extgol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable view of the state of every cell in one generation.
+ *
+ * The aliveness, lifePoints and mood planes are split into fixed-size chunks of
+ * {@value #CHUNK_SIZE} cells, in the row-major order of {@link BoardState}.
+ * A snapshot captured on top of a previous one reuses every chunk whose content
+ * did not change, so consecutive generations share most of their memory
+ * (moods, for instance, are usually shared entirely).
+ *
+ * Chunks are never written after construction: snapshots can be read from any
+ * thread without locking or copying.
+ */
+public final class GenerationSnapshot {
+
+    /** Number of cells per chunk. */
+    static final int CHUNK_SIZE = 256;
+
+    private static final int CHUNK_BITS = Integer.numberOfTrailingZeros(CHUNK_SIZE);
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final CellMood[] MOODS = CellMood.values();
+
+    private final int step;
+    private final long stateHash;
+    private final int width;
+    private final int height;
+    private final int population;
+
+    private final byte[][] alive;
+    private final int[][] lifePoints;
+    private final byte[][] moods;
+
+    private GenerationSnapshot(int step, long stateHash, int width, int height, int population,
+            byte[][] alive, int[][] lifePoints, byte[][] moods) {
+        this.step = step;
+        this.stateHash = stateHash;
+        this.width = width;
+        this.height = height;
+        this.population = population;
+        this.alive = alive;
+        this.lifePoints = lifePoints;
+        this.moods = moods;
+    }
+
+    /**
+     * Captures the aliveness, lifePoints and moods of a board state.
+     *
+     * @param step      the step of the captured generation
+     * @param stateHash the Zobrist hash of the captured generation
+     * @param state     the state to capture; it is not retained
+     * @param base      a snapshot of the same board whose unchanged chunks are
+     *                  shared, or null to copy every chunk
+     * @return the new snapshot
+     */
+    public static GenerationSnapshot capture(int step, long stateHash, BoardState state, GenerationSnapshot base) {
+        if (base != null && (base.width != state.getWidth() || base.height != state.getHeight()))
+            base = null;
+
+        int size = state.size();
+        int chunks = (size + CHUNK_MASK) >>> CHUNK_BITS;
+        byte[][] alive = new byte[chunks][];
+        int[][] lifePoints = new int[chunks][];
+        byte[][] moods = new byte[chunks][];
+
+        byte[] a = state.alivePlane();
+        int[] lp = state.lifePointsPlane();
+        byte[] m = state.moodPlane();
+        int population = 0;
+
+        for (int c = 0; c < chunks; c++) {
+            int from = c << CHUNK_BITS;
+            int to = Math.min(from + CHUNK_SIZE, size);
+            int len = to - from;
+
+            if (base != null && Arrays.equals(base.alive[c], 0, len, a, from, to)) {
+                alive[c] = base.alive[c];
+            } else {
+                alive[c] = Arrays.copyOfRange(a, from, to);
+            }
+            if (base != null && Arrays.equals(base.lifePoints[c], 0, len, lp, from, to)) {
+                lifePoints[c] = base.lifePoints[c];
+            } else {
+                lifePoints[c] = Arrays.copyOfRange(lp, from, to);
+            }
+            if (base != null && Arrays.equals(base.moods[c], 0, len, m, from, to)) {
+                moods[c] = base.moods[c];
+            } else {
+                moods[c] = Arrays.copyOfRange(m, from, to);
+            }
+
+            for (int i = from; i < to; i++) {
+                population += a[i];
+            }
+        }
+        return new GenerationSnapshot(step, stateHash, state.getWidth(), state.getHeight(), population,
+                alive, lifePoints, moods);
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of alive cells.
+     */
+    public int getPopulation() {
+        return population;
+    }
+
+    public boolean isAlive(int x, int y) {
+        int i = index(x, y);
+        return alive[i >>> CHUNK_BITS][i & CHUNK_MASK] != 0;
+    }
+
+    public int getLifePoints(int x, int y) {
+        int i = index(x, y);
+        return lifePoints[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    public CellMood getMood(int x, int y) {
+        int i = index(x, y);
+        return MOODS[moods[i >>> CHUNK_BITS][i & CHUNK_MASK]];
+    }
+
+    public boolean isAlive(Coord c) {
+        return isAlive(c.getX(), c.getY());
+    }
+
+    public int getLifePoints(Coord c) {
+        return getLifePoints(c.getX(), c.getY());
+    }
+
+    public CellMood getMood(Coord c) {
+        return getMood(c.getX(), c.getY());
+    }
+
+    /**
+     * Returns the coordinates of the alive cells, in row-major order.
+     */
+    public List<Coord> getAliveCoords() {
+        List<Coord> coords = new ArrayList<>(population);
+        for (int c = 0; c < alive.length; c++) {
+            byte[] chunk = alive[c];
+            for (int j = 0; j < chunk.length; j++) {
+                if (chunk[j] != 0) {
+                    int i = (c << CHUNK_BITS) + j;
+                    coords.add(new Coord(i % width, i / width));
+                }
+            }
+        }
+        return coords;
+    }
+
+    /**
+     * Writes aliveness, lifePoints and moods into a state of the same dimensions.
+     * Cell types are not part of the snapshot and are left untouched.
+     */
+    public void copyInto(BoardState state) throws ExtendedGameOfLifeException {
+        if (state.getWidth() != width || state.getHeight() != height)
+            throw new ExtendedGameOfLifeException("State dimensions do not match the snapshot");
+        byte[] a = state.alivePlane();
+        int[] lp = state.lifePointsPlane();
+        byte[] m = state.moodPlane();
+        for (int c = 0; c < alive.length; c++) {
+            int from = c << CHUNK_BITS;
+            System.arraycopy(alive[c], 0, a, from, alive[c].length);
+            System.arraycopy(lifePoints[c], 0, lp, from, lifePoints[c].length);
+            System.arraycopy(moods[c], 0, m, from, moods[c].length);
+        }
+    }
+
+    /**
+     * Counts the chunks, over all planes, held in common with another snapshot.
+     */
+    int sharedChunks(GenerationSnapshot other) {
+        int shared = 0;
+        for (int c = 0; c < Math.min(alive.length, other.alive.length); c++) {
+            if (alive[c] == other.alive[c]) shared++;
+            if (lifePoints[c] == other.lifePoints[c]) shared++;
+            if (moods[c] == other.moods[c]) shared++;
+        }
+        return shared;
+    }
+
+    /**
+     * Starts a copy of this snapshot in which some cells are changed; only the
+     * chunks holding changed cells are copied.
+     */
+    Editor edit() {
+        return new Editor(this);
+    }
+
+    /**
+     * Returns a snapshot with the same cells for another step, sharing every chunk.
+     */
+    GenerationSnapshot atStep(int step) {
+        if (step == this.step)
+            return this;
+        return new GenerationSnapshot(step, stateHash, width, height, population, alive, lifePoints, moods);
+    }
+
+    /**
+     * Builds a snapshot from another one by changing single cells, copying each
+     * touched chunk once. An editor must not be used after {@link #build}.
+     */
+    static final class Editor {
+
+        private final GenerationSnapshot base;
+        private final byte[][] alive;
+        private final int[][] lifePoints;
+        private final byte[][] moods;
+        private final boolean[] ownAlive;
+        private final boolean[] ownLifePoints;
+        private final boolean[] ownMoods;
+        private int population;
+
+        private Editor(GenerationSnapshot base) {
+            this.base = base;
+            this.alive = base.alive.clone();
+            this.lifePoints = base.lifePoints.clone();
+            this.moods = base.moods.clone();
+            this.ownAlive = new boolean[alive.length];
+            this.ownLifePoints = new boolean[alive.length];
+            this.ownMoods = new boolean[alive.length];
+            this.population = base.population;
+        }
+
+        void setAlive(int i, boolean isAlive) {
+            int c = i >>> CHUNK_BITS;
+            if (!ownAlive[c]) {
+                alive[c] = alive[c].clone();
+                ownAlive[c] = true;
+            }
+            byte value = (byte) (isAlive ? 1 : 0);
+            population += value - alive[c][i & CHUNK_MASK];
+            alive[c][i & CHUNK_MASK] = value;
+        }
+
+        void setLifePoints(int i, int points) {
+            int c = i >>> CHUNK_BITS;
+            if (!ownLifePoints[c]) {
+                lifePoints[c] = lifePoints[c].clone();
+                ownLifePoints[c] = true;
+            }
+            lifePoints[c][i & CHUNK_MASK] = points;
+        }
+
+        void setMood(int i, CellMood mood) {
+            int c = i >>> CHUNK_BITS;
+            if (!ownMoods[c]) {
+                moods[c] = moods[c].clone();
+                ownMoods[c] = true;
+            }
+            moods[c][i & CHUNK_MASK] = (byte) mood.ordinal();
+        }
+
+        GenerationSnapshot build(long stateHash) {
+            return new GenerationSnapshot(base.step, stateHash, base.width, base.height, population,
+                    alive, lifePoints, moods);
+        }
+    }
+
+    private int index(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height)
+            throw new IndexOutOfBoundsException("Invalid coordinate: (" + x + ", " + y + ")");
+        return y * width + x;
+    }
+}
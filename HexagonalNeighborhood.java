@@ -0,0 +1,43 @@
+package it.polito.extgol;
+
+/**
+ * Hexagonal neighborhood in axial coordinates, see {@link Neighborhood#hexagonal()}.
+ *
+ * With six neighbors, direct lookups in a copy of the plane with a dead border
+ * are cheaper than a summed-area table.
+ */
+final class HexagonalNeighborhood implements Neighborhood {
+
+    /** Aliveness with a dead border, (width + 2) x (height + 2), reused across steps. */
+    private byte[] padded = new byte[0];
+
+    @Override
+    public int getRadius() {
+        return 1;
+    }
+
+    @Override
+    public int getMaxNeighbors() {
+        return 6;
+    }
+
+    @Override
+    public void countAlive(BoardState state, int[] counts) {
+        int w = state.getWidth();
+        int h = state.getHeight();
+        int pw = w + 2;
+        padded = ScalarEvolutionEngine.padded(padded, state);
+        byte[] src = padded;
+        for (int y = 0; y < h; y++) {
+            int up = y * pw;
+            int mid = up + pw;
+            int down = mid + pw;
+            int out = y * w;
+            for (int x = 0; x < w; x++) {
+                counts[out + x] = src[up + x + 1] + src[up + x + 2]
+                                + src[mid + x] + src[mid + x + 2]
+                                + src[down + x] + src[down + x + 1];
+            }
+        }
+    }
+}
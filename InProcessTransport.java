@@ -0,0 +1,93 @@
+package it.polito.extgol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Transport connecting nodes living in the same JVM through in-memory queues.
+ *
+ * Messages are handed over by reference, without copying or serialization.
+ */
+public final class InProcessTransport implements PartitionTransport {
+
+    /** Marker delivered to pending receives when a node is closed. */
+    private static final byte[] CLOSED = new byte[0];
+
+    private final int node;
+
+    /** Shared mailboxes: {@code mailboxes.get(to).get(from)}. */
+    private final List<List<BlockingQueue<byte[]>>> mailboxes;
+
+    private volatile boolean closed;
+
+    private InProcessTransport(int node, List<List<BlockingQueue<byte[]>>> mailboxes) {
+        this.node = node;
+        this.mailboxes = mailboxes;
+    }
+
+    /**
+     * Creates connected endpoints for the coordinator and the given number of workers.
+     *
+     * @param workers number of worker nodes
+     * @return the endpoints, indexed by node number
+     */
+    public static InProcessTransport[] create(int workers) throws ExtendedGameOfLifeException {
+        if (workers <= 0)
+            throw new ExtendedGameOfLifeException("At least one worker is required");
+        int nodes = workers + 1;
+        List<List<BlockingQueue<byte[]>>> mailboxes = new ArrayList<>(nodes);
+        for (int to = 0; to < nodes; to++) {
+            List<BlockingQueue<byte[]>> inbox = new ArrayList<>(nodes);
+            for (int from = 0; from < nodes; from++) {
+                inbox.add(new LinkedBlockingQueue<>());
+            }
+            mailboxes.add(List.copyOf(inbox));
+        }
+        List<List<BlockingQueue<byte[]>>> shared = List.copyOf(mailboxes);
+        InProcessTransport[] endpoints = new InProcessTransport[nodes];
+        for (int n = 0; n < nodes; n++) {
+            endpoints[n] = new InProcessTransport(n, shared);
+        }
+        return endpoints;
+    }
+
+    @Override
+    public int node() {
+        return node;
+    }
+
+    @Override
+    public void send(int to, byte[] message) throws ExtendedGameOfLifeException {
+        if (closed)
+            throw new ExtendedGameOfLifeException("Transport of node " + node + " is closed");
+        mailboxes.get(to).get(node).add(message);
+    }
+
+    @Override
+    public byte[] receive(int from) throws ExtendedGameOfLifeException {
+        byte[] message;
+        try {
+            message = mailboxes.get(node).get(from).take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExtendedGameOfLifeException("Interrupted while waiting for node " + from, e);
+        }
+        if (message == CLOSED) {
+            mailboxes.get(node).get(from).add(CLOSED);
+            throw new ExtendedGameOfLifeException("Transport of node " + node + " is closed");
+        }
+        return message;
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        for (BlockingQueue<byte[]> mailbox : mailboxes.get(node)) {
+            mailbox.add(CLOSED);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package it.polito.extgol;
 
+import java.util.Map;
+
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
@@ -19,6 +21,9 @@ public class JPAUtil {
     /** The name of the persistence unit defined in persistence.xml. */
     private static final String PU_NAME = "game-of-life-pu";
 
+    /** Properties overriding those of persistence.xml (e.g. JDBC URL, schema generation). */
+    private static Map<String, Object> overrides = Map.of();
+
     private JPAUtil() {} // utility class need not to be instantiated
     
     /**
@@ -28,7 +33,7 @@ public class JPAUtil {
      */
     private static EntityManagerFactory getCurrentFactory() {
         if (emf == null || !emf.isOpen()) {
-            emf = Persistence.createEntityManagerFactory(PU_NAME);
+            emf = Persistence.createEntityManagerFactory(PU_NAME, overrides);
         }
         return emf;
     }
@@ -45,6 +50,19 @@ public class JPAUtil {
         return getCurrentFactory().createEntityManager();
     }
 
+    /**
+     * Replaces the properties overriding the persistence unit configuration and
+     * closes the current factory, so that the next EntityManager is created with them.
+     *
+     * Typically used to point the persistence unit to an embedded in-memory database.
+     *
+     * @param properties JPA/provider properties to apply on top of persistence.xml
+     */
+    public static void configure(Map<String, Object> properties) {
+        close();
+        overrides = Map.copyOf(properties);
+    }
+
     /**
      * Closes the shared EntityManagerFactory if it is open.
      *
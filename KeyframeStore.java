@@ -0,0 +1,104 @@
+package it.polito.extgol;
+
+/**
+ * Source of the stored generations of a game, used as keyframes by a
+ * {@link ReplayService}: any other step is re-simulated from the nearest
+ * keyframe before it.
+ *
+ * @see GenerationRepository#keyframes(Long)
+ */
+public interface KeyframeStore {
+
+    /**
+     * Returns the greatest stored step less than or equal to the given one, or -1.
+     */
+    int floorStep(int step);
+
+    /**
+     * Returns the smallest stored step greater than the given one, or -1.
+     */
+    int higherStep(int step);
+
+    /**
+     * Writes the aliveness, lifePoints and moods stored at a step into a state;
+     * cell types are left untouched.
+     *
+     * @throws ExtendedGameOfLifeException if the step is not stored
+     */
+    void read(int step, BoardState state) throws ExtendedGameOfLifeException;
+
+    /**
+     * Returns the hash recorded with the generation stored at a step.
+     *
+     * @throws ExtendedGameOfLifeException if the step is not stored
+     */
+    long stateHash(int step) throws ExtendedGameOfLifeException;
+
+    /**
+     * Returns the generations a game holds in memory, and in its attached
+     * {@link GenerationHistory} if any, as keyframes.
+     */
+    static KeyframeStore of(Game game) {
+        return new KeyframeStore() {
+            @Override
+            public int floorStep(int step) {
+                int best = -1;
+                GenerationHistory history = game.getHistory();
+                if (history != null && history.size() > 0 && step >= history.getStep(0)) {
+                    best = Math.min(step, history.getStep(history.size() - 1));
+                }
+                int lo = 0;
+                int hi = game.getGenerations().size() - 1;
+                while (lo <= hi) {
+                    int mid = (lo + hi) >>> 1;
+                    int midStep = game.getGenerations().get(mid).getStep();
+                    if (midStep <= step) {
+                        best = Math.max(best, midStep);
+                        lo = mid + 1;
+                    } else {
+                        hi = mid - 1;
+                    }
+                }
+                return best;
+            }
+
+            @Override
+            public int higherStep(int step) {
+                int best = -1;
+                GenerationHistory history = game.getHistory();
+                if (history != null && history.size() > 0 && step < history.getStep(history.size() - 1)) {
+                    best = Math.max(step + 1, history.getStep(0));
+                }
+                int lo = 0;
+                int hi = game.getGenerations().size() - 1;
+                while (lo <= hi) {
+                    int mid = (lo + hi) >>> 1;
+                    int midStep = game.getGenerations().get(mid).getStep();
+                    if (midStep > step) {
+                        best = best < 0 ? midStep : Math.min(best, midStep);
+                        hi = mid - 1;
+                    } else {
+                        lo = mid + 1;
+                    }
+                }
+                return best;
+            }
+
+            @Override
+            public void read(int step, BoardState state) throws ExtendedGameOfLifeException {
+                game.readState(step, state);
+            }
+
+            @Override
+            public long stateHash(int step) throws ExtendedGameOfLifeException {
+                GenerationHistory history = game.getHistory();
+                if (history != null && history.size() > 0) {
+                    int k = step - history.getStep(0);
+                    if (k >= 0 && k < history.size())
+                        return history.getStateHash(k);
+                }
+                return game.getGeneration(step).getStateHash();
+            }
+        };
+    }
+}
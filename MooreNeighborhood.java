@@ -0,0 +1,41 @@
+package it.polito.extgol;
+
+/**
+ * Moore neighborhood of any radius, counted with a {@link SummedAreaTable}:
+ * each count is one square of the table minus the cell itself.
+ */
+final class MooreNeighborhood implements Neighborhood {
+
+    private final int radius;
+    private final SummedAreaTable table = new SummedAreaTable();
+
+    MooreNeighborhood(int radius) throws ExtendedGameOfLifeException {
+        if (radius < 1)
+            throw new ExtendedGameOfLifeException("Neighborhood radius must be positive");
+        this.radius = radius;
+    }
+
+    @Override
+    public int getRadius() {
+        return radius;
+    }
+
+    @Override
+    public int getMaxNeighbors() {
+        return (2 * radius + 1) * (2 * radius + 1) - 1;
+    }
+
+    @Override
+    public void countAlive(BoardState state, int[] counts) {
+        int w = state.getWidth();
+        int h = state.getHeight();
+        byte[] alive = state.alivePlane();
+        table.build(state);
+        for (int y = 0; y < h; y++) {
+            int out = y * w;
+            for (int x = 0; x < w; x++) {
+                counts[out + x] = table.sum(x - radius, y - radius, x + radius + 1, y + radius + 1) - alive[out + x];
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package it.polito.extgol;
+
+/**
+ * Set of cells whose aliveness a cell's rule counts, for engines working on
+ * compact board states (see {@link NeighborhoodEvolutionEngine}).
+ *
+ * Cells outside the board count as dead, as in the reference evolution, and a
+ * cell is never its own neighbor. Large neighborhoods are counted through a
+ * summed-area table built once per step, so the cost per cell does not grow
+ * with the area of the neighborhood.
+ *
+ * Instances reuse buffers between calls: each engine should own its own.
+ */
+public interface Neighborhood {
+
+    /**
+     * Returns the largest distance, along either axis, between a cell and its neighbors.
+     */
+    int getRadius();
+
+    /**
+     * Returns the number of neighbors of a cell away from the edges, i.e. the
+     * largest possible count.
+     */
+    int getMaxNeighbors();
+
+    /**
+     * Counts the alive neighbors of every cell.
+     *
+     * @param state  the state to read
+     * @param counts receives the count of each cell, row-major; at least as long
+     *               as the state
+     */
+    void countAlive(BoardState state, int[] counts);
+
+    /**
+     * The 8-cell Moore neighborhood of the reference evolution.
+     */
+    static Neighborhood moore() {
+        return moore(1);
+    }
+
+    /**
+     * The (2r+1)^2 - 1 cells within {@code radius} along both axes, as in
+     * Larger-than-Life rules; counted in O(1) per cell.
+     */
+    static Neighborhood moore(int radius) throws ExtendedGameOfLifeException {
+        return new MooreNeighborhood(radius);
+    }
+
+    /**
+     * The 2r(r+1) cells within {@code radius} in Manhattan distance; counted in
+     * O(radius) per cell, one row segment of the summed-area table per row.
+     */
+    static Neighborhood vonNeumann(int radius) throws ExtendedGameOfLifeException {
+        return new VonNeumannNeighborhood(radius);
+    }
+
+    /**
+     * The 6 neighbors of a hexagonal grid stored in axial coordinates: rows are
+     * sheared so that (x, y) touches (x +- 1, y), (x, y +- 1), (x + 1, y - 1)
+     * and (x - 1, y + 1).
+     */
+    static Neighborhood hexagonal() {
+        return new HexagonalNeighborhood();
+    }
+}
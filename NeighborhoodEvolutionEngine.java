@@ -0,0 +1,54 @@
+package it.polito.extgol;
+
+/**
+ * Evolution engine applying a rule over any {@link Neighborhood}, e.g. the
+ * large-radius neighborhoods of Larger-than-Life rules.
+ *
+ * The alive neighbors of every cell are counted for the whole board first,
+ * then the rule is looked up in its {@link RuleTable} with the count as a
+ * primitive index. With {@link Neighborhood#moore()} and the reference rule,
+ * the results are those of the other engines.
+ */
+public class NeighborhoodEvolutionEngine implements EvolutionEngine {
+
+    private final Neighborhood neighborhood;
+    private final RuleTable rule;
+
+    /** Alive neighbor count of each cell, reused across steps. */
+    private int[] counts = new int[0];
+
+    /**
+     * @param neighborhood the cells counted around each cell
+     * @param rule         the rule, tabulated for counts up to the neighborhood's maximum
+     * @throws ExtendedGameOfLifeException if the rule does not cover every possible count
+     */
+    public NeighborhoodEvolutionEngine(Neighborhood neighborhood, RuleTable rule) throws ExtendedGameOfLifeException {
+        if (rule.getMaxNeighbors() < neighborhood.getMaxNeighbors())
+            throw new ExtendedGameOfLifeException("The rule only covers counts up to " + rule.getMaxNeighbors()
+                    + ", the neighborhood reaches " + neighborhood.getMaxNeighbors());
+        this.neighborhood = neighborhood;
+        this.rule = rule;
+    }
+
+    public Neighborhood getNeighborhood() {
+        return neighborhood;
+    }
+
+    @Override
+    public int getRadius() {
+        return neighborhood.getRadius();
+    }
+
+    @Override
+    public void step(BoardState current, BoardState next) {
+        int size = current.size();
+        if (counts.length != size)
+            counts = new int[size];
+        neighborhood.countAlive(current, counts);
+        byte[] src = current.alivePlane();
+        byte[] dst = next.alivePlane();
+        for (int i = 0; i < size; i++) {
+            dst[i] = (byte) (rule.next(src[i], counts[i]) ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package it.polito.extgol;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+
+/**
+ * Compact board state stored outside the Java heap, in direct or file-mapped buffers.
+ *
+ * Same planes as {@link BoardState} (aliveness, lifePoints, moods and types,
+ * row-major), but each plane is split into segments of {@value #SEGMENT_CELLS}
+ * cells, so boards may exceed 2^31 cells and their size does not weigh on the
+ * garbage collector. Cells are addressed with long indices.
+ *
+ * A file-backed state keeps its planes in a file, native byte order, back to back:
+ * <pre>
+ *   byte[cells] alive, byte[cells] moods, byte[cells] types,
+ *   padding to 8 bytes, int[cells] lifePoints
+ * </pre>
+ * so that reopening the file with the same dimensions finds the state it held.
+ *
+ * States are released explicitly with {@link #close()}, after which they must not
+ * be used; states allocated through {@link Game#allocateOffHeap(Path)} are closed
+ * with their game's {@link Game#releaseOffHeap()}. The buffers themselves are
+ * reclaimed by the JVM once unreachable.
+ */
+public final class OffHeapBoardState implements Closeable {
+
+    /** Number of cells per segment. */
+    static final int SEGMENT_CELLS = 1 << 26;
+
+    private static final int SEGMENT_BITS = Integer.numberOfTrailingZeros(SEGMENT_CELLS);
+    private static final int SEGMENT_MASK = SEGMENT_CELLS - 1;
+    private static final CellMood[] MOODS = CellMood.values();
+    private static final CellType[] TYPES = CellType.values();
+
+    private final int width;
+    private final int height;
+    private final long cells;
+    private final FileChannel channel;
+
+    private ByteBuffer[] alive;
+    private ByteBuffer[] moods;
+    private ByteBuffer[] types;
+    private ByteBuffer[] lifePoints;
+
+    private OffHeapBoardState(int width, int height, FileChannel channel) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.cells = (long) width * height;
+        this.channel = channel;
+        long lifePointsOffset = (3 * cells + 7) & ~7L;
+        this.alive = plane(0, 1);
+        this.moods = plane(cells, 1);
+        this.types = plane(2 * cells, 1);
+        this.lifePoints = plane(lifePointsOffset, Integer.BYTES);
+    }
+
+    /**
+     * Allocates a state in direct memory, with every cell dead, NAIVE, BASIC and without lifePoints.
+     *
+     * @param width  number of columns
+     * @param height number of rows
+     * @return the new state
+     * @throws ExtendedGameOfLifeException if the dimensions are not positive
+     */
+    public static OffHeapBoardState allocate(int width, int height) throws ExtendedGameOfLifeException {
+        checkDimensions(width, height);
+        try {
+            return new OffHeapBoardState(width, height, null);
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot allocate off-heap state", e);
+        }
+    }
+
+    /**
+     * Opens a state backed by a file, created if missing. A new file holds dead,
+     * NAIVE, BASIC cells without lifePoints; an existing one keeps its content.
+     *
+     * @param path   the backing file
+     * @param width  number of columns
+     * @param height number of rows
+     * @return the mapped state
+     * @throws ExtendedGameOfLifeException if the file cannot be mapped
+     */
+    public static OffHeapBoardState map(Path path, int width, int height) throws ExtendedGameOfLifeException {
+        checkDimensions(width, height);
+        FileChannel ch = null;
+        try {
+            ch = FileChannel.open(path, CREATE, READ, WRITE);
+            return new OffHeapBoardState(width, height, ch);
+        } catch (IOException e) {
+            if (ch != null) {
+                try {
+                    ch.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw new ExtendedGameOfLifeException("Cannot map off-heap state " + path, e);
+        }
+    }
+
+    private static void checkDimensions(int width, int height) throws ExtendedGameOfLifeException {
+        if (width <= 0 || height <= 0)
+            throw new ExtendedGameOfLifeException("Board dimensions must be positive");
+    }
+
+    /**
+     * Allocates or maps the segments of a plane.
+     *
+     * @param offset       position of the plane in the backing file
+     * @param bytesPerCell size of one cell in the plane
+     */
+    private ByteBuffer[] plane(long offset, int bytesPerCell) throws IOException {
+        int segments = (int) ((cells + SEGMENT_MASK) >>> SEGMENT_BITS);
+        ByteBuffer[] plane = new ByteBuffer[segments];
+        for (int s = 0; s < segments; s++) {
+            long first = (long) s << SEGMENT_BITS;
+            int length = (int) Math.min(SEGMENT_CELLS, cells - first) * bytesPerCell;
+            ByteBuffer segment = channel != null
+                    ? channel.map(MapMode.READ_WRITE, offset + first * bytesPerCell, length)
+                    : ByteBuffer.allocateDirect(length);
+            plane[s] = segment.order(ByteOrder.nativeOrder());
+        }
+        return plane;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Returns the number of cells, possibly more than 2^31. */
+    public long size() {
+        return cells;
+    }
+
+    public long index(int x, int y) {
+        return (long) y * width + x;
+    }
+
+    /** Returns true if the planes are kept in a file. */
+    public boolean isFileBacked() {
+        return channel != null;
+    }
+
+    public boolean isAlive(long i) {
+        return segment(alive, i).get(offset(i)) != 0;
+    }
+
+    public void setAlive(long i, boolean isAlive) {
+        segment(alive, i).put(offset(i), (byte) (isAlive ? 1 : 0));
+    }
+
+    public int getLifePoints(long i) {
+        return segment(lifePoints, i).getInt(offset(i) * Integer.BYTES);
+    }
+
+    public void setLifePoints(long i, int points) {
+        segment(lifePoints, i).putInt(offset(i) * Integer.BYTES, points);
+    }
+
+    public CellMood getMood(long i) {
+        return MOODS[segment(moods, i).get(offset(i))];
+    }
+
+    public void setMood(long i, CellMood mood) {
+        segment(moods, i).put(offset(i), (byte) mood.ordinal());
+    }
+
+    public CellType getType(long i) {
+        return TYPES[segment(types, i).get(offset(i))];
+    }
+
+    public void setType(long i, CellType type) {
+        segment(types, i).put(offset(i), (byte) type.ordinal());
+    }
+
+    /**
+     * Counts the alive cells.
+     */
+    public long getPopulation() {
+        long population = 0;
+        for (ByteBuffer segment : open(alive)) {
+            for (int i = 0, n = segment.capacity(); i < n; i++) {
+                population += segment.get(i);
+            }
+        }
+        return population;
+    }
+
+    /**
+     * Copies every plane of an on-heap state with the same dimensions into this one.
+     */
+    public void copyFrom(BoardState state) throws ExtendedGameOfLifeException {
+        checkSameDimensions(state);
+        byte[] a = state.alivePlane();
+        byte[] m = state.moodPlane();
+        byte[] t = state.typePlane();
+        int[] lp = state.lifePointsPlane();
+        for (int s = 0; s < open(alive).length; s++) {
+            int from = s << SEGMENT_BITS;
+            int length = alive[s].capacity();
+            alive[s].put(0, a, from, length);
+            moods[s].put(0, m, from, length);
+            types[s].put(0, t, from, length);
+            lifePoints[s].asIntBuffer().put(0, lp, from, length);
+        }
+    }
+
+    /**
+     * Copies every plane of this state into an on-heap state with the same dimensions.
+     */
+    public void copyInto(BoardState state) throws ExtendedGameOfLifeException {
+        checkSameDimensions(state);
+        byte[] a = state.alivePlane();
+        byte[] m = state.moodPlane();
+        byte[] t = state.typePlane();
+        int[] lp = state.lifePointsPlane();
+        for (int s = 0; s < open(alive).length; s++) {
+            int from = s << SEGMENT_BITS;
+            int length = alive[s].capacity();
+            alive[s].get(0, a, from, length);
+            moods[s].get(0, m, from, length);
+            types[s].get(0, t, from, length);
+            lifePoints[s].asIntBuffer().get(0, lp, from, length);
+        }
+    }
+
+    private void checkSameDimensions(BoardState state) throws ExtendedGameOfLifeException {
+        if (state.getWidth() != width || state.getHeight() != height)
+            throw new ExtendedGameOfLifeException("Board states have different dimensions");
+    }
+
+    /**
+     * Copies the aliveness of a row into an array, one byte per cell.
+     */
+    void readAliveRow(int y, byte[] dst, int dstPos) {
+        long i = index(0, y);
+        for (int done = 0; done < width; ) {
+            ByteBuffer segment = segment(alive, i + done);
+            int off = offset(i + done);
+            int n = Math.min(width - done, segment.capacity() - off);
+            segment.get(off, dst, dstPos + done, n);
+            done += n;
+        }
+    }
+
+    /**
+     * Overwrites the aliveness of a row from an array, one byte per cell.
+     */
+    void writeAliveRow(int y, byte[] src, int srcPos) {
+        long i = index(0, y);
+        for (int done = 0; done < width; ) {
+            ByteBuffer segment = segment(alive, i + done);
+            int off = offset(i + done);
+            int n = Math.min(width - done, segment.capacity() - off);
+            segment.put(off, src, srcPos + done, n);
+            done += n;
+        }
+    }
+
+    /**
+     * Writes the aliveness of every cell at the buffer's position, packed as
+     * by {@link BoardState#writeAliveBits(ByteBuffer)}.
+     */
+    void writeAliveBits(ByteBuffer buf) {
+        for (long i = 0; i < cells; i += 8) {
+            int b = 0;
+            int end = (int) Math.min(8, cells - i);
+            for (int j = 0; j < end; j++) {
+                b |= (isAlive(i + j) ? 1 : 0) << j;
+            }
+            buf.put((byte) b);
+        }
+    }
+
+    /**
+     * Reads the aliveness of every cell as written by {@link #writeAliveBits(ByteBuffer)}.
+     */
+    void readAliveBits(ByteBuffer buf) {
+        for (long i = 0; i < cells; i += 8) {
+            int b = buf.get();
+            int end = (int) Math.min(8, cells - i);
+            for (int j = 0; j < end; j++) {
+                setAlive(i + j, ((b >>> j) & 1) != 0);
+            }
+        }
+    }
+
+    /**
+     * Writes every lifePoint at the buffer's position, in the buffer's byte order.
+     */
+    void writeLifePoints(ByteBuffer buf) {
+        IntBuffer out = buf.asIntBuffer();
+        for (ByteBuffer segment : open(lifePoints)) {
+            out.put(segment.duplicate().order(ByteOrder.nativeOrder()).clear().asIntBuffer());
+        }
+        buf.position(buf.position() + out.position() * Integer.BYTES);
+    }
+
+    /**
+     * Reads every lifePoint from the buffer's position, in the buffer's byte order.
+     */
+    void readLifePoints(ByteBuffer buf) {
+        IntBuffer in = buf.asIntBuffer();
+        for (ByteBuffer segment : open(lifePoints)) {
+            IntBuffer dst = segment.duplicate().order(ByteOrder.nativeOrder()).clear().asIntBuffer();
+            IntBuffer src = in.slice().limit(dst.capacity());
+            dst.put(src);
+            in.position(in.position() + dst.capacity());
+        }
+        buf.position(buf.position() + in.position() * Integer.BYTES);
+    }
+
+    /** Writes the mood of every cell at the buffer's position. */
+    void writeMoods(ByteBuffer buf) {
+        writePlane(moods, buf);
+    }
+
+    /** Reads the mood of every cell from the buffer's position. */
+    void readMoods(ByteBuffer buf) {
+        readPlane(moods, buf);
+    }
+
+    /** Writes the type of every cell at the buffer's position. */
+    void writeTypes(ByteBuffer buf) {
+        writePlane(types, buf);
+    }
+
+    /** Reads the type of every cell from the buffer's position. */
+    void readTypes(ByteBuffer buf) {
+        readPlane(types, buf);
+    }
+
+    private void writePlane(ByteBuffer[] plane, ByteBuffer buf) {
+        for (ByteBuffer segment : open(plane)) {
+            buf.put(segment.duplicate().clear());
+        }
+    }
+
+    private void readPlane(ByteBuffer[] plane, ByteBuffer buf) {
+        for (ByteBuffer segment : open(plane)) {
+            ByteBuffer src = buf.slice().limit(segment.capacity());
+            segment.duplicate().clear().put(src);
+            buf.position(buf.position() + segment.capacity());
+        }
+    }
+
+    /**
+     * Writes the content of a file-backed state to the storage device; does nothing
+     * for a state in direct memory.
+     */
+    public void force() {
+        if (channel == null)
+            return;
+        for (ByteBuffer[] plane : new ByteBuffer[][] { open(alive), moods, types, lifePoints }) {
+            for (ByteBuffer segment : plane) {
+                ((MappedByteBuffer) segment).force();
+            }
+        }
+    }
+
+    /**
+     * Releases this state: a file-backed one is forced to disk and its file closed.
+     * Closing twice has no effect.
+     */
+    @Override
+    public void close() throws IOException {
+        if (alive == null)
+            return;
+        force();
+        alive = null;
+        moods = null;
+        types = null;
+        lifePoints = null;
+        if (channel != null)
+            channel.close();
+    }
+
+    public boolean isClosed() {
+        return alive == null;
+    }
+
+    private static ByteBuffer[] open(ByteBuffer[] plane) {
+        if (plane == null)
+            throw new IllegalStateException("Off-heap state is closed");
+        return plane;
+    }
+
+    private static ByteBuffer segment(ByteBuffer[] plane, long i) {
+        return open(plane)[(int) (i >>> SEGMENT_BITS)];
+    }
+
+    private static int offset(long i) {
+        return (int) (i & SEGMENT_MASK);
+    }
+}
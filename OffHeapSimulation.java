@@ -0,0 +1,270 @@
+package it.polito.extgol;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Simulation of a board held in an {@link OffHeapBoardState}, evolved in place.
+ *
+ * Each step streams the board through the engine in bands of rows: a band and its
+ * two halo rows are copied into a small on-heap window, evolved, and written back
+ * over the band. The old content of the last row of a band is kept aside as the
+ * upper halo of the next one, so a single aliveness plane suffices and the heap
+ * only ever holds one window, whatever the size of the board.
+ *
+ * Events are applied to the planes directly, with the semantics of
+ * {@link Game#unrollEvent(EventType, Region)}, BLOOD_MOON included
+ * (see {@link BloodMoon}); finding the vampires takes one scan of the area.
+ */
+public class OffHeapSimulation {
+
+    /** Number of cells per band, halo rows excluded. */
+    static final int BAND_CELLS = 1 << 20;
+
+    private final OffHeapBoardState state;
+    private final EvolutionEngine engine;
+    private final Game game;
+
+    /** The game's statistics, kept up to date by steps and events; null without a game. */
+    private final StatisticsSeries statistics;
+
+    private final int bandRows;
+    private BoardState window;
+    private BoardState evolved;
+    private final byte[] upperHalo;
+
+    /** Step of the current state. */
+    private int step;
+
+    /**
+     * Starts a simulation of a game from the current state of its board, copied
+     * into off-heap memory owned by the game (see {@link Game#allocateOffHeap(Path)}).
+     *
+     * @param game   the game to simulate; its history must not be empty
+     * @param engine the engine computing each step
+     * @param file   the file backing the state, or null for direct memory
+     */
+    public OffHeapSimulation(Game game, EvolutionEngine engine, Path file)
+            throws ExtendedGameOfLifeException {
+        this(game, game.allocateOffHeap(file), engine, newestStep(game));
+    }
+
+    /**
+     * Starts a simulation of a standalone state, e.g. a board too large for a Game.
+     *
+     * @param state  the state to evolve in place; the caller remains responsible for closing it
+     * @param engine the engine computing each step
+     * @param step   the step the state belongs to
+     */
+    public OffHeapSimulation(OffHeapBoardState state, EvolutionEngine engine, int step)
+            throws ExtendedGameOfLifeException {
+        this(null, state, engine, step);
+    }
+
+    private OffHeapSimulation(Game game, OffHeapBoardState state, EvolutionEngine engine, int step)
+            throws ExtendedGameOfLifeException {
+        if (engine == null)
+            throw new ExtendedGameOfLifeException("Engine cannot be null");
+        if (engine.getRadius() != 1)
+            throw new ExtendedGameOfLifeException("Banded simulations need an engine of radius 1");
+        this.game = game;
+        this.statistics = game != null ? game.getStatistics() : null;
+        this.state = state;
+        this.engine = engine;
+        this.step = step;
+        this.bandRows = Math.max(1, Math.min(state.getHeight(), BAND_CELLS / state.getWidth()));
+        this.upperHalo = new byte[state.getWidth()];
+        if (game != null)
+            statistics.reset(step, game.getBoard());
+    }
+
+    private static int newestStep(Game game) throws ExtendedGameOfLifeException {
+        if (game.getGenerations().isEmpty())
+            throw new ExtendedGameOfLifeException("No generations available");
+        return game.getGenerations().get(game.getGenerations().size() - 1).getStep();
+    }
+
+    public OffHeapBoardState getState() {
+        return state;
+    }
+
+    /** Returns the step the current state belongs to. */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Advances the state by one generation.
+     */
+    public void step() throws ExtendedGameOfLifeException {
+        int width = state.getWidth();
+        int height = state.getHeight();
+        Arrays.fill(upperHalo, (byte) 0);
+        long born = 0;
+        long died = 0;
+
+        for (int y0 = 0; y0 < height; y0 += bandRows) {
+            int rows = Math.min(bandRows, height - y0);
+            if (window == null || window.getHeight() != rows + 2) {
+                window = new BoardState(width, rows + 2);
+                evolved = new BoardState(width, rows + 2);
+            }
+            byte[] in = window.alivePlane();
+            System.arraycopy(upperHalo, 0, in, 0, width);
+            for (int r = 0; r < rows; r++) {
+                state.readAliveRow(y0 + r, in, (r + 1) * width);
+            }
+            if (y0 + rows < height) {
+                state.readAliveRow(y0 + rows, in, (rows + 1) * width);
+            } else {
+                Arrays.fill(in, (rows + 1) * width, (rows + 2) * width, (byte) 0);
+            }
+
+            engine.step(window, evolved);
+
+            // the next band needs the old content of this band's last row
+            System.arraycopy(in, rows * width, upperHalo, 0, width);
+            byte[] out = evolved.alivePlane();
+            for (int i = width, end = (rows + 1) * width; i < end; i++) {
+                born += out[i] & ~in[i];
+                died += in[i] & ~out[i];
+            }
+            for (int r = 0; r < rows; r++) {
+                state.writeAliveRow(y0 + r, out, (r + 1) * width);
+            }
+        }
+        if (statistics != null)
+            statistics.record(step + 1, (int) born, (int) died);
+        step++;
+    }
+
+    /**
+     * Applies a timeline entry to the current state, on the whole board or on its area.
+     */
+    public void applyEvent(ScheduledEvent event) throws ExtendedGameOfLifeException {
+        if (event.isScoped()) {
+            int x0 = Math.max(0, event.getX());
+            int y0 = Math.max(0, event.getY());
+            int x1 = Math.min(state.getWidth(), event.getX() + event.getWidth());
+            int y1 = Math.min(state.getHeight(), event.getY() + event.getHeight());
+            applyEvent(event.getType(), x0, y0, x1, y1);
+        } else {
+            applyEvent(event.getType(), 0, 0, state.getWidth(), state.getHeight());
+        }
+    }
+
+    /**
+     * Applies a global event to the current state.
+     */
+    public void applyEvent(EventType event) throws ExtendedGameOfLifeException {
+        applyEvent(event, 0, 0, state.getWidth(), state.getHeight());
+    }
+
+    private void applyEvent(EventType event, int x0, int y0, int x1, int y1) throws ExtendedGameOfLifeException {
+        if (event == null)
+            throw new ExtendedGameOfLifeException("Event cannot be null");
+        if (event == EventType.BLOOD_MOON) {
+            bloodMoon(x0, y0, x1, y1);
+            return;
+        }
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                long i = state.index(x, y);
+                int lifePoints = state.getLifePoints(i);
+                CellMood mood = state.getMood(i);
+                switch (event) {
+                    case CATACLYSM:
+                        changeLifePoints(i, 0);
+                        break;
+                    case FAMINE:
+                        changeLifePoints(i, Math.max(0, lifePoints - 1));
+                        break;
+                    case BLOOM:
+                        changeLifePoints(i, lifePoints + 2);
+                        break;
+                    case SANCTUARY:
+                        if (mood == CellMood.HEALER) {
+                            changeLifePoints(i, lifePoints + 1);
+                        } else if (mood == CellMood.VAMPIRE) {
+                            changeMood(i, CellMood.NAIVE);
+                        }
+                        break;
+                    default:
+                        throw new ExtendedGameOfLifeException("Unknown event type: " + event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets the vampires of an area drain and convert their NAIVE and HEALER
+     * neighbors, all outcomes being computed from the state before the event.
+     */
+    private void bloodMoon(int x0, int y0, int x1, int y1) {
+        Map<Long, Integer> left = new HashMap<>();
+        Map<Long, Integer> gains = new LinkedHashMap<>();
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                long self = state.index(x, y);
+                if (state.getMood(self) != CellMood.VAMPIRE)
+                    continue;
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nx = x + dx;
+                        int ny = y + dy;
+                        if ((dx == 0 && dy == 0) || nx < 0 || ny < 0 || nx >= state.getWidth() || ny >= state.getHeight())
+                            continue;
+                        long n = state.index(nx, ny);
+                        CellMood mood = state.getMood(n);
+                        if (mood != CellMood.NAIVE && mood != CellMood.HEALER)
+                            continue;
+                        int points = left.computeIfAbsent(n, state::getLifePoints);
+                        if (points > 0) {
+                            left.put(n, points - 1);
+                            gains.merge(self, 1, Integer::sum);
+                        }
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Long, Integer> e : left.entrySet()) {
+            changeLifePoints(e.getKey(), e.getValue());
+            changeMood(e.getKey(), CellMood.VAMPIRE);
+        }
+        for (Map.Entry<Long, Integer> e : gains.entrySet()) {
+            changeLifePoints(e.getKey(), state.getLifePoints(e.getKey()) + e.getValue());
+        }
+    }
+
+    private void changeLifePoints(long i, int points) {
+        if (statistics != null)
+            statistics.lifePointsChanged(points - state.getLifePoints(i));
+        state.setLifePoints(i, points);
+    }
+
+    private void changeMood(long i, CellMood mood) {
+        if (statistics != null)
+            statistics.moodChanged(state.getMood(i), mood);
+        state.setMood(i, mood);
+    }
+
+    /**
+     * Copies the current state into the game's board and appends the corresponding
+     * generation, as {@link BufferedSimulation#snapshot()} does. This copies the
+     * state onto the heap, so it is meant for boards that fit a Game.
+     *
+     * @return the new generation
+     * @throws ExtendedGameOfLifeException if the simulation has no game
+     */
+    public Generation snapshot() throws ExtendedGameOfLifeException {
+        if (game == null)
+            throw new ExtendedGameOfLifeException("A standalone off-heap state has no game to snapshot into");
+        BoardState copy = game.getBoard().snapshotBuffer();
+        state.copyInto(copy);
+        copy.restore(game.getBoard());
+        return Generation.createSnapshot(game, game.getBoard(), step);
+    }
+}
@@ -0,0 +1,49 @@
+package it.polito.extgol;
+
+import java.io.Closeable;
+
+/**
+ * Message channel of one node taking part in a partitioned simulation.
+ *
+ * Nodes are numbered: {@link #COORDINATOR} drives the simulation and workers
+ * 1..n each own a horizontal band of the board. Messages are opaque byte
+ * arrays, delivered reliably and in order between any two nodes.
+ *
+ * @see InProcessTransport
+ * @see SocketTransport
+ * @see PartitionedSimulation
+ */
+public interface PartitionTransport extends Closeable {
+
+    /** Node number of the coordinator. */
+    int COORDINATOR = 0;
+
+    /**
+     * Returns the number of this node.
+     */
+    int node();
+
+    /**
+     * Sends a message to another node, without waiting for it to be received.
+     *
+     * @param to      the destination node
+     * @param message the message; it must not be modified afterwards
+     * @throws ExtendedGameOfLifeException if the message cannot be sent
+     */
+    void send(int to, byte[] message) throws ExtendedGameOfLifeException;
+
+    /**
+     * Waits for the next message sent to this node by the given node.
+     *
+     * @param from the sending node
+     * @return the message
+     * @throws ExtendedGameOfLifeException if the channel is closed or broken
+     */
+    byte[] receive(int from) throws ExtendedGameOfLifeException;
+
+    /**
+     * Releases the resources of this node; pending receives fail.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,279 @@
+package it.polito.extgol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Worker node of a partitioned simulation, owning one horizontal band of the board.
+ *
+ * The band is kept in a compact state with one extra halo row above and below.
+ * Before each step the worker sends its first and last rows to the workers owning
+ * the adjacent bands and receives theirs into its halo rows; rows outside the
+ * board stay dead, as in the single-node evolution. Everything else is driven by
+ * the coordinator, see {@link PartitionedSimulation}.
+ *
+ * A worker runs until the coordinator stops it, either in a thread of the
+ * coordinator's JVM or in its own process over a {@link SocketTransport}.
+ *
+ * A worker that fails stops executing commands and answers every later GATHER
+ * with an ERROR reply, so the coordinator keeps exactly one reply per request.
+ * It also sends its neighbors an empty halo row, which makes them fail in turn
+ * instead of waiting forever for its rows.
+ */
+public class PartitionWorker implements Runnable {
+
+    /** Commands sent by the coordinator, as the first byte of each message. */
+    static final byte LOAD = 1;
+    static final byte STEP = 2;
+    static final byte EVENT = 3;
+    static final byte GATHER = 4;
+    static final byte STOP = 5;
+
+    /** Replies sent to the coordinator. */
+    static final byte BAND = 1;
+    static final byte ERROR = 2;
+
+    private static final EventType[] EVENTS = EventType.values();
+
+    /** Halo row sent to the neighbors of a failed worker, instead of its rows. */
+    private static final byte[] ABORT = new byte[0];
+
+    private final PartitionTransport transport;
+    private final EvolutionEngine engine;
+
+    private int workers;
+    private int width;
+    private int rows;
+    private BoardState front;
+    private BoardState back;
+
+    /** First failure of this worker, or null while it works. */
+    private Throwable failure;
+
+    /**
+     * Creates a worker communicating through the given endpoint.
+     *
+     * @param transport the endpoint of this worker, numbered 1..n
+     * @param engine    the engine computing each step of the band
+     */
+    public PartitionWorker(PartitionTransport transport, EvolutionEngine engine) throws ExtendedGameOfLifeException {
+        if (transport.node() == PartitionTransport.COORDINATOR)
+            throw new ExtendedGameOfLifeException("A worker cannot use the coordinator's endpoint");
+        if (engine.getRadius() != 1)
+            throw new ExtendedGameOfLifeException("Partitioned simulations need an engine of radius 1");
+        this.transport = transport;
+        this.engine = engine;
+    }
+
+    /**
+     * Serves the coordinator's commands until it sends STOP or the transport fails.
+     * Failures while executing a command are reported to the coordinator in
+     * reply to its next GATHER.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                ByteBuffer command = ByteBuffer.wrap(transport.receive(PartitionTransport.COORDINATOR));
+                byte type = command.get();
+                if (type == STOP)
+                    return;
+                if (failure == null) {
+                    try {
+                        execute(type, command);
+                        continue;
+                    } catch (Throwable e) {
+                        fail(e);
+                    }
+                }
+                if (type == GATHER)
+                    transport.send(PartitionTransport.COORDINATOR, error(failure));
+            }
+        } catch (Throwable e) {
+            // the coordinator is gone: nothing left to serve, but neighbors may be waiting
+            if (failure == null)
+                fail(e);
+        }
+    }
+
+    /**
+     * Records the failure of this worker and aborts the halo exchange with its
+     * neighbors, which may be waiting for its rows.
+     */
+    private void fail(Throwable e) {
+        failure = e;
+        int self = transport.node();
+        for (int neighbor : new int[] { self - 1, self + 1 }) {
+            if (neighbor < 1 || neighbor > workers)
+                continue;
+            try {
+                transport.send(neighbor, ABORT);
+            } catch (RuntimeException ignored) {
+                // the neighbor cannot be waiting on a broken channel
+            }
+        }
+    }
+
+    private void execute(byte type, ByteBuffer command) throws ExtendedGameOfLifeException {
+        switch (type) {
+            case LOAD:
+                workers = command.getInt();
+                width = command.getInt();
+                rows = command.getInt();
+                if (front == null || front.getWidth() != width || front.getHeight() != rows + 2) {
+                    front = new BoardState(width, rows + 2);
+                    back = new BoardState(front);
+                }
+                readBand(command, front, 1, rows);
+                return;
+            case STEP:
+                for (int n = command.getInt(); n > 0; n--) {
+                    step();
+                }
+                return;
+            case EVENT:
+                EventType event = EVENTS[command.get()];
+                if (!applyLocalEvent(front, width, rows, event))
+                    throw new ExtendedGameOfLifeException("Event " + event + " cannot be applied to a single band");
+                return;
+            case GATHER:
+                ByteBuffer reply = ByteBuffer.allocate(1 + bandBytes(width, rows));
+                reply.put(BAND);
+                writeBand(reply, front, 1, rows);
+                transport.send(PartitionTransport.COORDINATOR, reply.array());
+                return;
+            default:
+                throw new ExtendedGameOfLifeException("Unknown partition command");
+        }
+    }
+
+    /**
+     * Exchanges halo rows with the neighboring workers, then evolves the band.
+     */
+    private void step() throws ExtendedGameOfLifeException {
+        int self = transport.node();
+        byte[] alive = front.alivePlane();
+        if (self > 1)
+            transport.send(self - 1, packRow(alive, width, 1));
+        if (self < workers)
+            transport.send(self + 1, packRow(alive, width, rows));
+
+        if (self > 1) {
+            unpackRow(receiveRow(self - 1), alive, width, 0);
+        } else {
+            Arrays.fill(alive, 0, width, (byte) 0);
+        }
+        if (self < workers) {
+            unpackRow(receiveRow(self + 1), alive, width, rows + 1);
+        } else {
+            Arrays.fill(alive, (rows + 1) * width, (rows + 2) * width, (byte) 0);
+        }
+
+        engine.step(front, back);
+        BoardState swap = front;
+        front = back;
+        back = swap;
+    }
+
+    /**
+     * Applies an event whose effect on a cell depends on that cell only, with
+     * the semantics of {@link Game#unrollEvent(EventType, Cell)}.
+     *
+     * @return false if the event involves neighbors and cannot be applied locally
+     */
+    private static boolean applyLocalEvent(BoardState state, int width, int rows, EventType event) {
+        int[] lifePoints = state.lifePointsPlane();
+        byte[] moods = state.moodPlane();
+        int from = width;
+        int to = (rows + 1) * width;
+        switch (event) {
+            case CATACLYSM:
+                Arrays.fill(lifePoints, from, to, 0);
+                return true;
+            case FAMINE:
+                for (int i = from; i < to; i++) {
+                    lifePoints[i] = Math.max(0, lifePoints[i] - 1);
+                }
+                return true;
+            case BLOOM:
+                for (int i = from; i < to; i++) {
+                    lifePoints[i] += 2;
+                }
+                return true;
+            case SANCTUARY:
+                for (int i = from; i < to; i++) {
+                    if (moods[i] == CellMood.HEALER.ordinal()) {
+                        lifePoints[i] += 1;
+                    } else if (moods[i] == CellMood.VAMPIRE.ordinal()) {
+                        moods[i] = (byte) CellMood.NAIVE.ordinal();
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private byte[] receiveRow(int from) throws ExtendedGameOfLifeException {
+        byte[] row = transport.receive(from);
+        if (row.length == 0)
+            throw new ExtendedGameOfLifeException("Halo exchange aborted by failed worker " + from);
+        return row;
+    }
+
+    private static byte[] packRow(byte[] alive, int width, int row) {
+        byte[] packed = new byte[(width + 7) >>> 3];
+        int base = row * width;
+        for (int x = 0; x < width; x++) {
+            packed[x >>> 3] |= alive[base + x] << (x & 7);
+        }
+        return packed;
+    }
+
+    private static void unpackRow(byte[] packed, byte[] alive, int width, int row) {
+        int base = row * width;
+        for (int x = 0; x < width; x++) {
+            alive[base + x] = (byte) ((packed[x >>> 3] >>> (x & 7)) & 1);
+        }
+    }
+
+    /** Number of bytes taken by {@code rows} rows of every plane. */
+    static int bandBytes(int width, int rows) {
+        return rows * width * (3 + Integer.BYTES);
+    }
+
+    /**
+     * Writes rows [fromRow, fromRow + rows) of every plane of the state.
+     */
+    static void writeBand(ByteBuffer buf, BoardState state, int fromRow, int rows) {
+        int from = fromRow * state.getWidth();
+        int length = rows * state.getWidth();
+        buf.put(state.alivePlane(), from, length);
+        buf.asIntBuffer().put(state.lifePointsPlane(), from, length);
+        buf.position(buf.position() + length * Integer.BYTES);
+        buf.put(state.moodPlane(), from, length);
+        buf.put(state.typePlane(), from, length);
+    }
+
+    /**
+     * Reads rows [fromRow, fromRow + rows) of every plane of the state.
+     */
+    static void readBand(ByteBuffer buf, BoardState state, int fromRow, int rows) {
+        int from = fromRow * state.getWidth();
+        int length = rows * state.getWidth();
+        buf.get(state.alivePlane(), from, length);
+        buf.asIntBuffer().get(state.lifePointsPlane(), from, length);
+        buf.position(buf.position() + length * Integer.BYTES);
+        buf.get(state.moodPlane(), from, length);
+        buf.get(state.typePlane(), from, length);
+    }
+
+    private static byte[] error(Throwable e) {
+        String message = e.getMessage() != null ? e.getMessage() : e.toString();
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer reply = ByteBuffer.allocate(1 + text.length);
+        reply.put(ERROR).put(text);
+        return reply.array();
+    }
+}
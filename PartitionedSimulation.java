@@ -0,0 +1,187 @@
+package it.polito.extgol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Coordinator of a simulation whose board is split into horizontal bands, each
+ * owned by a {@link PartitionWorker} reached through a {@link PartitionTransport}.
+ *
+ * Workers step their bands in lockstep, exchanging one-row halos, so the result
+ * is exactly the one of the single-node evolution. Events that only involve each
+ * cell itself are applied by the workers; BLOOD_MOON, whose outcome depends on
+ * neighboring cells across bands, and events scoped to an area are applied by
+ * the coordinator on the gathered board through the cells, as in
+ * {@link Game#unrollEvent(EventType, Region)}.
+ *
+ * Like {@link BufferedSimulation}, cells and generations are only updated on
+ * {@link #snapshot()}, which gathers every band.
+ */
+public class PartitionedSimulation implements AutoCloseable {
+
+    private final Game game;
+    private final Board board;
+    private final PartitionTransport transport;
+    private final int workers;
+
+    /** First row of each band, plus the board height as a sentinel. */
+    private final int[] bandStart;
+
+    /** Gathered state of the whole board, filled on demand. */
+    private final BoardState state;
+
+    /** Step of the workers' state. */
+    private int step;
+
+    /** Step of the newest generation stored in the game. */
+    private int snapshotStep;
+
+    /**
+     * Splits the current state of the game's board, i.e. the state of its newest
+     * generation, among the workers.
+     *
+     * @param game      the game to simulate; its history must not be empty
+     * @param transport the coordinator's endpoint
+     * @param workers   number of workers, each running a {@link PartitionWorker}
+     */
+    public PartitionedSimulation(Game game, PartitionTransport transport, int workers)
+            throws ExtendedGameOfLifeException {
+        if (transport.node() != PartitionTransport.COORDINATOR)
+            throw new ExtendedGameOfLifeException("The coordinator must use node " + PartitionTransport.COORDINATOR);
+        if (game.getGenerations().isEmpty())
+            throw new ExtendedGameOfLifeException("No generations available");
+        this.game = game;
+        this.board = game.getBoard();
+        this.transport = transport;
+        if (workers <= 0 || workers > board.getHeight())
+            throw new ExtendedGameOfLifeException("Invalid number of workers: " + workers);
+        this.workers = workers;
+
+        int height = board.getHeight();
+        this.bandStart = new int[workers + 1];
+        for (int w = 0; w < workers; w++) {
+            bandStart[w + 1] = bandStart[w] + height / workers + (w < height % workers ? 1 : 0);
+        }
+
+        this.state = BoardState.of(board);
+        this.step = game.getGenerations().get(game.getGenerations().size() - 1).getStep();
+        this.snapshotStep = step;
+        scatter();
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    /** Returns the step the workers' state belongs to. */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Advances every band by the given number of generations.
+     */
+    public void step(int generations) throws ExtendedGameOfLifeException {
+        if (generations <= 0)
+            return;
+        for (int w = 1; w <= workers; w++) {
+            transport.send(w, ByteBuffer.allocate(5).put(PartitionWorker.STEP).putInt(generations).array());
+        }
+        step += generations;
+    }
+
+    /**
+     * Applies a global event to the current state, with the same semantics as
+     * {@link Game#unrollEvent(EventType, Cell)}.
+     */
+    public void applyEvent(EventType event) throws ExtendedGameOfLifeException {
+        applyEvent(event, null);
+    }
+
+    /**
+     * Applies a timeline entry to the current state, on the whole board or on its area.
+     */
+    public void applyEvent(ScheduledEvent event) throws ExtendedGameOfLifeException {
+        applyEvent(event.getType(), event.getRegion());
+    }
+
+    private void applyEvent(EventType event, Region region) throws ExtendedGameOfLifeException {
+        if (event == EventType.BLOOD_MOON || region != null) {
+            gather();
+            state.restore(board);
+            game.unrollEvent(event, region);
+            state.capture(board);
+            scatter();
+            return;
+        }
+        for (int w = 1; w <= workers; w++) {
+            transport.send(w, new byte[] { PartitionWorker.EVENT, (byte) event.ordinal() });
+        }
+    }
+
+    /**
+     * Gathers the bands into the board's cells and appends the corresponding
+     * generation to the game, unless it was already stored. As in {@code run},
+     * the generation of a step holds the state before the events applied at that step.
+     *
+     * @return the generation of the current step
+     */
+    public Generation snapshot() throws ExtendedGameOfLifeException {
+        if (step == snapshotStep) {
+            return game.getGeneration(step);
+        }
+        gather();
+        state.restore(board);
+        snapshotStep = step;
+        return Generation.createSnapshot(game, board, step);
+    }
+
+    /**
+     * Stops the workers. The transport is left open.
+     */
+    @Override
+    public void close() throws ExtendedGameOfLifeException {
+        for (int w = 1; w <= workers; w++) {
+            transport.send(w, new byte[] { PartitionWorker.STOP });
+        }
+    }
+
+    /**
+     * Sends each worker its band of the gathered state.
+     */
+    private void scatter() throws ExtendedGameOfLifeException {
+        int width = board.getWidth();
+        for (int w = 1; w <= workers; w++) {
+            int rows = bandStart[w] - bandStart[w - 1];
+            ByteBuffer msg = ByteBuffer.allocate(1 + 3 * Integer.BYTES + PartitionWorker.bandBytes(width, rows));
+            msg.put(PartitionWorker.LOAD).putInt(workers).putInt(width).putInt(rows);
+            PartitionWorker.writeBand(msg, state, bandStart[w - 1], rows);
+            transport.send(w, msg.array());
+        }
+    }
+
+    /**
+     * Collects every band into the gathered state. The reply of every worker is
+     * read even if some failed, so that later requests get their own replies.
+     *
+     * @throws ExtendedGameOfLifeException listing the failed workers, if any
+     */
+    private void gather() throws ExtendedGameOfLifeException {
+        for (int w = 1; w <= workers; w++) {
+            transport.send(w, new byte[] { PartitionWorker.GATHER });
+        }
+        StringBuilder failures = null;
+        for (int w = 1; w <= workers; w++) {
+            ByteBuffer reply = ByteBuffer.wrap(transport.receive(w));
+            if (reply.get() == PartitionWorker.ERROR) {
+                String message = new String(reply.array(), 1, reply.remaining(), StandardCharsets.UTF_8);
+                failures = failures == null ? new StringBuilder() : failures.append("; ");
+                failures.append("worker ").append(w).append(" failed: ").append(message);
+                continue;
+            }
+            PartitionWorker.readBand(reply, state, bandStart[w - 1], bandStart[w] - bandStart[w - 1]);
+        }
+        if (failures != null)
+            throw new ExtendedGameOfLifeException("Partitioned simulation failed: " + failures);
+    }
+}
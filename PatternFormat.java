@@ -0,0 +1,52 @@
+package it.polito.extgol;
+
+/**
+ * Text formats supported for importing and exporting board patterns.
+ */
+public enum PatternFormat {
+
+    /**
+     * Run Length Encoded (.rle): header line "x = W, y = H, rule = B3/S23",
+     * then runs of 'b' (dead), 'o' (alive) and '$' (end of row), closed by '!'.
+     */
+    RLE,
+
+    /**
+     * Plaintext (.cells): one line per row, '.' for dead and 'O' for alive cells;
+     * lines starting with '!' are comments.
+     */
+    PLAINTEXT,
+
+    /**
+     * Life 1.06 (.lif, .life): "#Life 1.06" header, then one "x y" line per alive cell.
+     */
+    LIFE_106,
+
+    /**
+     * Extended RLE (.xrle): RLE where a run may also be a bracketed cell
+     * "[o|b,type,mood,lifePoints]", with type and mood given by the initial
+     * of their name, e.g. "3[o,H,V,5]" for three alive HIGHLANDER VAMPIRE
+     * cells with 5 lifePoints each.
+     */
+    EXTENDED_RLE;
+
+    /**
+     * Guesses the format from a file name extension.
+     *
+     * @param fileName the name of the pattern file
+     * @return the matching format
+     * @throws ExtendedGameOfLifeException if the extension is not recognized
+     */
+    public static PatternFormat fromFileName(String fileName) throws ExtendedGameOfLifeException {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".xrle"))
+            return EXTENDED_RLE;
+        if (name.endsWith(".rle"))
+            return RLE;
+        if (name.endsWith(".cells"))
+            return PLAINTEXT;
+        if (name.endsWith(".lif") || name.endsWith(".life"))
+            return LIFE_106;
+        throw new ExtendedGameOfLifeException("Unknown pattern format: " + fileName);
+    }
+}
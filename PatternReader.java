@@ -0,0 +1,356 @@
+package it.polito.extgol;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streaming parser for board patterns (see {@link PatternFormat}).
+ *
+ * Patterns are stamped straight into a {@link BoardState} at a given offset,
+ * reading the input in large blocks and without building any intermediate
+ * coordinate list. Cells the pattern leaves dead are not touched, so several
+ * patterns can be stamped onto the same state; extended RLE cells are written
+ * with all their attributes, dead or alive.
+ *
+ * A board is then seeded with
+ * {@link Generation#createInitial(Game, Board, BoardState)}.
+ */
+public final class PatternReader {
+
+    private static final CellType[] TYPES = CellType.values();
+    private static final CellMood[] MOODS = CellMood.values();
+
+    private PatternReader() {} // utility class need not to be instantiated
+
+    /**
+     * Reads a pattern file, guessing its format from the file extension.
+     *
+     * @param path  the pattern file
+     * @param state the state to stamp the pattern into
+     * @param x0    column of the pattern's top-left corner (origin for Life 1.06)
+     * @param y0    row of the pattern's top-left corner (origin for Life 1.06)
+     * @throws ExtendedGameOfLifeException if the file cannot be read, is malformed,
+     *         or does not fit in the state
+     */
+    public static void read(Path path, BoardState state, int x0, int y0) throws ExtendedGameOfLifeException {
+        PatternFormat format = PatternFormat.fromFileName(path.getFileName().toString());
+        try (Reader in = Files.newBufferedReader(path, UTF_8)) {
+            read(in, format, state, x0, y0);
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot read pattern " + path, e);
+        }
+    }
+
+    /**
+     * Reads a pattern in the given format.
+     *
+     * @param in     the pattern text; it is not closed
+     * @param format the pattern format
+     * @param state  the state to stamp the pattern into
+     * @param x0     column of the pattern's top-left corner (origin for Life 1.06)
+     * @param y0     row of the pattern's top-left corner (origin for Life 1.06)
+     * @throws ExtendedGameOfLifeException if the input cannot be read, is malformed,
+     *         or does not fit in the state
+     */
+    public static void read(Reader in, PatternFormat format, BoardState state, int x0, int y0)
+            throws ExtendedGameOfLifeException {
+        Source src = new Source(in);
+        try {
+            switch (format) {
+                case RLE:
+                    readRle(src, state, x0, y0, false);
+                    break;
+                case EXTENDED_RLE:
+                    readRle(src, state, x0, y0, true);
+                    break;
+                case PLAINTEXT:
+                    readPlaintext(src, state, x0, y0);
+                    break;
+                case LIFE_106:
+                    readLife106(src, state, x0, y0);
+                    break;
+            }
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot read pattern", e);
+        }
+    }
+
+    private static void readRle(Source src, BoardState state, int x0, int y0, boolean extended)
+            throws IOException {
+        int c;
+        while ((c = src.peek()) != -1) {
+            if (c == '#') {
+                src.skipLine();
+            } else if (Character.isWhitespace(c)) {
+                src.read();
+            } else {
+                if (c == 'x')
+                    checkHeader(src, src.readLine(), state, x0, y0);
+                break;
+            }
+        }
+
+        int run = 0;
+        int x = 0;
+        int y = 0;
+        while ((c = src.read()) != -1) {
+            if (c >= '0' && c <= '9') {
+                run = run * 10 + (c - '0');
+                continue;
+            }
+            if (Character.isWhitespace(c))
+                continue;
+
+            int n = Math.max(run, 1);
+            run = 0;
+            switch (c) {
+                case 'b':
+                case '.':
+                    x += n;
+                    break;
+                case '$':
+                    y += n;
+                    x = 0;
+                    break;
+                case '!':
+                    return;
+                case '[':
+                    if (!extended)
+                        throw src.error("Extended cells are only allowed in extended RLE");
+                    readExtendedCell(src, state, x0 + x, y0 + y, n);
+                    x += n;
+                    break;
+                default:
+                    if (!Character.isLetter(c))
+                        throw src.error("Unexpected character '" + (char) c + "'");
+                    int row = checkRun(src, state, x0 + x, y0 + y, n);
+                    for (int i = row; i < row + n; i++) {
+                        state.setAlive(i, true);
+                    }
+                    x += n;
+            }
+        }
+    }
+
+    /**
+     * Parses "x = W, y = H[, rule = R]" and checks that the pattern fits and
+     * follows the rules implemented by the game.
+     */
+    private static void checkHeader(Source src, String header, BoardState state, int x0, int y0) {
+        int w = -1;
+        int h = -1;
+        for (String field : header.split(",")) {
+            String[] kv = field.split("=", 2);
+            if (kv.length != 2)
+                throw src.error("Malformed RLE header: " + header);
+            String key = kv[0].trim();
+            String value = kv[1].trim();
+            try {
+                if (key.equals("x")) {
+                    w = Integer.parseInt(value);
+                } else if (key.equals("y")) {
+                    h = Integer.parseInt(value);
+                } else if (key.equals("rule")) {
+                    String rule = value.replaceAll("\\s", "").toUpperCase();
+                    if (!rule.equals("B3/S23") && !rule.equals("S23/B3") && !rule.equals("23/3"))
+                        throw src.error("Unsupported rule " + value + ", only B3/S23 is implemented");
+                }
+            } catch (NumberFormatException e) {
+                throw src.error("Malformed RLE header: " + header);
+            }
+        }
+        if (w < 0 || h < 0)
+            throw src.error("Malformed RLE header: " + header);
+        if (x0 < 0 || y0 < 0 || x0 + w > state.getWidth() || y0 + h > state.getHeight())
+            throw new ExtendedGameOfLifeException("Pattern " + w + "x" + h + " does not fit the "
+                    + state.getWidth() + "x" + state.getHeight() + " board at (" + x0 + "," + y0 + ")");
+    }
+
+    /**
+     * Parses "o|b,type,mood,lifePoints]" (the '[' being already consumed)
+     * and applies it to n consecutive cells.
+     */
+    private static void readExtendedCell(Source src, BoardState state, int x, int y, int n)
+            throws IOException {
+        int a = src.read();
+        if (a != 'o' && a != 'b')
+            throw src.error("Expected 'o' or 'b' in extended cell");
+        src.expect(',');
+        CellType type = TYPES[initial(src, TYPES, src.read())];
+        src.expect(',');
+        CellMood mood = MOODS[initial(src, MOODS, src.read())];
+        src.expect(',');
+        int lifePoints = src.readInt();
+        src.expect(']');
+
+        int row = checkRun(src, state, x, y, n);
+        for (int i = row; i < row + n; i++) {
+            state.setAlive(i, a == 'o');
+            state.setType(i, type);
+            state.setMood(i, mood);
+            state.setLifePoints(i, lifePoints);
+        }
+    }
+
+    private static int initial(Source src, Enum<?>[] values, int c) {
+        for (Enum<?> v : values) {
+            if (v.name().charAt(0) == c)
+                return v.ordinal();
+        }
+        throw src.error("Unknown " + values[0].getDeclaringClass().getSimpleName()
+                + " initial '" + (char) c + "'");
+    }
+
+    private static void readPlaintext(Source src, BoardState state, int x0, int y0) throws IOException {
+        int x = 0;
+        int y = 0;
+        boolean lineStart = true;
+        int c;
+        while ((c = src.read()) != -1) {
+            if (lineStart && c == '!') {
+                src.skipLine();
+                continue;
+            }
+            lineStart = false;
+            switch (c) {
+                case '\n':
+                    y++;
+                    x = 0;
+                    lineStart = true;
+                    break;
+                case '\r':
+                case ' ':
+                case '\t':
+                    break;
+                case '.':
+                    x++;
+                    break;
+                case 'O':
+                case 'o':
+                case '*':
+                    state.setAlive(checkRun(src, state, x0 + x, y0 + y, 1), true);
+                    x++;
+                    break;
+                default:
+                    throw src.error("Unexpected character '" + (char) c + "'");
+            }
+        }
+    }
+
+    private static void readLife106(Source src, BoardState state, int x0, int y0) throws IOException {
+        int c;
+        while ((c = src.peek()) != -1) {
+            if (c == '#') {
+                src.skipLine();
+            } else if (Character.isWhitespace(c)) {
+                src.read();
+            } else {
+                int x = src.readInt();
+                int y = src.readInt();
+                state.setAlive(checkRun(src, state, x0 + x, y0 + y, 1), true);
+            }
+        }
+    }
+
+    /**
+     * Checks that n cells starting at (x, y) lie on one row of the state.
+     *
+     * @return the index of the first cell
+     */
+    private static int checkRun(Source src, BoardState state, int x, int y, int n) {
+        if (x < 0 || y < 0 || y >= state.getHeight() || x + n > state.getWidth())
+            throw src.error("Cell (" + x + "," + y + ") lies outside the "
+                    + state.getWidth() + "x" + state.getHeight() + " board");
+        return state.index(x, y);
+    }
+
+    /**
+     * Block-buffered character source tracking line numbers for error messages.
+     */
+    private static final class Source {
+        private final Reader in;
+        private final char[] buf = new char[1 << 16];
+        private int pos;
+        private int len;
+        private int line = 1;
+
+        Source(Reader in) {
+            this.in = in;
+        }
+
+        int peek() throws IOException {
+            if (pos == len) {
+                len = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (len <= 0) {
+                    len = 0;
+                    return -1;
+                }
+            }
+            return buf[pos];
+        }
+
+        int read() throws IOException {
+            int c = peek();
+            if (c != -1) {
+                pos++;
+                if (c == '\n')
+                    line++;
+            }
+            return c;
+        }
+
+        void skipLine() throws IOException {
+            int c;
+            while ((c = read()) != -1 && c != '\n') {
+                // discard
+            }
+        }
+
+        String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = read()) != -1 && c != '\n') {
+                if (c != '\r')
+                    sb.append((char) c);
+            }
+            return sb.toString();
+        }
+
+        void expect(char expected) throws IOException {
+            int c = read();
+            if (c != expected)
+                throw error("Expected '" + expected + "'");
+        }
+
+        int readInt() throws IOException {
+            int c;
+            while ((c = peek()) == ' ' || c == '\t') {
+                read();
+            }
+            boolean negative = c == '-';
+            if (negative) {
+                read();
+                c = peek();
+            }
+            if (c < '0' || c > '9')
+                throw error("Expected a number");
+            long value = 0;
+            while ((c = peek()) >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE)
+                    throw error("Number too large");
+                read();
+            }
+            return (int) (negative ? -value : value);
+        }
+
+        ExtendedGameOfLifeException error(String message) {
+            return new ExtendedGameOfLifeException("Line " + line + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package it.polito.extgol;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes board states as patterns (see {@link PatternFormat}).
+ *
+ * The whole board is exported with its top-left corner as origin, omitting
+ * trailing dead cells of each row and trailing empty rows. Only
+ * {@link PatternFormat#EXTENDED_RLE} preserves cell types, moods and lifePoints;
+ * the other formats only record which cells are alive.
+ */
+public final class PatternWriter {
+
+    /** Maximum length of an RLE line, as recommended by the format. */
+    private static final int RLE_LINE_LENGTH = 70;
+
+    private PatternWriter() {} // utility class need not to be instantiated
+
+    /**
+     * Writes a pattern file, choosing the format from the file extension.
+     *
+     * @param state the state to export
+     * @param path  the pattern file, created or overwritten
+     * @throws ExtendedGameOfLifeException if the file cannot be written
+     */
+    public static void write(BoardState state, Path path) throws ExtendedGameOfLifeException {
+        PatternFormat format = PatternFormat.fromFileName(path.getFileName().toString());
+        try (Writer out = Files.newBufferedWriter(path, UTF_8)) {
+            write(state, format, out);
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot write pattern " + path, e);
+        }
+    }
+
+    /**
+     * Writes a pattern in the given format.
+     *
+     * @param state  the state to export
+     * @param format the pattern format
+     * @param out    the destination; it is neither buffered nor closed by this method
+     * @throws ExtendedGameOfLifeException if the output cannot be written
+     */
+    public static void write(BoardState state, PatternFormat format, Writer out)
+            throws ExtendedGameOfLifeException {
+        try {
+            switch (format) {
+                case RLE:
+                    writeRle(state, out, false);
+                    break;
+                case EXTENDED_RLE:
+                    writeRle(state, out, true);
+                    break;
+                case PLAINTEXT:
+                    writePlaintext(state, out);
+                    break;
+                case LIFE_106:
+                    writeLife106(state, out);
+                    break;
+            }
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot write pattern", e);
+        }
+    }
+
+    private static void writeRle(BoardState state, Writer out, boolean extended) throws IOException {
+        int width = state.getWidth();
+        int height = state.getHeight();
+        if (extended)
+            out.write("#C extended cells: [o|b,type,mood,lifePoints]\n");
+        out.write("x = " + width + ", y = " + height + ", rule = B3/S23\n");
+
+        StringBuilder line = new StringBuilder(RLE_LINE_LENGTH + 16);
+        StringBuilder token = new StringBuilder(32);
+        int pendingRows = 0;
+        for (int y = 0; y < height; y++) {
+            int row = state.index(0, y);
+            int x = 0;
+            while (x < width) {
+                int i = row + x;
+                int run = 1;
+                while (x + run < width && sameCell(state, i, i + run, extended))
+                    run++;
+                boolean plainDead = !state.isAlive(i) && (!extended || isPlain(state, i));
+                if (plainDead && x + run == width)
+                    break;
+
+                if (pendingRows > 0) {
+                    emit(out, line, token.append(pendingRows > 1 ? pendingRows : "").append('$'));
+                    pendingRows = 0;
+                }
+                if (run > 1)
+                    token.append(run);
+                if (!extended || isPlain(state, i)) {
+                    token.append(state.isAlive(i) ? 'o' : 'b');
+                } else {
+                    token.append('[').append(state.isAlive(i) ? 'o' : 'b')
+                         .append(',').append(state.getType(i).name().charAt(0))
+                         .append(',').append(state.getMood(i).name().charAt(0))
+                         .append(',').append(state.getLifePoints(i))
+                         .append(']');
+                }
+                emit(out, line, token);
+                x += run;
+            }
+            pendingRows++;
+        }
+        emit(out, line, token.append('!'));
+        out.write(line.append('\n').toString());
+    }
+
+    /**
+     * Appends a token to the current RLE line, starting a new line when it would
+     * exceed the maximum length; clears the token.
+     */
+    private static void emit(Writer out, StringBuilder line, StringBuilder token) throws IOException {
+        if (line.length() + token.length() > RLE_LINE_LENGTH) {
+            out.write(line.append('\n').toString());
+            line.setLength(0);
+        }
+        line.append(token);
+        token.setLength(0);
+    }
+
+    /** Tells whether a cell has the default type, mood and lifePoints. */
+    private static boolean isPlain(BoardState state, int i) {
+        return state.getType(i) == CellType.BASIC
+                && state.getMood(i) == CellMood.NAIVE
+                && state.getLifePoints(i) == 0;
+    }
+
+    private static boolean sameCell(BoardState state, int i, int j, boolean extended) {
+        if (state.isAlive(i) != state.isAlive(j))
+            return false;
+        return !extended
+                || (state.getType(i) == state.getType(j)
+                    && state.getMood(i) == state.getMood(j)
+                    && state.getLifePoints(i) == state.getLifePoints(j));
+    }
+
+    private static void writePlaintext(BoardState state, Writer out) throws IOException {
+        int width = state.getWidth();
+        StringBuilder line = new StringBuilder(width + 1);
+        int emptyRows = 0;
+        for (int y = 0; y < state.getHeight(); y++) {
+            int row = state.index(0, y);
+            int last = -1;
+            for (int x = 0; x < width; x++) {
+                if (state.isAlive(row + x))
+                    last = x;
+            }
+            if (last < 0) {
+                emptyRows++;
+                continue;
+            }
+            for (; emptyRows > 0; emptyRows--)
+                out.write('\n');
+            line.setLength(0);
+            for (int x = 0; x <= last; x++) {
+                line.append(state.isAlive(row + x) ? 'O' : '.');
+            }
+            out.write(line.append('\n').toString());
+        }
+    }
+
+    private static void writeLife106(BoardState state, Writer out) throws IOException {
+        out.write("#Life 1.06\n");
+        for (int y = 0; y < state.getHeight(); y++) {
+            int row = state.index(0, y);
+            for (int x = 0; x < state.getWidth(); x++) {
+                if (state.isAlive(row + x))
+                    out.write(x + " " + y + "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package it.polito.extgol;
+
+/**
+ * Multi-resolution aggregation of a board state, for zoomed-out rendering.
+ *
+ * Level k (1 &lt;= k &lt;= {@link #getLevels()}) splits the board into blocks of
+ * 2^k x 2^k cells, the last row and column of blocks being cut by the board's
+ * border, and holds for each block the number of alive cells and the sum of the
+ * lifePoints of all its cells. The top level has a single block covering the board.
+ *
+ * A pyramid is built once from a state in time proportional to the board, then
+ * kept up to date cell by cell: a change of one cell touches one block per level.
+ * Reading a block, or rendering a viewport with {@link #render}, costs time
+ * proportional to the blocks read, whatever the size of the board.
+ *
+ * @see Game#getPyramid(Generation)
+ */
+public final class PopulationPyramid {
+
+    private final int width;
+    private final int height;
+
+    /** Blocks per row at each level; index 0 is unused. */
+    private final int[] columns;
+
+    private final int[][] alive;
+    private final long[][] lifePoints;
+
+    private PopulationPyramid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int levels = 1;
+        while ((1 << levels) < Math.max(width, height)) {
+            levels++;
+        }
+        this.columns = new int[levels + 1];
+        this.alive = new int[levels + 1][];
+        this.lifePoints = new long[levels + 1][];
+        for (int k = 1; k <= levels; k++) {
+            columns[k] = blocks(width, k);
+            int size = columns[k] * blocks(height, k);
+            alive[k] = new int[size];
+            lifePoints[k] = new long[size];
+        }
+    }
+
+    private static int blocks(int cells, int level) {
+        return (int) (((long) cells + (1L << level) - 1) >> level);
+    }
+
+    /**
+     * Builds the pyramid of a board state.
+     */
+    public static PopulationPyramid of(BoardState state) {
+        PopulationPyramid pyramid = new PopulationPyramid(state.getWidth(), state.getHeight());
+        int[] alive1 = pyramid.alive[1];
+        long[] lifePoints1 = pyramid.lifePoints[1];
+        int columns1 = pyramid.columns[1];
+        for (int y = 0; y < state.getHeight(); y++) {
+            int row = (y >> 1) * columns1;
+            for (int x = 0; x < state.getWidth(); x++) {
+                int i = state.index(x, y);
+                int block = row + (x >> 1);
+                if (state.isAlive(i)) alive1[block]++;
+                lifePoints1[block] += state.getLifePoints(i);
+            }
+        }
+        for (int k = 2; k <= pyramid.getLevels(); k++) {
+            int rowsBelow = blocks(state.getHeight(), k - 1);
+            for (int by = 0; by < rowsBelow; by++) {
+                for (int bx = 0; bx < pyramid.columns[k - 1]; bx++) {
+                    int from = by * pyramid.columns[k - 1] + bx;
+                    int to = (by >> 1) * pyramid.columns[k] + (bx >> 1);
+                    pyramid.alive[k][to] += pyramid.alive[k - 1][from];
+                    pyramid.lifePoints[k][to] += pyramid.lifePoints[k - 1][from];
+                }
+            }
+        }
+        return pyramid;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Returns the coarsest level, whose single block covers the whole board. */
+    public int getLevels() {
+        return columns.length - 1;
+    }
+
+    /** Returns the number of blocks per row at a level. */
+    public int getColumns(int level) {
+        checkLevel(level);
+        return columns[level];
+    }
+
+    /** Returns the number of blocks per column at a level. */
+    public int getRows(int level) {
+        checkLevel(level);
+        return alive[level].length / columns[level];
+    }
+
+    /**
+     * Returns the number of alive cells in the block (bx, by) of a level.
+     */
+    public int getAlive(int level, int bx, int by) {
+        return alive[level][block(level, bx, by)];
+    }
+
+    /**
+     * Returns the sum of the lifePoints of the cells in the block (bx, by) of a level.
+     */
+    public long getLifePoints(int level, int bx, int by) {
+        return lifePoints[level][block(level, bx, by)];
+    }
+
+    /**
+     * Returns the number of cells of the board inside the block (bx, by) of a level.
+     */
+    public int getCells(int level, int bx, int by) {
+        block(level, bx, by);
+        int w = Math.min(width - (bx << level), 1 << level);
+        int h = Math.min(height - (by << level), 1 << level);
+        return w * h;
+    }
+
+    private int block(int level, int bx, int by) {
+        checkLevel(level);
+        if (bx < 0 || by < 0 || bx >= columns[level] || by >= getRows(level))
+            throw new IndexOutOfBoundsException("No block (" + bx + "," + by + ") at level " + level);
+        return by * columns[level] + bx;
+    }
+
+    private void checkLevel(int level) {
+        if (level < 1 || level > getLevels())
+            throw new IllegalArgumentException("No level " + level + " in a pyramid of " + getLevels() + " levels");
+    }
+
+    /**
+     * Accounts for a cell of the board becoming alive or dead.
+     */
+    void aliveChanged(int x, int y, boolean isAlive) {
+        int delta = isAlive ? 1 : -1;
+        for (int k = 1; k < columns.length; k++) {
+            alive[k][(y >> k) * columns[k] + (x >> k)] += delta;
+        }
+    }
+
+    /**
+     * Accounts for a change of the lifePoints of a cell of the board.
+     */
+    void lifePointsChanged(int x, int y, int delta) {
+        if (delta == 0) return;
+        for (int k = 1; k < columns.length; k++) {
+            lifePoints[k][(y >> k) * columns[k] + (x >> k)] += delta;
+        }
+    }
+
+    /**
+     * Renders a viewport of a level, one character per block:
+     *
+     * "C" -> every cell of the block alive
+     * "0" -> no cell alive
+     * "1".."9" -> share of alive cells, in ninths rounded up
+     *
+     * Blocks of the viewport outside the board are rendered as spaces.
+     *
+     * @param level   the level to render
+     * @param bx      column of the viewport's leftmost blocks
+     * @param by      row of the viewport's topmost blocks
+     * @param columns width of the viewport, in blocks
+     * @param rows    height of the viewport, in blocks
+     * @return one line per row of blocks, rows separated by '\n'
+     */
+    public String render(int level, int bx, int by, int columns, int rows) {
+        checkLevel(level);
+        int levelColumns = this.columns[level];
+        int levelRows = getRows(level);
+        StringBuilder sb = new StringBuilder((columns + 1) * rows);
+        for (int y = by; y < by + rows; y++) {
+            for (int x = bx; x < bx + columns; x++) {
+                if (x < 0 || y < 0 || x >= levelColumns || y >= levelRows) {
+                    sb.append(' ');
+                    continue;
+                }
+                int count = alive[level][y * levelColumns + x];
+                int cells = getCells(level, x, y);
+                if (count == 0)
+                    sb.append('0');
+                else if (count == cells)
+                    sb.append('C');
+                else
+                    sb.append((char) ('0' + (int) ((9L * count + cells - 1) / cells)));
+            }
+            if (y < by + rows - 1)
+                sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package it.polito.extgol;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * A set of board coordinates targeted by a bulk operation, such as
+ * {@link Generation#setState(Region, boolean)}.
+ *
+ * A region is enumerated in the row-major order of {@link BoardState}
+ * ({@code index = y * width + x}) without allocating, and is clipped to the
+ * board it is applied to.
+ */
+@FunctionalInterface
+public interface Region {
+
+    /**
+     * Tests single coordinates, see {@link Region#where(CellFilter)}.
+     */
+    @FunctionalInterface
+    interface CellFilter {
+        boolean test(int x, int y);
+    }
+
+    /**
+     * Returns the first index of the region, within a board of the given size,
+     * that is greater than or equal to {@code from}.
+     *
+     * @param width  number of columns of the board
+     * @param height number of rows of the board
+     * @param from   the index to start from
+     * @return the next index in the region, or -1 if there is none
+     */
+    int nextIndex(int width, int height, int from);
+
+    /**
+     * The rectangle of {@code w} x {@code h} cells whose top-left corner is (x, y).
+     */
+    static Region rectangle(int x, int y, int w, int h) throws ExtendedGameOfLifeException {
+        if (w < 0 || h < 0)
+            throw new ExtendedGameOfLifeException("Region dimensions cannot be negative");
+        return (width, height, from) -> {
+            int x0 = Math.max(x, 0);
+            int x1 = Math.min(x + w, width);
+            int y1 = Math.min(y + h, height);
+            if (x0 >= x1)
+                return -1;
+            int row = Math.max(from / width, Math.max(y, 0));
+            int col = row == from / width ? Math.max(from % width, x0) : x0;
+            if (col >= x1) {
+                row++;
+                col = x0;
+            }
+            return row < y1 ? row * width + col : -1;
+        };
+    }
+
+    /**
+     * The cells whose bit is set in a row-major mask ({@code bit = y * maskWidth + x}).
+     *
+     * @param maskWidth number of columns the mask was built for; it must match the board
+     * @param mask      the set bits
+     */
+    static Region mask(int maskWidth, BitSet mask) {
+        BitSet bits = (BitSet) mask.clone();
+        return (width, height, from) -> {
+            if (width != maskWidth)
+                throw new ExtendedGameOfLifeException("Mask width " + maskWidth + " does not match board width " + width);
+            int i = bits.nextSetBit(from);
+            return i >= 0 && i < width * height ? i : -1;
+        };
+    }
+
+    /**
+     * The cells accepted by the filter; every cell of the board is tested.
+     */
+    static Region where(CellFilter filter) {
+        return (width, height, from) -> {
+            for (int i = from, size = width * height; i < size; i++) {
+                if (filter.test(i % width, i / width))
+                    return i;
+            }
+            return -1;
+        };
+    }
+
+    /**
+     * The given coordinates; those outside the board are ignored.
+     */
+    static Region of(Collection<Coord> coords) {
+        Coord[] points = coords.toArray(new Coord[0]);
+        return new Region() {
+            private int indexedWidth = -1;
+            private int indexedHeight;
+            private BitSet bits;
+
+            @Override
+            public int nextIndex(int width, int height, int from) {
+                if (width != indexedWidth || height != indexedHeight) {
+                    bits = new BitSet();
+                    for (Coord c : points) {
+                        if (c.getX() >= 0 && c.getX() < width && c.getY() >= 0 && c.getY() < height)
+                            bits.set(c.getY() * width + c.getX());
+                    }
+                    indexedWidth = width;
+                    indexedHeight = height;
+                }
+                return bits.nextSetBit(from);
+            }
+        };
+    }
+}
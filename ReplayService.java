@@ -0,0 +1,207 @@
+package it.polito.extgol;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Deterministic replay of a game whose generations were stored only at some steps.
+ *
+ * Any step can be reached: the service starts from the nearest stored generation
+ * (a keyframe) at or before it, then re-simulates the steps in between with the
+ * game's event timeline and the same engine, exactly as {@code run} did.
+ * The replayed states can be checked against the hashes recorded with the
+ * keyframes through {@link #verify(int, int)}.
+ *
+ * Scrubbing back and forth is served by a bounded cache of frames, kept in
+ * least-recently-used order: every {@code cacheStride}-th replayed step and every
+ * requested one are cached, and later seeks start from the nearest cached frame
+ * rather than from the keyframe. Moving one step forward continues from the
+ * current state without any lookup.
+ *
+ * Instances are not thread-safe.
+ */
+public class ReplayService {
+
+    /** Cache stride of the replays built by the factory methods. */
+    public static final int DEFAULT_CACHE_STRIDE = 16;
+
+    private final KeyframeStore keyframes;
+    private final EventTimeline timeline;
+    private final BoardState layout;
+    private final BufferedSimulation sim;
+    private final int cacheStride;
+    private final Map<Integer, BoardState> cache;
+
+    /** Step of the state returned by the last seek, or -1. */
+    private int position = -1;
+
+    /** Whether the simulation holds a replayed state, which seeks may continue from. */
+    private boolean live;
+
+    /**
+     * Creates a replay over the given keyframes.
+     *
+     * @param keyframes     the stored generations of the game
+     * @param timeline      the events applied during the original run
+     * @param layout        a state holding the cell types of the game's board
+     * @param engine        the engine used by the original run
+     * @param cacheCapacity maximum number of cached frames
+     * @param cacheStride   number of replayed steps between two cached frames;
+     *                      0 caches only the requested ones
+     */
+    public ReplayService(KeyframeStore keyframes, EventTimeline timeline, BoardState layout,
+            EvolutionEngine engine, int cacheCapacity, int cacheStride) throws ExtendedGameOfLifeException {
+        if (keyframes == null || timeline == null || layout == null)
+            throw new ExtendedGameOfLifeException("Keyframes, timeline and layout cannot be null");
+        if (cacheCapacity < 1)
+            throw new ExtendedGameOfLifeException("Cache capacity must be positive");
+        if (cacheStride < 0)
+            throw new ExtendedGameOfLifeException("Cache stride cannot be negative");
+        this.keyframes = keyframes;
+        this.timeline = timeline;
+        this.layout = copy(layout);
+        this.cacheStride = cacheStride;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, BoardState> eldest) {
+                return size() > cacheCapacity;
+            }
+        };
+
+        Game scratch = Game.create("replay", layout.getWidth(), layout.getHeight());
+        this.layout.restore(scratch.getBoard());
+        this.sim = new BufferedSimulation(scratch, engine);
+    }
+
+    /**
+     * Creates a replay of a game held in memory, e.g. one run with
+     * {@code runBuffered} and a snapshot interval, using its own timeline.
+     */
+    public static ReplayService of(Game game, EvolutionEngine engine, int cacheCapacity)
+            throws ExtendedGameOfLifeException {
+        return new ReplayService(KeyframeStore.of(game), game.getTimeline(), BoardState.of(game.getBoard()),
+                engine, cacheCapacity, DEFAULT_CACHE_STRIDE);
+    }
+
+    /**
+     * Returns the state of the game at a step, i.e. before the events applied at it.
+     *
+     * The returned state is shared with the cache and must not be modified.
+     *
+     * @param step the step to reach
+     * @throws ExtendedGameOfLifeException if no keyframe precedes the step
+     */
+    public BoardState seek(int step) throws ExtendedGameOfLifeException {
+        if (step < 0)
+            throw new ExtendedGameOfLifeException("Step cannot be negative");
+        BoardState frame = cache.get(step);
+        if (frame == null) {
+            int keyframe = keyframes.floorStep(step);
+            if (keyframe < 0)
+                throw new ExtendedGameOfLifeException("No stored generation at or before step " + step);
+
+            int from = keyframe;
+            BoardState start = null;
+            for (Map.Entry<Integer, BoardState> e : cache.entrySet()) {
+                int cached = e.getKey();
+                if (cached >= from && cached < step) {
+                    from = cached;
+                    start = e.getValue();
+                }
+            }
+            if (!(live && sim.getStep() >= from && sim.getStep() <= step)) {
+                sim.reset(start != null ? start : readKeyframe(keyframe), from);
+                live = true;
+            }
+            advance(step, true);
+            frame = cache(step, sim.getState());
+        }
+        position = step;
+        return frame;
+    }
+
+    /**
+     * Moves one step forward.
+     */
+    public BoardState next() throws ExtendedGameOfLifeException {
+        return seek(position + 1);
+    }
+
+    /**
+     * Moves one step back.
+     */
+    public BoardState previous() throws ExtendedGameOfLifeException {
+        return seek(position - 1);
+    }
+
+    /** Returns the step of the last sought state, or -1. */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Re-simulates every keyframe within [from, to] from the previous one and
+     * compares the outcome with the hash recorded with it; the keyframes are
+     * checked against their own hashes as well.
+     *
+     * @return the first step whose state does not match, or -1 if the replay is faithful
+     */
+    public int verify(int from, int to) throws ExtendedGameOfLifeException {
+        int keyframe = keyframes.floorStep(from);
+        if (keyframe < 0)
+            keyframe = keyframes.higherStep(from);
+        live = false;
+        while (keyframe >= 0 && keyframe <= to) {
+            BoardState stored = readKeyframe(keyframe);
+            if (ZobristHash.of(stored) != keyframes.stateHash(keyframe))
+                return keyframe;
+
+            int next = keyframes.higherStep(keyframe);
+            if (next < 0 || next > to)
+                break;
+            sim.reset(stored, keyframe);
+            advance(next, false);
+            if (ZobristHash.of(sim.getState()) != keyframes.stateHash(next))
+                return next;
+            keyframe = next;
+        }
+        return -1;
+    }
+
+    /**
+     * Runs the simulation from its current step to the given one, applying the
+     * timeline's events on the way; the events of the target step are not applied.
+     */
+    private void advance(int step, boolean caching) {
+        EventTimeline.Cursor cursor = timeline.cursor(sim.getStep());
+        while (sim.getStep() < step) {
+            int i = sim.getStep();
+            if (cursor.nextStep() == i) {
+                for (ScheduledEvent event : cursor.advanceTo(i)) {
+                    sim.applyEvent(event);
+                }
+            }
+            sim.step();
+            if (caching && cacheStride > 0 && sim.getStep() % cacheStride == 0 && sim.getStep() < step)
+                cache(sim.getStep(), sim.getState());
+        }
+    }
+
+    private BoardState readKeyframe(int step) throws ExtendedGameOfLifeException {
+        BoardState state = copy(layout);
+        keyframes.read(step, state);
+        return state;
+    }
+
+    private BoardState cache(int step, BoardState state) {
+        BoardState frame = copy(state);
+        cache.put(step, frame);
+        return frame;
+    }
+
+    private static BoardState copy(BoardState state) {
+        BoardState copy = new BoardState(state.getWidth(), state.getHeight());
+        copy.copyFrom(state);
+        return copy;
+    }
+}
@@ -0,0 +1,82 @@
+package it.polito.extgol;
+
+/**
+ * Decides which generations a game keeps in {@link Game#getGenerations()}, and
+ * therefore which ones {@code saveGame} persists, see {@link Game#setRetention}.
+ *
+ * A policy is asked about every kept generation each time a new one is added;
+ * the first generation of the game and the newest one are always kept. Evicted
+ * generations cannot come back, so a policy should only ever drop more of the
+ * older steps as the newest step grows, as the policies below do. Evicted steps
+ * remain summarized in the game's {@link StatisticsSeries}.
+ */
+@FunctionalInterface
+public interface RetentionPolicy {
+
+    /**
+     * Tells whether the generation of a step is kept.
+     *
+     * @param game   the game the generation belongs to
+     * @param step   the step of the generation
+     * @param newest the step of the newest generation
+     */
+    boolean retains(Game game, int step, int newest);
+
+    /**
+     * Keeps every generation, the default.
+     */
+    static RetentionPolicy all() {
+        return (game, step, newest) -> true;
+    }
+
+    /**
+     * Keeps the generations of the last {@code count} steps.
+     */
+    static RetentionPolicy lastGenerations(int count) throws ExtendedGameOfLifeException {
+        if (count < 1)
+            throw new ExtendedGameOfLifeException("Retained generation count must be positive");
+        return (game, step, newest) -> step > newest - count;
+    }
+
+    /**
+     * Keeps the generations of the steps multiple of {@code period}.
+     */
+    static RetentionPolicy everyNth(int period) throws ExtendedGameOfLifeException {
+        if (period < 1)
+            throw new ExtendedGameOfLifeException("Retention period must be positive");
+        return (game, step, newest) -> step % period == 0;
+    }
+
+    /**
+     * Keeps the generations of the last {@code recent} steps, then thins older ones
+     * exponentially: among steps between {@code recent * 2^j} and {@code recent * 2^(j+1)}
+     * steps old, only the multiples of 2^(j+1) are kept. About {@code recent / 2}
+     * generations are kept per doubling of the age, so O(recent * log(steps)) in all.
+     */
+    static RetentionPolicy exponential(int recent) throws ExtendedGameOfLifeException {
+        if (recent < 1)
+            throw new ExtendedGameOfLifeException("Retained generation count must be positive");
+        return (game, step, newest) -> {
+            int age = newest - step;
+            if (age < recent)
+                return true;
+            int band = 31 - Integer.numberOfLeadingZeros(age / recent);
+            return (step & ((2 << band) - 1)) == 0;
+        };
+    }
+
+    /**
+     * Keeps the generations of the steps at which events were applied, i.e. the
+     * states the events were applied to, see {@link Game#hadEventsAt(int)}.
+     */
+    static RetentionPolicy eventSteps() {
+        return (game, step, newest) -> game.hadEventsAt(step);
+    }
+
+    /**
+     * Keeps the generations kept by this policy or by the other one.
+     */
+    default RetentionPolicy or(RetentionPolicy other) {
+        return (game, step, newest) -> retains(game, step, newest) || other.retains(game, step, newest);
+    }
+}
@@ -0,0 +1,118 @@
+package it.polito.extgol;
+
+/**
+ * Lookup table of the evolution rule: next aliveness of a cell as a function
+ * of its current aliveness and of its count of alive neighbors.
+ *
+ * The table is derived from the reference rule ({@link Cell#evolve(int)}),
+ * so that engines working on compact board states produce exactly the same
+ * generations as the cell-by-cell evolution.
+ */
+public final class RuleTable {
+
+    private final int maxNeighbors;
+
+    /** Entry {@code alive * (maxNeighbors + 1) + count}. */
+    private final boolean[] next;
+
+    private RuleTable(int maxNeighbors, boolean[] next) {
+        this.maxNeighbors = maxNeighbors;
+        this.next = next;
+    }
+
+    /**
+     * Builds the table of the given rule, for neighbor counts up to {@code maxNeighbors}.
+     *
+     * @param maxNeighbors the largest possible neighbor count (8 for Moore neighborhoods)
+     * @param dead         an instance of the rule in the dead state
+     * @param alive        an instance of the rule in the alive state
+     * @return the tabulated rule
+     */
+    public static RuleTable of(int maxNeighbors, Evolvable dead, Evolvable alive) {
+        boolean[] next = new boolean[2 * (maxNeighbors + 1)];
+        for (int n = 0; n <= maxNeighbors; n++) {
+            next[n] = dead.evolve(n);
+            next[maxNeighbors + 1 + n] = alive.evolve(n);
+        }
+        return new RuleTable(maxNeighbors, next);
+    }
+
+    /**
+     * Tabulates the reference rule of {@link Cell} for Moore neighborhoods.
+     */
+    public static RuleTable reference() {
+        return reference(8);
+    }
+
+    /**
+     * Tabulates the reference rule of {@link Cell} for neighbor counts up to {@code maxNeighbors}.
+     */
+    public static RuleTable reference(int maxNeighbors) {
+        Cell dead = new Cell();
+        Cell alive = new Cell();
+        alive.setAlive(true);
+        return of(maxNeighbors, dead, alive);
+    }
+
+    /**
+     * Tabulates a Larger-than-Life rule: a dead cell comes to life when its count
+     * of alive neighbors is within [birthLow, birthHigh], an alive cell survives
+     * when it is within [survivalLow, survivalHigh].
+     *
+     * @param maxNeighbors the largest possible neighbor count, see {@link Neighborhood#getMaxNeighbors()}
+     */
+    public static RuleTable ranges(int maxNeighbors, int birthLow, int birthHigh, int survivalLow, int survivalHigh) {
+        boolean[] next = new boolean[2 * (maxNeighbors + 1)];
+        for (int n = 0; n <= maxNeighbors; n++) {
+            next[n] = n >= birthLow && n <= birthHigh;
+            next[maxNeighbors + 1 + n] = n >= survivalLow && n <= survivalHigh;
+        }
+        return new RuleTable(maxNeighbors, next);
+    }
+
+    public int getMaxNeighbors() {
+        return maxNeighbors;
+    }
+
+    /**
+     * @param alive          current aliveness of the cell
+     * @param aliveNeighbors number of alive neighbors
+     * @return whether the cell is alive in the next generation
+     */
+    public boolean next(boolean alive, int aliveNeighbors) {
+        return next[(alive ? maxNeighbors + 1 : 0) + aliveNeighbors];
+    }
+
+    /**
+     * Same as {@link #next(boolean, int)}, with aliveness as 0 or 1.
+     */
+    public boolean next(int alive, int aliveNeighbors) {
+        return next[alive * (maxNeighbors + 1) + aliveNeighbors];
+    }
+
+    /**
+     * Returns the neighbor counts for which a dead cell comes to life.
+     */
+    public int[] birthCounts() {
+        return counts(0);
+    }
+
+    /**
+     * Returns the neighbor counts for which an alive cell survives.
+     */
+    public int[] survivalCounts() {
+        return counts(maxNeighbors + 1);
+    }
+
+    private int[] counts(int offset) {
+        int size = 0;
+        for (int n = 0; n <= maxNeighbors; n++) {
+            if (next[offset + n]) size++;
+        }
+        int[] counts = new int[size];
+        for (int n = 0, k = 0; n <= maxNeighbors; n++) {
+            if (next[offset + n]) counts[k++] = n;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,135 @@
+package it.polito.extgol;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publisher that never makes its producer wait for subscribers.
+ *
+ * Each subscription holds at most one pending item: a newer item replaces an
+ * undelivered one, so a slow subscriber samples the stream instead of buffering
+ * or stalling it. Items are delivered on the given executor, one at a time per
+ * subscriber, as demand allows.
+ *
+ * @param <T> the published item type
+ */
+final class SamplingPublisher<T> implements Flow.Publisher<T> {
+
+    private final Executor executor;
+    private final CopyOnWriteArrayList<SamplingSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /** Terminal signal: null while open, DONE on completion, otherwise the failure. */
+    private volatile Throwable terminal;
+    private static final Throwable DONE = new Throwable("completed", null, false, false) { };
+
+    SamplingPublisher(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        SamplingSubscription s = new SamplingSubscription(subscriber);
+        subscriptions.add(s);
+        subscriber.onSubscribe(s);
+        // a subscriber arriving after the end still gets the terminal signal
+        if (terminal != null)
+            s.drain();
+    }
+
+    /**
+     * Offers an item to every subscriber, replacing any item they have not consumed yet.
+     */
+    void offer(T item) {
+        for (SamplingSubscription s : subscriptions) {
+            s.latest.set(item);
+            s.drain();
+        }
+    }
+
+    /**
+     * Signals completion once the pending items have been delivered.
+     */
+    void complete() {
+        terminate(DONE);
+    }
+
+    /**
+     * Signals the given failure, dropping the pending items.
+     */
+    void fail(Throwable error) {
+        terminate(error);
+    }
+
+    private void terminate(Throwable signal) {
+        if (terminal != null)
+            return;
+        terminal = signal;
+        for (SamplingSubscription s : subscriptions) {
+            s.drain();
+        }
+    }
+
+    private final class SamplingSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicReference<T> latest = new AtomicReference<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        SamplingSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+            demand.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Schedules a delivery round unless one is already running.
+         */
+        void drain() {
+            if (wip.getAndIncrement() == 0)
+                executor.execute(this::deliver);
+        }
+
+        private void deliver() {
+            int missed = 1;
+            do {
+                while (!cancelled && demand.get() > 0) {
+                    T item = latest.getAndSet(null);
+                    if (item == null)
+                        break;
+                    demand.decrementAndGet();
+                    subscriber.onNext(item);
+                }
+                Throwable signal = terminal;
+                if (!cancelled && signal != null && (signal != DONE || latest.get() == null)) {
+                    cancel();
+                    if (signal == DONE)
+                        subscriber.onComplete();
+                    else
+                        subscriber.onError(signal);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
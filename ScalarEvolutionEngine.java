@@ -0,0 +1,60 @@
+package it.polito.extgol;
+
+/**
+ * Portable evolution engine working one cell at a time on the aliveness plane.
+ *
+ * The plane is copied into a buffer with a one-cell dead border, so that every
+ * cell has eight neighbors in memory and the inner loop needs no bounds checks.
+ */
+public class ScalarEvolutionEngine implements EvolutionEngine {
+
+    private final RuleTable rule;
+
+    /** Aliveness with a dead border, (width + 2) x (height + 2), reused across steps. */
+    private byte[] padded = new byte[0];
+
+    public ScalarEvolutionEngine(RuleTable rule) {
+        this.rule = rule;
+    }
+
+    @Override
+    public void step(BoardState current, BoardState next) {
+        int w = current.getWidth();
+        int h = current.getHeight();
+        int pw = w + 2;
+        padded = padded(padded, current);
+        byte[] src = padded;
+        byte[] dst = next.alivePlane();
+
+        for (int y = 0; y < h; y++) {
+            int up = y * pw;
+            int mid = up + pw;
+            int down = mid + pw;
+            int out = y * w;
+            for (int x = 0; x < w; x++) {
+                int n = src[up + x] + src[up + x + 1] + src[up + x + 2]
+                      + src[mid + x] + src[mid + x + 2]
+                      + src[down + x] + src[down + x + 1] + src[down + x + 2];
+                dst[out + x] = (byte) (rule.next(src[mid + x + 1], n) ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Copies the aliveness plane of a state into a buffer with a one-cell dead
+     * border, reallocating the buffer only when the dimensions change.
+     */
+    static byte[] padded(byte[] buffer, BoardState state) {
+        int w = state.getWidth();
+        int h = state.getHeight();
+        int pw = w + 2;
+        int size = pw * (h + 2);
+        if (buffer.length != size)
+            buffer = new byte[size];
+        byte[] alive = state.alivePlane();
+        for (int y = 0; y < h; y++) {
+            System.arraycopy(alive, y * w, buffer, (y + 1) * pw + 1, w);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,204 @@
+package it.polito.extgol;
+
+import java.util.Objects;
+
+/**
+ * One entry of an {@link EventTimeline}: an event triggered once or periodically,
+ * on the whole board or on a rectangular area of it.
+ *
+ * An event with period {@code p > 0} occurs at steps {@code start, start + p, ...}
+ * strictly before {@code end}; a one-shot event occurs at {@code start} only.
+ * Entries are immutable and consist of primitive fields only, so that they can be
+ * stored as they are.
+ */
+public final class ScheduledEvent {
+
+    /** End of events that recur forever. */
+    public static final int FOREVER = Integer.MAX_VALUE;
+
+    private final EventType type;
+    private final int start;
+    private final int period;
+    private final int end;
+
+    /** Scope of the event; a negative width denotes the whole board. */
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+
+    private ScheduledEvent(EventType type, int start, int period, int end, int x, int y, int width, int height)
+            throws ExtendedGameOfLifeException {
+        if (type == null)
+            throw new ExtendedGameOfLifeException("Event type cannot be null");
+        if (start < 0 || period < 0 || end <= start)
+            throw new ExtendedGameOfLifeException(
+                    "Invalid schedule: start=" + start + ", period=" + period + ", end=" + end);
+        this.type = type;
+        this.start = start;
+        this.period = period;
+        this.end = end;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * An event applied to the whole board at a single step.
+     */
+    public static ScheduledEvent once(int step, EventType type) throws ExtendedGameOfLifeException {
+        return new ScheduledEvent(type, step, 0, step + 1, 0, 0, -1, -1);
+    }
+
+    /**
+     * An event applied to the whole board every {@code period} steps from
+     * {@code start}, forever.
+     */
+    public static ScheduledEvent recurring(EventType type, int start, int period) throws ExtendedGameOfLifeException {
+        return recurring(type, start, period, FOREVER);
+    }
+
+    /**
+     * An event applied to the whole board every {@code period} steps from
+     * {@code start}, up to {@code end} excluded.
+     */
+    public static ScheduledEvent recurring(EventType type, int start, int period, int end)
+            throws ExtendedGameOfLifeException {
+        if (period <= 0)
+            throw new ExtendedGameOfLifeException("Recurring events need a positive period");
+        return new ScheduledEvent(type, start, period, end, 0, 0, -1, -1);
+    }
+
+    /**
+     * Restores an entry from its stored fields.
+     *
+     * @param width a negative value for events applied to the whole board
+     */
+    static ScheduledEvent of(EventType type, int start, int period, int end, int x, int y, int width, int height)
+            throws ExtendedGameOfLifeException {
+        return new ScheduledEvent(type, start, period, end, x, y, width, height);
+    }
+
+    /**
+     * Returns the same schedule restricted to the {@code w} x {@code h} cells whose
+     * top-left corner is (x, y); parts outside the board are ignored.
+     */
+    public ScheduledEvent within(int x, int y, int w, int h) throws ExtendedGameOfLifeException {
+        if (w < 0 || h < 0)
+            throw new ExtendedGameOfLifeException("Region dimensions cannot be negative");
+        return new ScheduledEvent(type, start, period, end, x, y, w, h);
+    }
+
+    /**
+     * Returns the same event, with the occurrences before the given step dropped.
+     *
+     * @return the remaining schedule, or null if no occurrence is left
+     */
+    ScheduledEvent from(int step) throws ExtendedGameOfLifeException {
+        int next = nextOccurrence(step);
+        if (next < 0)
+            return null;
+        return next == start ? this : new ScheduledEvent(type, next, period, end, x, y, width, height);
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    /** Returns the number of steps between two occurrences, 0 for one-shot events. */
+    public int getPeriod() {
+        return period;
+    }
+
+    /** Returns the step before which the event stops recurring. */
+    public int getEnd() {
+        return end;
+    }
+
+    public boolean isRecurring() {
+        return period > 0;
+    }
+
+    /** Tells whether the event only applies to part of the board. */
+    public boolean isScoped() {
+        return width >= 0;
+    }
+
+    int getX() {
+        return x;
+    }
+
+    int getY() {
+        return y;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the cells the event applies to, or null for the whole board.
+     */
+    public Region getRegion() throws ExtendedGameOfLifeException {
+        return isScoped() ? Region.rectangle(x, y, width, height) : null;
+    }
+
+    /**
+     * Returns the first step, at or after the given one, at which the event occurs.
+     *
+     * @return the step of that occurrence, or -1 if there is none
+     */
+    public int nextOccurrence(int step) {
+        if (step <= start)
+            return start;
+        if (period == 0)
+            return -1;
+        long next = start + ((long) step - start + period - 1) / period * period;
+        return next < end ? (int) next : -1;
+    }
+
+    /**
+     * Returns the last step, before the given one, at which the event occurs.
+     *
+     * @return the step of that occurrence, or -1 if there is none
+     */
+    public int lastOccurrenceBefore(int step) {
+        int limit = Math.min(step, end);
+        if (limit <= start)
+            return -1;
+        if (period == 0)
+            return start;
+        return start + (limit - 1 - start) / period * period;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ScheduledEvent)) return false;
+        ScheduledEvent other = (ScheduledEvent) o;
+        return type == other.type && start == other.start && period == other.period && end == other.end
+                && x == other.x && y == other.y && width == other.width && height == other.height;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, start, period, end, x, y, width, height);
+    }
+
+    @Override
+    public String toString() {
+        String when = period == 0 ? "@" + start
+                : "@" + start + "+" + period + "n" + (end == FOREVER ? "" : "<" + end);
+        String where = isScoped() ? " in [" + x + "," + y + " " + width + "x" + height + "]" : "";
+        return type + when + where;
+    }
+}
@@ -0,0 +1,90 @@
+package it.polito.extgol;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * Handle on a simulation started with {@link ExtendedGameOfLife#runAsync}.
+ *
+ * The handle exposes:
+ *   - the result, as a future completed with the game once the run ends;
+ *   - cooperative cancellation, honored before each step;
+ *   - a publisher streaming the frame of each generation as it is produced.
+ *
+ * Progress subscribers never slow the simulation down: one that does not keep up
+ * only receives the most recent frame available when it requests more.
+ * The game must not be touched by other threads until the future completes,
+ * except through its published frames, see {@link Game#getFrames()}; this is
+ * why subscribers receive immutable {@link GenerationSnapshot}s rather than the
+ * generations themselves.
+ */
+public final class SimulationHandle {
+
+    private final CompletableFuture<Game> result = new CompletableFuture<>();
+    private final SamplingPublisher<GenerationSnapshot> progress;
+    private volatile boolean cancelled;
+
+    SimulationHandle(Executor executor) {
+        this.progress = new SamplingPublisher<>(executor);
+    }
+
+    /**
+     * Returns the future completed with the game when the run ends, exceptionally
+     * if it fails, or cancelled if the run is cancelled.
+     */
+    public CompletableFuture<Game> getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the stream of the frames of the generations produced by the run,
+     * each published once the state of its step is final.
+     *
+     * The stream completes when the run ends and fails with the run's error,
+     * or with a {@link CancellationException} if the run is cancelled.
+     */
+    public Flow.Publisher<GenerationSnapshot> getProgress() {
+        return progress;
+    }
+
+    /**
+     * Requests the run to stop; it does so before evolving the next generation.
+     *
+     * @return true if the request was accepted, false if the run had already ended
+     */
+    public boolean cancel() {
+        if (result.isDone())
+            return false;
+        cancelled = true;
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || result.isCancelled();
+    }
+
+    /** Publishes the frame of a newly produced generation. */
+    void publish(GenerationSnapshot frame) {
+        progress.offer(frame);
+    }
+
+    /** Ends the run, reporting either its result or its cancellation. */
+    void complete(Game game) {
+        if (isCancelled()) {
+            CancellationException e = new CancellationException("Simulation cancelled");
+            progress.fail(e);
+            result.completeExceptionally(e);
+        } else {
+            progress.complete();
+            result.complete(game);
+        }
+    }
+
+    /** Ends the run with a failure. */
+    void fail(Throwable error) {
+        progress.fail(error);
+        result.completeExceptionally(error);
+    }
+}
@@ -0,0 +1,203 @@
+package it.polito.extgol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Transport connecting nodes over TCP, so that workers can run in separate JVMs.
+ *
+ * Every node listens on its own address; the connection to another node is
+ * opened on the first message sent to it and starts with the sender's number.
+ * Each message is framed by its length. Incoming connections are drained by
+ * one reader thread each, so senders never block on a slow receiver.
+ */
+public final class SocketTransport implements PartitionTransport {
+
+    /** Marker delivered to pending receives when a connection or the node is closed. */
+    private static final byte[] CLOSED = new byte[0];
+
+    private final int node;
+    private final List<InetSocketAddress> addresses;
+    private final ServerSocket server;
+
+    private final List<BlockingQueue<byte[]>> inboxes;
+    private final DataOutputStream[] outputs;
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates the endpoint of one node, listening on its address.
+     *
+     * @param node      the number of this node
+     * @param addresses the addresses of every node, indexed by node number
+     * @throws ExtendedGameOfLifeException if the address cannot be bound
+     */
+    public SocketTransport(int node, List<InetSocketAddress> addresses) throws ExtendedGameOfLifeException {
+        this(node, addresses, bind(addresses.get(node)));
+    }
+
+    private SocketTransport(int node, List<InetSocketAddress> addresses, ServerSocket server) {
+        this.node = node;
+        this.addresses = List.copyOf(addresses);
+        this.server = server;
+        List<BlockingQueue<byte[]>> queues = new ArrayList<>(addresses.size());
+        for (int n = 0; n < addresses.size(); n++) {
+            queues.add(new LinkedBlockingQueue<>());
+        }
+        this.inboxes = List.copyOf(queues);
+        this.outputs = new DataOutputStream[addresses.size()];
+
+        Thread acceptor = new Thread(this::accept, "extgol-transport-" + node);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Creates connected endpoints for the coordinator and the given number of
+     * workers, all listening on ephemeral loopback ports of this machine.
+     *
+     * @param workers number of worker nodes
+     * @return the endpoints, indexed by node number
+     */
+    public static SocketTransport[] loopback(int workers) throws ExtendedGameOfLifeException {
+        if (workers <= 0)
+            throw new ExtendedGameOfLifeException("At least one worker is required");
+        int nodes = workers + 1;
+        ServerSocket[] servers = new ServerSocket[nodes];
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int n = 0; n < nodes; n++) {
+            servers[n] = bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), servers[n].getLocalPort()));
+        }
+        SocketTransport[] endpoints = new SocketTransport[nodes];
+        for (int n = 0; n < nodes; n++) {
+            endpoints[n] = new SocketTransport(n, addresses, servers[n]);
+        }
+        return endpoints;
+    }
+
+    private static ServerSocket bind(InetSocketAddress address) throws ExtendedGameOfLifeException {
+        try {
+            ServerSocket server = new ServerSocket();
+            server.setReuseAddress(true);
+            server.bind(address);
+            return server;
+        } catch (IOException e) {
+            throw new ExtendedGameOfLifeException("Cannot listen on " + address, e);
+        }
+    }
+
+    @Override
+    public int node() {
+        return node;
+    }
+
+    @Override
+    public void send(int to, byte[] message) throws ExtendedGameOfLifeException {
+        if (closed)
+            throw new ExtendedGameOfLifeException("Transport of node " + node + " is closed");
+        synchronized (outputs) {
+            try {
+                DataOutputStream out = outputs[to];
+                if (out == null) {
+                    Socket socket = new Socket();
+                    socket.setTcpNoDelay(true);
+                    socket.connect(addresses.get(to));
+                    sockets.add(socket);
+                    out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                    out.writeInt(node);
+                    outputs[to] = out;
+                }
+                out.writeInt(message.length);
+                out.write(message);
+                out.flush();
+            } catch (IOException e) {
+                throw new ExtendedGameOfLifeException("Cannot send to node " + to, e);
+            }
+        }
+    }
+
+    @Override
+    public byte[] receive(int from) throws ExtendedGameOfLifeException {
+        byte[] message;
+        try {
+            message = inboxes.get(from).take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExtendedGameOfLifeException("Interrupted while waiting for node " + from, e);
+        }
+        if (message == CLOSED) {
+            inboxes.get(from).add(CLOSED);
+            throw new ExtendedGameOfLifeException("Connection from node " + from + " is closed");
+        }
+        return message;
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+        }
+        for (BlockingQueue<byte[]> inbox : inboxes) {
+            inbox.add(CLOSED);
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                sockets.add(socket);
+                Thread reader = new Thread(() -> read(socket), "extgol-transport-" + node + "-reader");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void read(Socket socket) {
+        int from = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            from = in.readInt();
+            while (true) {
+                byte[] message = new byte[in.readInt()];
+                in.readFully(message);
+                inboxes.get(from).add(message);
+            }
+        } catch (EOFException e) {
+            // the sender closed its side
+        } catch (IOException e) {
+            // the connection broke, or this node was closed
+        }
+        if (from >= 0 && from < inboxes.size())
+            inboxes.get(from).add(CLOSED);
+    }
+}
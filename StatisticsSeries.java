@@ -0,0 +1,230 @@
+package it.polito.extgol;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Per-generation statistics of a game, kept as primitive time series.
+ *
+ * For each recorded step the series holds the population, the births and deaths
+ * that led to it, the total lifePoints and the number of cells in each mood
+ * (the last two over every cell of the board, as in the generation snapshots).
+ *
+ * The series is maintained incrementally: a run scans the board once when it
+ * starts, then evolution reports births and deaths and events report changes
+ * of lifePoints and moods, so recording a generation never reads per-cell state.
+ */
+public final class StatisticsSeries {
+
+    private static final CellMood[] MOODS = CellMood.values();
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int ENCODING_VERSION = 1;
+
+    private int size;
+    private int[] steps = new int[INITIAL_CAPACITY];
+    private int[] population = new int[INITIAL_CAPACITY];
+    private int[] births = new int[INITIAL_CAPACITY];
+    private int[] deaths = new int[INITIAL_CAPACITY];
+    private long[] lifePoints = new long[INITIAL_CAPACITY];
+    private int[] moods = new int[INITIAL_CAPACITY * MOODS.length];
+
+    /** Running totals of the current board state. */
+    private int currentPopulation;
+    private long currentLifePoints;
+    private final int[] currentMoods = new int[MOODS.length];
+
+    /**
+     * Restarts the series at the given step, from the current state of the board.
+     *
+     * Points recorded at that step or later are discarded, since a new run
+     * overwrites them; earlier points are kept.
+     *
+     * @param step  the step whose state the board currently holds
+     * @param board the board to scan
+     */
+    void reset(int step, Board board) {
+        while (size > 0 && steps[size - 1] >= step) {
+            size--;
+        }
+        currentPopulation = 0;
+        currentLifePoints = 0;
+        Arrays.fill(currentMoods, 0);
+        if (!board.isMaterialized()) {
+            // scan the compact state rather than creating every tile
+            BoardState state = board.snapshotBuffer();
+            state.capture(board);
+            for (int i = 0; i < state.size(); i++) {
+                if (state.isAlive(i)) currentPopulation++;
+                currentLifePoints += state.getLifePoints(i);
+                currentMoods[state.getMood(i).ordinal()]++;
+            }
+        } else {
+            for (Tile tile : board.getTiles()) {
+                Cell cell = tile.getCell();
+                if (cell == null) continue;
+                if (cell.isAlive()) currentPopulation++;
+                currentLifePoints += cell.getLifePoints();
+                currentMoods[cell.getMood().ordinal()]++;
+            }
+        }
+        append(step, 0, 0);
+    }
+
+    /**
+     * Tells whether the last recorded point is the given step, i.e. whether the
+     * running totals can be carried on to the next step.
+     */
+    boolean endsAt(int step) {
+        return size > 0 && steps[size - 1] == step;
+    }
+
+    /**
+     * Records the next generation, given the cells born and dead since the previous one.
+     */
+    void record(int step, int born, int died) {
+        currentPopulation += born - died;
+        append(step, born, died);
+    }
+
+    /** Accounts for a change of lifePoints of one cell. */
+    void lifePointsChanged(int delta) {
+        currentLifePoints += delta;
+    }
+
+    /** Accounts for a change of mood of one cell. */
+    void moodChanged(CellMood from, CellMood to) {
+        currentMoods[from.ordinal()]--;
+        currentMoods[to.ordinal()]++;
+    }
+
+    private void append(int step, int born, int died) {
+        if (size == steps.length) {
+            int capacity = size * 2;
+            steps = Arrays.copyOf(steps, capacity);
+            population = Arrays.copyOf(population, capacity);
+            births = Arrays.copyOf(births, capacity);
+            deaths = Arrays.copyOf(deaths, capacity);
+            lifePoints = Arrays.copyOf(lifePoints, capacity);
+            moods = Arrays.copyOf(moods, capacity * MOODS.length);
+        }
+        steps[size] = step;
+        population[size] = currentPopulation;
+        births[size] = born;
+        deaths[size] = died;
+        lifePoints[size] = currentLifePoints;
+        System.arraycopy(currentMoods, 0, moods, size * MOODS.length, MOODS.length);
+        size++;
+    }
+
+    /**
+     * Returns the number of recorded points.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the position of the point recorded for the given step, or -1.
+     */
+    public int indexOf(int step) {
+        int k = Arrays.binarySearch(steps, 0, size, step);
+        return k >= 0 ? k : -1;
+    }
+
+    public int getStep(int k) {
+        return steps[check(k)];
+    }
+
+    public int getPopulation(int k) {
+        return population[check(k)];
+    }
+
+    /**
+     * Returns the number of cells that came to life in the step leading to point k
+     * (0 for the first point of a run).
+     */
+    public int getBirths(int k) {
+        return births[check(k)];
+    }
+
+    /**
+     * Returns the number of cells that died in the step leading to point k
+     * (0 for the first point of a run).
+     */
+    public int getDeaths(int k) {
+        return deaths[check(k)];
+    }
+
+    public long getTotalLifePoints(int k) {
+        return lifePoints[check(k)];
+    }
+
+    public int getMoodCount(int k, CellMood mood) {
+        return moods[check(k) * MOODS.length + mood.ordinal()];
+    }
+
+    /**
+     * Returns a copy of the population series, one value per recorded point.
+     */
+    public int[] populations() {
+        return Arrays.copyOf(population, size);
+    }
+
+    /**
+     * Returns a copy of the recorded steps.
+     */
+    public int[] steps() {
+        return Arrays.copyOf(steps, size);
+    }
+
+    private int check(int k) {
+        if (k < 0 || k >= size)
+            throw new IndexOutOfBoundsException("No statistics point " + k + " (size " + size + ")");
+        return k;
+    }
+
+    /**
+     * Encodes the recorded points for storage.
+     */
+    byte[] toByteArray() {
+        int perPoint = 4 * Integer.BYTES + Long.BYTES + MOODS.length * Integer.BYTES;
+        ByteBuffer buf = ByteBuffer.allocate(3 * Integer.BYTES + size * perPoint);
+        buf.putInt(ENCODING_VERSION).putInt(MOODS.length).putInt(size);
+        for (int k = 0; k < size; k++) {
+            buf.putInt(steps[k]).putInt(population[k]).putInt(births[k]).putInt(deaths[k]).putLong(lifePoints[k]);
+            for (int m = 0; m < MOODS.length; m++) {
+                buf.putInt(moods[k * MOODS.length + m]);
+            }
+        }
+        return buf.array();
+    }
+
+    /**
+     * Decodes points encoded by {@link #toByteArray()}. The running totals are
+     * restored from the last point.
+     */
+    static StatisticsSeries fromByteArray(byte[] data) throws ExtendedGameOfLifeException {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        if (data.length < 3 * Integer.BYTES || buf.getInt() != ENCODING_VERSION || buf.getInt() != MOODS.length)
+            throw new ExtendedGameOfLifeException("Unsupported statistics encoding");
+        StatisticsSeries series = new StatisticsSeries();
+        try {
+            int count = buf.getInt();
+            for (int k = 0; k < count; k++) {
+                int step = buf.getInt();
+                series.currentPopulation = buf.getInt();
+                int born = buf.getInt();
+                int died = buf.getInt();
+                series.currentLifePoints = buf.getLong();
+                for (int m = 0; m < MOODS.length; m++) {
+                    series.currentMoods[m] = buf.getInt();
+                }
+                series.append(step, born, died);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new ExtendedGameOfLifeException("Truncated statistics data", e);
+        }
+        return series;
+    }
+}
@@ -0,0 +1,54 @@
+package it.polito.extgol;
+
+/**
+ * Summed-area table of the aliveness plane of a state: the number of alive
+ * cells in any rectangle is read in O(1), whatever its size.
+ *
+ * Entry (x, y) holds the alive cells above and to the left of (x, y), both
+ * excluded, so the table has one more row and column than the state.
+ */
+final class SummedAreaTable {
+
+    private int width;
+    private int height;
+    private int[] sums = new int[0];
+
+    /**
+     * Fills the table with the aliveness of a state, reallocating it only when
+     * the dimensions change.
+     */
+    void build(BoardState state) {
+        width = state.getWidth();
+        height = state.getHeight();
+        int stride = width + 1;
+        int size = stride * (height + 1);
+        if (sums.length != size)
+            sums = new int[size];
+        byte[] alive = state.alivePlane();
+        for (int y = 0; y < height; y++) {
+            int row = 0;
+            int above = y * stride;
+            int here = above + stride;
+            int in = y * width;
+            for (int x = 0; x < width; x++) {
+                row += alive[in + x];
+                sums[here + x + 1] = sums[above + x + 1] + row;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of alive cells in the rectangle [x0, x1) x [y0, y1);
+     * the parts outside the board count as dead.
+     */
+    int sum(int x0, int y0, int x1, int y1) {
+        x0 = Math.max(x0, 0);
+        y0 = Math.max(y0, 0);
+        x1 = Math.min(x1, width);
+        y1 = Math.min(y1, height);
+        if (x0 >= x1 || y0 >= y1)
+            return 0;
+        int stride = width + 1;
+        return sums[y1 * stride + x1] - sums[y0 * stride + x1] - sums[y1 * stride + x0] + sums[y0 * stride + x0];
+    }
+}
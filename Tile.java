@@ -3,70 +3,35 @@ package it.polito.extgol;
 import java.util.HashSet;
 import java.util.Set;
 
-import jakarta.persistence.AttributeOverride;
-import jakarta.persistence.AttributeOverrides;
-import jakarta.persistence.CascadeType;
-import jakarta.persistence.Column;
-import jakarta.persistence.Embedded;
-import jakarta.persistence.Entity;
-import jakarta.persistence.FetchType;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
-import jakarta.persistence.Id;
-import jakarta.persistence.JoinColumn;
-import jakarta.persistence.ManyToOne;
-import jakarta.persistence.OneToOne;
-import jakarta.persistence.Transient;
-
 /**
- * Entity representing a single square on the Game of Life board.
+ * A single square on the Game of Life board.
  * Holds coordinate position, occupying Cell, and link back to its Board.
+ *
+ * Tiles are not persisted: their static part lives in the board's
+ * {@link BoardLayout}, and a saved board rebuilds them from its cells.
  */
-@Entity
 public class Tile {
 
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
-
     /** Coordinates of the tile on the board. */
-    @Embedded
-    @AttributeOverrides({
-        @AttributeOverride(name = "x",
-            column = @Column(name = "tile_x", nullable = false)),
-        @AttributeOverride(name = "y",
-            column = @Column(name = "tile_y", nullable = false))
-    })
     private Coord tileCoord;
 
     /** Reference to the board containing this tile. */
-    @ManyToOne(optional = false, fetch = FetchType.LAZY)
-    @JoinColumn(name = "board_id", nullable = false)
     private Board board;
 
     /** Reference to the owning game. */
-    @ManyToOne(fetch = FetchType.LAZY, optional = false)
-    @JoinColumn(name = "game_id", nullable = false, updatable = false)
     private Game game;
 
     /**
      * The cell occupying this tile.
      */
-    @OneToOne(
-      cascade = CascadeType.ALL,
-      orphanRemoval = true,
-      fetch = FetchType.LAZY
-    )
-    @JoinColumn(name = "cell_id", nullable = false, unique = true)
     private Cell cell;
 
-    /** Neighboring tiles for interactions. Not persisted. */
-    @Transient
-    private Set<Tile> neighbors = new HashSet<Tile>();
-
     /**
-     * Default constructor required by JPA.
+     * Neighboring tiles for interactions; null until first use on tiles of a
+     * lazy board.
      */
+    private Set<Tile> neighbors = new HashSet<Tile>();
+
     public Tile() {
     }
 
@@ -83,6 +48,17 @@ public class Tile {
         this.cell = new Cell(this.tileCoord, this, b, g);
     }
 
+    /**
+     * Rebuilds the tile holding a stored cell of a loaded board.
+     */
+    Tile(Board b, Cell cell) {
+        this.tileCoord = cell.getCoordinates();
+        this.board = b;
+        this.game = b.getGame();
+        this.cell = cell;
+        cell.setTile(this);
+    }
+
     public Board getBoard() {
         return board;
     }
@@ -103,18 +79,19 @@ public class Tile {
         return cell != null && cell.isAlive();
     }
 
+    /**
+     * Sets the neighboring tiles; null lets the board wire them on first use.
+     */
     public void initializeNeighbors(Set<Tile> neighborsList) {
         this.neighbors = neighborsList;
     }
 
     public Set<Tile> getNeighbors() {
+        if (this.neighbors == null)
+            this.neighbors = board.neighborsOf(this);
         return this.neighbors;
     }
 
-    public Long getId() {
-        return id;
-    }
-
     public Coord getTileCoord() {
         return this.tileCoord;
     }
@@ -128,10 +105,10 @@ public class Tile {
     }
 
     /**
-     * Life point modifier is 0 for a normal tile.
-     * Interactable tiles will override this.
+     * Life point modifier is 0 for a normal tile, unless the board's layout
+     * says otherwise. Interactable tiles will override this.
      */
     public Integer getLifePointModifier() {
-        return 0;
+        return board != null ? board.lifePointModifier(getX(), getY()) : 0;
     }
 }
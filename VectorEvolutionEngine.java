@@ -0,0 +1,95 @@
+package it.polito.extgol;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Evolution engine using the Java Vector API ({@code jdk.incubator.vector}).
+ *
+ * Each row is processed a whole vector of cells at a time: the eight shifted
+ * rows of neighbors are summed lane-wise, and the rule is applied to all lanes
+ * at once through comparisons against the birth and survival counts of the
+ * {@link RuleTable}. The remaining cells of each row go through the scalar path.
+ *
+ * Requires the {@code jdk.incubator.vector} module at runtime; obtain it through
+ * {@link EvolutionEngines}, which falls back to the scalar engine when the
+ * module is not available.
+ */
+class VectorEvolutionEngine implements EvolutionEngine {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private final RuleTable rule;
+    private final int[] births;
+    private final int[] survivals;
+
+    /** Aliveness with a dead border, (width + 2) x (height + 2), reused across steps. */
+    private byte[] padded = new byte[0];
+
+    VectorEvolutionEngine(RuleTable rule) {
+        if (rule.getMaxNeighbors() > Byte.MAX_VALUE)
+            throw new ExtendedGameOfLifeException("Neighbor counts do not fit byte lanes");
+        this.rule = rule;
+        this.births = rule.birthCounts();
+        this.survivals = rule.survivalCounts();
+    }
+
+    @Override
+    public void step(BoardState current, BoardState next) {
+        int w = current.getWidth();
+        int h = current.getHeight();
+        int pw = w + 2;
+        padded = ScalarEvolutionEngine.padded(padded, current);
+        byte[] src = padded;
+        byte[] dst = next.alivePlane();
+
+        int lanes = SPECIES.length();
+        int bound = SPECIES.loopBound(w);
+        ByteVector zero = ByteVector.zero(SPECIES);
+
+        for (int y = 0; y < h; y++) {
+            int up = y * pw;
+            int mid = up + pw;
+            int down = mid + pw;
+            int out = y * w;
+
+            int x = 0;
+            for (; x < bound; x += lanes) {
+                ByteVector n = ByteVector.fromArray(SPECIES, src, up + x)
+                        .add(ByteVector.fromArray(SPECIES, src, up + x + 1))
+                        .add(ByteVector.fromArray(SPECIES, src, up + x + 2))
+                        .add(ByteVector.fromArray(SPECIES, src, mid + x))
+                        .add(ByteVector.fromArray(SPECIES, src, mid + x + 2))
+                        .add(ByteVector.fromArray(SPECIES, src, down + x))
+                        .add(ByteVector.fromArray(SPECIES, src, down + x + 1))
+                        .add(ByteVector.fromArray(SPECIES, src, down + x + 2));
+                VectorMask<Byte> alive = ByteVector.fromArray(SPECIES, src, mid + x + 1)
+                        .compare(VectorOperators.NE, 0);
+
+                VectorMask<Byte> born = matches(n, births).andNot(alive);
+                VectorMask<Byte> survives = matches(n, survivals).and(alive);
+                zero.blend((byte) 1, born.or(survives)).intoArray(dst, out + x);
+            }
+
+            for (; x < w; x++) {
+                int n = src[up + x] + src[up + x + 1] + src[up + x + 2]
+                      + src[mid + x] + src[mid + x + 2]
+                      + src[down + x] + src[down + x + 1] + src[down + x + 2];
+                dst[out + x] = (byte) (rule.next(src[mid + x + 1], n) ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Lanes whose count is one of the given values.
+     */
+    private static VectorMask<Byte> matches(ByteVector n, int[] counts) {
+        VectorMask<Byte> mask = VectorMask.fromLong(SPECIES, 0L);
+        for (int c : counts) {
+            mask = mask.or(n.compare(VectorOperators.EQ, (byte) c));
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,46 @@
+package it.polito.extgol;
+
+/**
+ * Von Neumann neighborhood of any radius, counted with a {@link SummedAreaTable}:
+ * the diamond around a cell is summed one row segment at a time.
+ */
+final class VonNeumannNeighborhood implements Neighborhood {
+
+    private final int radius;
+    private final SummedAreaTable table = new SummedAreaTable();
+
+    VonNeumannNeighborhood(int radius) throws ExtendedGameOfLifeException {
+        if (radius < 1)
+            throw new ExtendedGameOfLifeException("Neighborhood radius must be positive");
+        this.radius = radius;
+    }
+
+    @Override
+    public int getRadius() {
+        return radius;
+    }
+
+    @Override
+    public int getMaxNeighbors() {
+        return 2 * radius * (radius + 1);
+    }
+
+    @Override
+    public void countAlive(BoardState state, int[] counts) {
+        int w = state.getWidth();
+        int h = state.getHeight();
+        byte[] alive = state.alivePlane();
+        table.build(state);
+        for (int y = 0; y < h; y++) {
+            int out = y * w;
+            for (int x = 0; x < w; x++) {
+                int n = -alive[out + x];
+                for (int dy = -radius; dy <= radius; dy++) {
+                    int reach = radius - Math.abs(dy);
+                    n += table.sum(x - reach, y + dy, x + reach + 1, y + dy + 1);
+                }
+                counts[out + x] = n;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package it.polito.extgol;
+
+/**
+ * Zobrist-style hashing of board states.
+ *
+ * The hash of a board is the XOR of one 64-bit key per cell, where the key
+ * depends on the cell coordinates and on its (alive, mood, lifePoints) state.
+ * Keys are derived on the fly with a SplitMix64 finalizer instead of being
+ * looked up in a random table, so lifePoints need not be bounded.
+ *
+ * Since XOR is its own inverse, the hash can be updated incrementally when a
+ * single cell changes: {@code h ^ cellKey(old state) ^ cellKey(new state)}.
+ * Cells in the resting state (dead, NAIVE, 0 lifePoints) contribute nothing,
+ * so an empty board hashes to 0.
+ */
+public final class ZobristHash {
+
+    private ZobristHash() {} // utility class need not to be instantiated
+
+    /**
+     * Returns the key of a single cell in the given state.
+     *
+     * @param x          the cell column
+     * @param y          the cell row
+     * @param alive      whether the cell is alive
+     * @param mood       the cell mood
+     * @param lifePoints the cell lifePoints
+     * @return the 64-bit key to XOR into the board hash
+     */
+    public static long cellKey(int x, int y, boolean alive, CellMood mood, int lifePoints) {
+        int moodOrdinal = mood != null ? mood.ordinal() : 0;
+        if (!alive && moodOrdinal == 0 && lifePoints == 0)
+            return 0L;
+
+        long position = mix(((long) x << 32) | (y & 0xFFFFFFFFL));
+        long state = (alive ? 1L : 0L) | ((long) moodOrdinal << 1) | ((long) lifePoints << 3);
+        return mix(position ^ state);
+    }
+
+    /**
+     * Returns the key of a cell in its current state.
+     *
+     * @param cell the cell to hash
+     * @return the 64-bit key to XOR into the board hash
+     */
+    public static long cellKey(Cell cell) {
+        return cellKey(cell.getX(), cell.getY(), cell.isAlive(), cell.getMood(), cell.getLifePoints());
+    }
+
+    /**
+     * Returns the hash of a compact board state, equal to the hash of a
+     * generation snapshotting the same state.
+     *
+     * @param state the state to hash
+     * @return the XOR of the keys of all its cells
+     */
+    public static long of(BoardState state) {
+        long hash = 0L;
+        for (int y = 0, i = 0; y < state.getHeight(); y++) {
+            for (int x = 0; x < state.getWidth(); x++, i++) {
+                hash ^= cellKey(x, y, state.isAlive(i), state.getMood(i), state.getLifePoints(i));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * SplitMix64 finalizer: a bijective mixing of the 64 input bits.
+     */
+    static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,35 @@
+package it.polito.extgol.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark module.
+ *
+ * Runs the selected benchmarks (all of them by default; standard JMH command line
+ * options such as a name regex, -p size=64 or -f are honoured) with the GC profiler
+ * attached, so that every result also reports allocation rate per operation
+ * (gc.alloc.rate.norm) and GC counts/time. Results are written as JSON to
+ * bench_output.json, to be compared against a baseline run.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options cli = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(cli)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("bench_output.json")
+                .build();
+        new Runner(options).run();
+    }
+}
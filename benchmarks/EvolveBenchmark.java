@@ -0,0 +1,77 @@
+package it.polito.extgol.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.polito.extgol.EvolutionEngines;
+import it.polito.extgol.ExtendedGameOfLife;
+import it.polito.extgol.Game;
+import it.polito.extgol.Generation;
+import it.polito.extgol.RetentionPolicy;
+
+/**
+ * Measures a single {@link ExtendedGameOfLife#evolve(Generation)} step
+ * for board sizes from 64x64 to 4096x4096, several seed patterns and each
+ * evolution engine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx16g", "--add-modules=jdk.incubator.vector"})
+public class EvolveBenchmark {
+
+    @Param({"64", "256", "1024", "4096"})
+    int size;
+
+    @Param({"soup-10", "soup-35", "soup-50", "glider-gun", "r-pentomino"})
+    String pattern;
+
+    /** "reference" (cell by cell), or one of the compact-state engines. */
+    @Param({"reference", "scalar", "best"})
+    String engine;
+
+    private final ExtendedGameOfLife facade = new ExtendedGameOfLife();
+    private Game game;
+    private Generation current;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        switch (engine) {
+            case "scalar":
+                facade.setEngine(EvolutionEngines.scalar());
+                break;
+            case "best":
+                facade.setEngine(EvolutionEngines.best());
+                break;
+            default:
+                facade.setEngine(null);
+        }
+        game = Fixtures.newGame(size, pattern, false);
+        // keeping only the first and the newest generation bounds the history, the
+        // published frames and the generations referenced by the cells, as in a long run
+        game.setRetention(RetentionPolicy.lastGenerations(1));
+        current = game.getStart();
+    }
+
+    @Benchmark
+    public Generation evolve() {
+        // Each invocation evolves the newest generation, as run() does, so the
+        // statistics follow the run instead of rescanning the board every time.
+        current = facade.evolve(current);
+        return current;
+    }
+}
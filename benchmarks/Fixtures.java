@@ -0,0 +1,68 @@
+package it.polito.extgol.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.polito.extgol.EventType;
+import it.polito.extgol.Game;
+import it.polito.extgol.Generation;
+import it.polito.extgol.JPAUtil;
+
+/**
+ * Shared setup code for the benchmarks.
+ */
+final class Fixtures {
+
+    /** Game names must be unique once persisted. */
+    private static final AtomicLong GAME_COUNTER = new AtomicLong();
+
+    private Fixtures() {}
+
+    /**
+     * Creates a square game seeded with the named pattern.
+     *
+     * @param size     board width and height
+     * @param pattern  the seed pattern name, see {@link SeedPatterns#named}
+     * @param extended whether to create an extended board
+     * @return the seeded game, holding only its initial generation
+     */
+    static Game newGame(int size, String pattern, boolean extended) {
+        String name = "bench-" + GAME_COUNTER.incrementAndGet();
+        Game game = extended ? Game.createExtended(name, size, size) : Game.create(name, size, size);
+        Generation.createInitial(game, game.getBoard(), SeedPatterns.named(pattern, size, size));
+        return game;
+    }
+
+    /**
+     * Builds an event schedule triggering one event every {@code period} steps,
+     * cycling through all event types.
+     *
+     * @param steps  number of simulated steps
+     * @param period distance between two events
+     * @return the event map to pass to {@code run}
+     */
+    static Map<Integer, EventType> cyclingEvents(int steps, int period) {
+        EventType[] types = EventType.values();
+        Map<Integer, EventType> events = new HashMap<>();
+        for (int i = 0, k = 0; i < steps; i += period, k++) {
+            events.put(i, types[k % types.length]);
+        }
+        return events;
+    }
+
+    /**
+     * Points the persistence unit to a private H2 in-memory database,
+     * with the schema created from the entity mappings.
+     */
+    static void useInMemoryDatabase() {
+        JPAUtil.configure(Map.of(
+            "jakarta.persistence.jdbc.driver", "org.h2.Driver",
+            "jakarta.persistence.jdbc.url", "jdbc:h2:mem:extgol-bench;DB_CLOSE_DELAY=-1",
+            "jakarta.persistence.jdbc.user", "sa",
+            "jakarta.persistence.jdbc.password", "",
+            "hibernate.hbm2ddl.auto", "create-drop",
+            "hibernate.show_sql", "false"
+        ));
+    }
+}
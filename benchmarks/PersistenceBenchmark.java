@@ -0,0 +1,88 @@
+package it.polito.extgol.benchmarks;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.polito.extgol.ExtendedGameOfLife;
+import it.polito.extgol.Game;
+import it.polito.extgol.GenericExtGOLRepository;
+import it.polito.extgol.JPAUtil;
+
+/**
+ * Measures {@code saveGame} and {@code findById} against an embedded
+ * H2 in-memory database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Param({"16", "64"})
+    int size;
+
+    @Param({"10"})
+    int steps;
+
+    private final ExtendedGameOfLife facade = new ExtendedGameOfLife();
+    private final GameRepository repository = new GameRepository();
+    private Game saved;
+    private Game fresh;
+
+    @Setup(Level.Trial)
+    public void setUpDatabase() {
+        Fixtures.useInMemoryDatabase();
+        saved = facade.run(Fixtures.newGame(size, "soup-35", true), steps);
+        facade.saveGame(saved);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpGame() {
+        fresh = facade.run(Fixtures.newGame(size, "soup-35", true), steps);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownDatabase() {
+        JPAUtil.close();
+    }
+
+    @Benchmark
+    public Game saveNewGame() {
+        facade.saveGame(fresh);
+        return fresh;
+    }
+
+    @Benchmark
+    public Game saveExistingGame() {
+        facade.saveGame(saved);
+        return saved;
+    }
+
+    @Benchmark
+    public Optional<Game> findById() {
+        return repository.findById(saved.getId());
+    }
+
+    /** Plain repository over Game, only needed to reach findById. */
+    private static class GameRepository extends GenericExtGOLRepository<Game, Long> {
+        GameRepository() {
+            super(Game.class);
+        }
+    }
+}
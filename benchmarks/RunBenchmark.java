@@ -0,0 +1,67 @@
+package it.polito.extgol.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.polito.extgol.EventType;
+import it.polito.extgol.ExtendedGameOfLife;
+import it.polito.extgol.Game;
+
+/**
+ * Measures complete simulations through {@code ExtendedGameOfLife.run},
+ * with and without an event schedule.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class RunBenchmark {
+
+    @Param({"64", "256"})
+    int size;
+
+    @Param({"100"})
+    int steps;
+
+    @Param({"soup-35", "r-pentomino"})
+    String pattern;
+
+    private final ExtendedGameOfLife facade = new ExtendedGameOfLife();
+    private Map<Integer, EventType> events;
+    private Game game;
+
+    @Setup(Level.Trial)
+    public void setUpEvents() {
+        events = Fixtures.cyclingEvents(steps, 10);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpGame() {
+        game = Fixtures.newGame(size, pattern, true);
+    }
+
+    @Benchmark
+    public Game run() {
+        return facade.run(game, steps);
+    }
+
+    @Benchmark
+    public Game runWithEvents() {
+        return facade.run(game, steps, events);
+    }
+}
@@ -0,0 +1,110 @@
+package it.polito.extgol.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import it.polito.extgol.Coord;
+
+/**
+ * Standard seed patterns used to initialize benchmark boards.
+ *
+ * Patterns are centered on the board and clipped to its bounds.
+ * Random soups are generated with a fixed seed, so that every run of a
+ * benchmark evolves exactly the same initial configuration.
+ */
+public final class SeedPatterns {
+
+    /** Seed used for every random soup. */
+    private static final long SOUP_SEED = 0x5EEDL;
+
+    /** Gosper glider gun, 36x9 bounding box. */
+    private static final int[][] GLIDER_GUN = {
+        {24, 0},
+        {22, 1}, {24, 1},
+        {12, 2}, {13, 2}, {20, 2}, {21, 2}, {34, 2}, {35, 2},
+        {11, 3}, {15, 3}, {20, 3}, {21, 3}, {34, 3}, {35, 3},
+        {0, 4}, {1, 4}, {10, 4}, {16, 4}, {20, 4}, {21, 4},
+        {0, 5}, {1, 5}, {10, 5}, {14, 5}, {16, 5}, {17, 5}, {22, 5}, {24, 5},
+        {10, 6}, {16, 6}, {24, 6},
+        {11, 7}, {15, 7},
+        {12, 8}, {13, 8}
+    };
+
+    /** R-pentomino, 3x3 bounding box. */
+    private static final int[][] R_PENTOMINO = {
+        {1, 0}, {2, 0},
+        {0, 1}, {1, 1},
+        {1, 2}
+    };
+
+    private SeedPatterns() {} // utility class need not to be instantiated
+
+    /**
+     * Resolves a pattern by the name used in benchmark parameters.
+     *
+     * Supported names are "soup-NN" (random soup with NN% density),
+     * "glider-gun" and "r-pentomino".
+     *
+     * @param name   the pattern name
+     * @param width  board width
+     * @param height board height
+     * @return the coordinates of the alive cells
+     */
+    public static List<Coord> named(String name, int width, int height) {
+        if (name.startsWith("soup-")) {
+            double density = Integer.parseInt(name.substring("soup-".length())) / 100.0;
+            return randomSoup(width, height, density);
+        }
+        switch (name) {
+            case "glider-gun":
+                return gliderGun(width, height);
+            case "r-pentomino":
+                return rPentomino(width, height);
+            default:
+                throw new IllegalArgumentException("Unknown seed pattern: " + name);
+        }
+    }
+
+    /**
+     * Fills the board with alive cells, each with the given probability.
+     *
+     * @param width   board width
+     * @param height  board height
+     * @param density probability of a cell being alive, between 0 and 1
+     * @return the coordinates of the alive cells
+     */
+    public static List<Coord> randomSoup(int width, int height, double density) {
+        Random rnd = new Random(SOUP_SEED);
+        List<Coord> alive = new ArrayList<>();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (rnd.nextDouble() < density)
+                    alive.add(new Coord(x, y));
+            }
+        }
+        return alive;
+    }
+
+    public static List<Coord> gliderGun(int width, int height) {
+        return centered(GLIDER_GUN, 36, 9, width, height);
+    }
+
+    public static List<Coord> rPentomino(int width, int height) {
+        return centered(R_PENTOMINO, 3, 3, width, height);
+    }
+
+    private static List<Coord> centered(int[][] cells, int patternWidth, int patternHeight,
+                                        int width, int height) {
+        int offX = (width - patternWidth) / 2;
+        int offY = (height - patternHeight) / 2;
+        List<Coord> alive = new ArrayList<>(cells.length);
+        for (int[] c : cells) {
+            int x = c[0] + offX;
+            int y = c[1] + offY;
+            if (x >= 0 && x < width && y >= 0 && y < height)
+                alive.add(new Coord(x, y));
+        }
+        return alive;
+    }
+}
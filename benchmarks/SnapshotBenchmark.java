@@ -0,0 +1,95 @@
+package it.polito.extgol.benchmarks;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import it.polito.extgol.Board;
+import it.polito.extgol.Cell;
+import it.polito.extgol.Coord;
+import it.polito.extgol.ExtendedGameOfLife;
+import it.polito.extgol.Game;
+import it.polito.extgol.Generation;
+
+/**
+ * Measures the read paths over a generation: snapshotting, alive cell
+ * retrieval, visualization and tile lookups.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class SnapshotBenchmark {
+
+    /** Number of lookups performed by each getTile invocation. */
+    private static final int LOOKUPS = 1024;
+
+    @Param({"64", "256", "1024"})
+    int size;
+
+    @Param({"soup-35"})
+    String pattern;
+
+    private final ExtendedGameOfLife facade = new ExtendedGameOfLife();
+    private Board board;
+    private Generation generation;
+    private Coord[] lookups;
+
+    @Setup
+    public void setUp() {
+        Game game = Fixtures.newGame(size, pattern, false);
+        generation = facade.run(game, 10).getGenerations().get(10);
+        board = game.getBoard();
+
+        Random rnd = new Random(42);
+        lookups = new Coord[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = new Coord(rnd.nextInt(size), rnd.nextInt(size));
+        }
+    }
+
+    @Benchmark
+    public Map<Cell, Boolean> snapCells() {
+        return generation.snapCells();
+    }
+
+    @Benchmark
+    public Set<Cell> generationAliveCells() {
+        return generation.getAliveCells();
+    }
+
+    @Benchmark
+    public Map<Coord, Cell> facadeAliveCells() {
+        return facade.getAliveCells(generation);
+    }
+
+    @Benchmark
+    public String visualize() {
+        return facade.visualize(generation);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void getTile(Blackhole bh) {
+        for (Coord c : lookups) {
+            bh.consume(board.getTile(c));
+        }
+    }
+}